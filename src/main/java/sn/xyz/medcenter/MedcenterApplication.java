@@ -2,8 +2,10 @@ package sn.xyz.medcenter;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class MedcenterApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,78 @@
+package sn.xyz.medcenter.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Paramètres des pools de connexions HTTP vers les serveurs Orthanc.
+ * Les valeurs de "orthanc.client.defaults" s'appliquent à tous les serveurs ;
+ * "orthanc.client.servers.{id}" permet de les surcharger pour un ServeurDICOM donné.
+ * Les identifiants des ServeurDICOM sont lus en base ; username/password ne servent qu'aux serveurs
+ * non enregistrés (ex. orthanc.server.url).
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "orthanc.client")
+public class OrthancClientProperties {
+
+    private Pool defaults = Pool.withDefaults();
+
+    private Map<Integer, Pool> servers = new HashMap<>();
+
+    private String username;
+
+    private String password;
+
+    /**
+     * Paramètres effectifs pour un serveur (valeurs par défaut complétées par ses surcharges)
+     * @param serveurId ID du ServeurDICOM, ou null pour un serveur non enregistré en base
+     * @return Paramètres du pool
+     */
+    public Pool poolFor(Integer serveurId) {
+        Pool override = serveurId != null ? servers.get(serveurId) : null;
+        return override != null ? defaults.overriddenBy(override) : defaults;
+    }
+
+    @Data
+    public static class Pool {
+        private Integer maxConnections;
+        private Integer pendingAcquireMaxCount;
+        private Duration pendingAcquireTimeout;
+        private Duration maxIdleTime;
+        private Duration maxLifeTime;
+        private Duration evictionInterval;
+        private Duration connectTimeout;
+        private Duration responseTimeout;
+
+        static Pool withDefaults() {
+            Pool pool = new Pool();
+            pool.setMaxConnections(50);
+            pool.setPendingAcquireMaxCount(200);
+            pool.setPendingAcquireTimeout(Duration.ofSeconds(5));
+            pool.setMaxIdleTime(Duration.ofSeconds(30));
+            pool.setMaxLifeTime(Duration.ofMinutes(5));
+            pool.setEvictionInterval(Duration.ofSeconds(30));
+            pool.setConnectTimeout(Duration.ofSeconds(3));
+            pool.setResponseTimeout(Duration.ofSeconds(30));
+            return pool;
+        }
+
+        Pool overriddenBy(Pool override) {
+            Pool pool = new Pool();
+            pool.setMaxConnections(override.getMaxConnections() != null ? override.getMaxConnections() : maxConnections);
+            pool.setPendingAcquireMaxCount(override.getPendingAcquireMaxCount() != null ? override.getPendingAcquireMaxCount() : pendingAcquireMaxCount);
+            pool.setPendingAcquireTimeout(override.getPendingAcquireTimeout() != null ? override.getPendingAcquireTimeout() : pendingAcquireTimeout);
+            pool.setMaxIdleTime(override.getMaxIdleTime() != null ? override.getMaxIdleTime() : maxIdleTime);
+            pool.setMaxLifeTime(override.getMaxLifeTime() != null ? override.getMaxLifeTime() : maxLifeTime);
+            pool.setEvictionInterval(override.getEvictionInterval() != null ? override.getEvictionInterval() : evictionInterval);
+            pool.setConnectTimeout(override.getConnectTimeout() != null ? override.getConnectTimeout() : connectTimeout);
+            pool.setResponseTimeout(override.getResponseTimeout() != null ? override.getResponseTimeout() : responseTimeout);
+            return pool;
+        }
+    }
+}
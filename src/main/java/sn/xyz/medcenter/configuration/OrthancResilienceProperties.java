@@ -0,0 +1,56 @@
+package sn.xyz.medcenter.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Paramètres de résilience des appels Orthanc (timeout, nouvelles tentatives, disjoncteur par serveur,
+ * requêtes doublées), préfixe "orthanc.resilience"
+ */
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "orthanc.resilience")
+public class OrthancResilienceProperties {
+
+    // Durée maximale d'une requête de lecture, attente du jeton de concurrence exclue
+    private Duration callTimeout = Duration.ofSeconds(10);
+
+    private Retry retry = new Retry();
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    private Hedging hedging = new Hedging();
+
+    @Data
+    public static class Retry {
+        // Nouvelles tentatives après le premier échec (lectures uniquement)
+        private int maxAttempts = 2;
+        private Duration initialBackoff = Duration.ofMillis(200);
+        private Duration maxBackoff = Duration.ofSeconds(2);
+    }
+
+    @Data
+    public static class CircuitBreaker {
+        // Nombre de derniers appels pris en compte pour le taux d'échec
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private double failureRateThreshold = 0.5;
+        // Durée pendant laquelle un serveur en échec n'est plus sollicité
+        private Duration openDuration = Duration.ofSeconds(30);
+        // Appels d'essai autorisés à la réouverture
+        private int halfOpenCalls = 3;
+    }
+
+    @Data
+    public static class Hedging {
+        private boolean enabled = false;
+        // Percentile de latence au-delà duquel une seconde requête identique est envoyée
+        private double percentile = 0.95;
+        private Duration minDelay = Duration.ofMillis(20);
+        // Nombre de mesures nécessaires avant de doubler les requêtes
+        private int minimumSamples = 20;
+    }
+}
@@ -2,21 +2,38 @@ package sn.xyz.medcenter.controller;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
 import sn.xyz.medcenter.dto.*;
 import sn.xyz.medcenter.model.*;
+import sn.xyz.medcenter.repository.HopitalRepository.HopitalRow;
+import sn.xyz.medcenter.repository.PatientRepository.PatientRow;
+import sn.xyz.medcenter.repository.ProfessionnelSanteRepository.ProfessionnelRow;
+import sn.xyz.medcenter.repository.ProfessionnelSanteRepository.ProfessionnelSimpleRow;
 import sn.xyz.medcenter.service.DynamicOrthancService;
 import sn.xyz.medcenter.service.MedicalDataService;
-
+import sn.xyz.medcenter.service.OrthancFanOutService;
+import sn.xyz.medcenter.service.OrthancIndexService;
+import sn.xyz.medcenter.service.OrthancMapperService;
+import sn.xyz.medcenter.service.OrthancPatientLocatorService;
+import sn.xyz.medcenter.service.OrthancPatientPagingService;
+import sn.xyz.medcenter.service.OrthancRoutingService;
+import sn.xyz.medcenter.service.OrthancThumbnailService;
+
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/medical")
@@ -27,6 +44,13 @@ public class MedicalDataController {
 
     private final MedicalDataService medicalDataService;
     private final DynamicOrthancService dynamicOrthancService;
+    private final OrthancFanOutService orthancFanOutService;
+    private final OrthancIndexService orthancIndexService;
+    private final OrthancMapperService orthancMapperService;
+    private final OrthancPatientLocatorService orthancPatientLocatorService;
+    private final OrthancRoutingService orthancRoutingService;
+    private final OrthancPatientPagingService orthancPatientPagingService;
+    private final OrthancThumbnailService orthancThumbnailService;
 
     /**
      * Nombre de patients distincts consultés par un professionnel de santé
@@ -53,16 +77,28 @@ public class MedicalDataController {
     }
 
     /**
-     * Récupère tous les patients
+     * Récupère les patients page par page (tri: id, nom ou numeroSecu) ; la page suivante est obtenue avec
+     * le nextCursor de la réponse, le total n'est calculé que si includeTotal=true
      * Accessible aux professionnels de santé et aux administrateurs
      */
     @GetMapping("/patients")
     @PreAuthorize("hasAnyRole('PROFESSIONNEL', 'RADIOLOGUE', 'ADMIN')")
-    public ResponseEntity<List<PatientDTO>> getAllPatients() {
-        log.info("Requête: récupérer tous les patients");
-        List<Patient> patients = medicalDataService.getAllPatients();
-        List<PatientDTO> patientDTOs = DtoConverter.convertToPatientDTOList(patients);
-        return ResponseEntity.ok(patientDTOs);
+    public ResponseEntity<CursorPageDTO<PatientDTO>> getAllPatients(
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        log.info("Requête: récupérer une page de patients");
+        try {
+            KeysetPage<PatientRow> page = medicalDataService.getPatientsPage(size, sort, cursor, includeTotal);
+            Map<Integer, Long> consultationCounts =
+                    medicalDataService.getConsultationCounts(page.items().stream().map(PatientRow::id).toList());
+            return ResponseEntity.ok(DtoConverter.convertToCursorPageDTO(page,
+                    patients -> DtoConverter.convertToPatientDTOList(patients, consultationCounts)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Pagination des patients invalide: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
@@ -144,15 +180,27 @@ public class MedicalDataController {
     }
 
     /**
-     * Récupère tous les professionnels de santé
+     * Récupère les professionnels de santé page par page (tri: id, nom ou specialite), par curseur
      * Accessible à tous les utilisateurs authentifiés
      */
     @GetMapping("/professionnels")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<List<ProfessionnelSanteDTO>> getAllProfessionnelsSante() {
-        log.info("Requête: récupérer tous les professionnels de santé");
-        List<ProfessionnelSanteDTO> dtos = sn.xyz.medcenter.dto.DtoConverter.convertToProfessionnelSanteDTOList(medicalDataService.getAllProfessionnelsSante());
-        return ResponseEntity.ok(dtos);
+    public ResponseEntity<CursorPageDTO<ProfessionnelSanteDTO>> getAllProfessionnelsSante(
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        log.info("Requête: récupérer une page de professionnels de santé");
+        try {
+            KeysetPage<ProfessionnelRow> page =
+                    medicalDataService.getProfessionnelsSantePage(size, sort, cursor, includeTotal);
+            return ResponseEntity.ok(DtoConverter.convertToCursorPageDTO(page, professionnels -> professionnels.stream()
+                    .map(DtoConverter::convertToProfessionnelSanteDTO)
+                    .toList()));
+        } catch (IllegalArgumentException e) {
+            log.warn("Pagination des professionnels de santé invalide: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
@@ -183,16 +231,27 @@ public class MedicalDataController {
     }
 
     /**
-     * Récupère tous les hôpitaux
+     * Récupère les hôpitaux page par page (tri: id, nom ou region), par curseur
      * Accessible à tous les utilisateurs authentifiés
      */
     @GetMapping("/hopitaux")
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<List<HopitalDTO>> getAllHopitaux() {
-        log.info("Requête: récupérer tous les hôpitaux");
-        List<Hopital> hopitaux = medicalDataService.getAllHopitaux();
-        List<HopitalDTO> hopitalDTOs = DtoConverter.convertToHopitalDTOList(hopitaux);
-        return ResponseEntity.ok(hopitalDTOs);
+    public ResponseEntity<CursorPageDTO<HopitalDTO>> getAllHopitaux(
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean includeTotal) {
+        log.info("Requête: récupérer une page d'hôpitaux");
+        try {
+            KeysetPage<HopitalRow> page = medicalDataService.getHopitauxPage(size, sort, cursor, includeTotal);
+            Map<Integer, List<ProfessionnelSimpleRow>> professionnels =
+                    medicalDataService.getProfessionnelsSanteByHopitalIds(page.items().stream().map(HopitalRow::id).toList());
+            return ResponseEntity.ok(DtoConverter.convertToCursorPageDTO(page,
+                    hopitaux -> DtoConverter.convertToHopitalDTOList(hopitaux, professionnels)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Pagination des hôpitaux invalide: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
@@ -217,8 +276,10 @@ public class MedicalDataController {
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<List<ProfessionnelSanteSimpleDTO>> getProfessionnelsSanteByHopitalId(@PathVariable Integer hopitalId) {
         log.info("Requête: récupérer les professionnels de santé de l'hôpital avec l'ID: {}", hopitalId);
-        List<ProfessionnelSante> professionnels = medicalDataService.getProfessionnelsSanteByHopitalId(hopitalId);
-        List<ProfessionnelSanteSimpleDTO> professionnelDTOs = DtoConverter.convertToProfessionnelSanteSimpleDTOList(professionnels);
+        List<ProfessionnelSanteSimpleDTO> professionnelDTOs = medicalDataService.getProfessionnelsSanteByHopitalId(hopitalId)
+                .stream()
+                .map(DtoConverter::convertToProfessionnelSanteSimpleDTO)
+                .toList();
         return ResponseEntity.ok(professionnelDTOs);
     }
 
@@ -263,8 +324,37 @@ public class MedicalDataController {
             @PathVariable String end,
             @PathVariable Integer idProfessionel) {
         log.info("Requête: statistiques par période {} du {} au {}", period, start, end);
-        List<StatPeriodeDTO> stats = medicalDataService.getStatsParPeriode(period, start, end, idProfessionel);
-        return ResponseEntity.ok(stats);
+        try {
+            List<StatPeriodeDTO> stats = medicalDataService.getStatsParPeriode(period, start, end, idProfessionel);
+            return ResponseEntity.ok(stats);
+        } catch (IllegalArgumentException e) {
+            log.warn("Statistiques par période invalides: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Statistiques patients/consultations par période (jour/semaine/mois) des professionnels d'un hôpital
+     * @param period "daily" | "weekly" | "monthly"
+     * @param start date de début (format ISO)
+     * @param end date de fin (format ISO)
+     * @param idHopital id de l'hôpital
+     */
+    @GetMapping("/stats/hopitaux/period/{period}/{start}/{end}/{idHopital}")
+    @PreAuthorize("hasAnyRole('PROFESSIONNEL', 'ADMIN')")
+    public ResponseEntity<List<StatPeriodeDTO>> getStatsHopitalParPeriode(
+            @PathVariable String period,
+            @PathVariable String start,
+            @PathVariable String end,
+            @PathVariable Integer idHopital) {
+        log.info("Requête: statistiques par période {} du {} au {} pour l'hôpital {}", period, start, end, idHopital);
+        try {
+            List<StatPeriodeDTO> stats = medicalDataService.getStatsHopitalParPeriode(period, start, end, idHopital);
+            return ResponseEntity.ok(stats);
+        } catch (IllegalArgumentException e) {
+            log.warn("Statistiques par période invalides: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
@@ -276,8 +366,9 @@ public class MedicalDataController {
     public ResponseEntity<List<PatientDTO>> getPatientsByProfessionnel(@PathVariable Integer idProfessionnel) {
         log.info("Requête: récupération des patients consultés par le professionnel avec l'ID: {}", idProfessionnel);
         
-        List<Patient> patients = medicalDataService.getPatientsByProfessionnelId(idProfessionnel);
-        List<PatientDTO> patientDTOs = DtoConverter.convertToPatientDTOList(patients);
+        List<PatientRow> patients = medicalDataService.getPatientsByProfessionnelId(idProfessionnel);
+        List<PatientDTO> patientDTOs = DtoConverter.convertToPatientDTOList(patients,
+                medicalDataService.getConsultationCounts(patients.stream().map(PatientRow::id).toList()));
         
         log.info("Nombre de patients trouvés pour le professionnel {}: {}", idProfessionnel, patientDTOs.size());
         return ResponseEntity.ok(patientDTOs);
@@ -304,76 +395,89 @@ public class MedicalDataController {
     }
 
     /**
-     * Récupère tous les patients du serveur Orthanc d'un hôpital spécifique
+     * Récupère les patients du serveur Orthanc d'un hôpital spécifique.
+     * Sans paramètre de pagination, tous les patients sont renvoyés ; avec page, size, sort, since ou cursor,
+     * seule la page demandée est récupérée et nextCursor permet de lire la suivante.
      * Accessible aux professionnels de santé et aux administrateurs
      */
     @GetMapping("/hopitaux/{hopitalId}/patients-orthanc")
     @PreAuthorize("hasAnyRole('PROFESSIONNEL', 'ADMIN')")
-    public Mono<ResponseEntity<OrthancPatientsResponseDTO>> getOrthancPatientsByHopital(@PathVariable Integer hopitalId) {
+    public Mono<ResponseEntity<OrthancPatientsResponseDTO>> getOrthancPatientsByHopital(
+            @PathVariable Integer hopitalId,
+            @RequestParam(required = false) Integer page,
+            @RequestParam(required = false) Integer size,
+            @RequestParam(required = false) String sort,
+            @RequestParam(required = false) Integer since,
+            @RequestParam(required = false) String cursor) {
         log.info("Requête: récupération des patients Orthanc pour l'hôpital avec l'ID: {}", hopitalId);
         
-        // Récupérer l'hôpital et l'URL DICOM
-        Optional<Hopital> hopitalOpt = medicalDataService.getHopitalById(hopitalId);
-        if (hopitalOpt.isEmpty()) {
-            log.warn("Aucun hôpital trouvé avec l'ID: {}", hopitalId);
+        // Serveur DICOM et nom de l'hôpital depuis la table de routage
+        Optional<OrthancRoutingService.ServerRoute> route = orthancRoutingService.routeForHopital(hopitalId);
+        if (route.isEmpty()) {
+            log.warn("Aucun hôpital équipé d'un serveur DICOM trouvé avec l'ID: {}", hopitalId);
             return Mono.just(ResponseEntity.notFound().build());
         }
-        
-        Hopital hopital = hopitalOpt.get();
-        String orthancUrl = medicalDataService.getDicomUrlByHopitalId(hopitalId);
-        if (orthancUrl == null) {
-            log.warn("Aucun serveur DICOM trouvé pour l'hôpital avec l'ID: {}", hopitalId);
-            return Mono.just(ResponseEntity.notFound().build());
+        String orthancUrl = route.get().baseUrl();
+        String hopitalNom = route.get().hopitalNom();
+
+        // Page demandée: index local ou /tools/find, sans récupérer les autres patients
+        if (page != null || size != null || sort != null || since != null || cursor != null) {
+            try {
+                int pageSize = orthancPatientPagingService.pageSize(size);
+                return orthancPatientPagingService.findPatients(orthancUrl, route.get().serveurId(), page, size, sort,
+                                since, cursor)
+                        .map(patientPage -> ResponseEntity.ok(OrthancPatientsResponseDTO.builder()
+                                .orthancUrl(orthancUrl)
+                                .hopitalId(hopitalId)
+                                .hopitalNom(hopitalNom)
+                                .patients(patientPage.patients())
+                                .page(cursor == null && since == null ? (page != null ? page : 0) : null)
+                                .size(pageSize)
+                                .nextCursor(patientPage.nextCursor())
+                                .build()))
+                        .onErrorReturn(ResponseEntity.status(500).build());
+            } catch (IllegalArgumentException e) {
+                log.warn("Pagination des patients Orthanc invalide pour l'hôpital {}: {}", hopitalId, e.getMessage());
+                return Mono.just(ResponseEntity.badRequest().build());
+            }
         }
-        
-        // Récupérer tous les patients depuis Orthanc
+
+        // Index local à jour: réponse sans solliciter Orthanc
+        Optional<List<OrthancPatientsResponseDTO.OrthancPatientDetailDTO>> indexedPatients =
+                orthancIndexService.findPatients(route.get().serveurId());
+        if (indexedPatients.isPresent()) {
+            return Mono.just(ResponseEntity.ok(OrthancPatientsResponseDTO.builder()
+                    .orthancUrl(orthancUrl)
+                    .hopitalId(hopitalId)
+                    .hopitalNom(hopitalNom)
+                    .patients(indexedPatients.get())
+                    .build()));
+        }
+
+        // Index en cours de construction: récupérer tous les patients depuis Orthanc
         return dynamicOrthancService.getPatients(orthancUrl)
                 .flatMap(patientIds -> {
                     if (patientIds == null || patientIds.length == 0) {
                         log.info("Aucun patient trouvé sur le serveur Orthanc: {}", orthancUrl);
                         return Mono.just(OrthancPatientsResponseDTO.builder()
                                 .orthancUrl(orthancUrl)
-                                .hopitalId(hopital.getId())
-                                .hopitalNom(hopital.getNom())
+                                .hopitalId(hopitalId)
+                                .hopitalNom(hopitalNom)
                                 .patients(new ArrayList<>())
                                 .build());
                     }
                     
-                    // Pour chaque patient, récupérer ses détails
-                    List<Mono<OrthancPatientsResponseDTO.OrthancPatientDetailDTO>> patientDetails = 
-                        Arrays.stream(patientIds)
-                            .map(patientId -> dynamicOrthancService.getPatient(orthancUrl, patientId)
-                                .map(patientData -> {
-                                    @SuppressWarnings("unchecked")
-                                    Map<String, String> mainDicomTags = (Map<String, String>) patientData.get("MainDicomTags");
-                                    @SuppressWarnings("unchecked")
-                                    List<String> studies = (List<String>) patientData.get("Studies");
-                                    
-                                    return OrthancPatientsResponseDTO.OrthancPatientDetailDTO.builder()
-                                            .id((String) patientData.get("ID"))
-                                            .patientName(mainDicomTags != null ? mainDicomTags.get("PatientName") : null)
-                                            .patientBirthDate(mainDicomTags != null ? mainDicomTags.get("PatientBirthDate") : null)
-                                            .patientSex(mainDicomTags != null ? mainDicomTags.get("PatientSex") : null)
-                                            .patientId(mainDicomTags != null ? mainDicomTags.get("PatientID") : null)
-                                            .isStable((Boolean) patientData.getOrDefault("IsStable", false))
-                                            .lastUpdate((String) patientData.get("LastUpdate"))
-                                            .studies(studies != null ? studies : new ArrayList<>())
-                                            .mainDicomTags(mainDicomTags)
-                                            .build();
-                                })
-                                .onErrorReturn(OrthancPatientsResponseDTO.OrthancPatientDetailDTO.builder()
-                                        .id(patientId)
-                                        .build())
-                            )
-                            .collect(Collectors.toList());
-                    
-                    return Mono.zip(patientDetails, objects -> Arrays.stream(objects)
-                            .map(obj -> (OrthancPatientsResponseDTO.OrthancPatientDetailDTO) obj)
-                            .collect(Collectors.toList()))
+                    // Pour chaque patient, récupérer ses détails (concurrence bornée par serveur)
+                    return orthancFanOutService.fanOutToList(orthancUrl, Arrays.asList(patientIds),
+                            patientId -> dynamicOrthancService.getPatient(orthancUrl, patientId)
+                                    .map(orthancMapperService::mapToPatientSummary),
+                            patientId -> OrthancPatientsResponseDTO.OrthancPatientDetailDTO.builder()
+                                    .id(patientId)
+                                    .build())
                         .map(patientDetailsList -> OrthancPatientsResponseDTO.builder()
                                 .orthancUrl(orthancUrl)
-                                .hopitalId(hopital.getId())
-                                .hopitalNom(hopital.getNom())
+                                .hopitalId(hopitalId)
+                                .hopitalNom(hopitalNom)
                                 .patients(patientDetailsList)
                                 .build());
                 })
@@ -381,6 +485,43 @@ public class MedicalDataController {
                 .onErrorReturn(ResponseEntity.status(500).build());
     }
 
+    /**
+     * Variante en flux de la liste des patients Orthanc d'un hôpital (NDJSON ou Server-Sent Events) :
+     * chaque patient est envoyé dès que ses détails sont disponibles, au rythme de lecture du client
+     * Accessible aux professionnels de santé et aux administrateurs
+     */
+    @GetMapping(value = "/hopitaux/{hopitalId}/patients-orthanc/stream",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    @PreAuthorize("hasAnyRole('PROFESSIONNEL', 'ADMIN')")
+    public ResponseEntity<Flux<OrthancPatientsResponseDTO.OrthancPatientDetailDTO>> streamOrthancPatientsByHopital(
+            @PathVariable Integer hopitalId) {
+        log.info("Requête: flux des patients Orthanc pour l'hôpital avec l'ID: {}", hopitalId);
+
+        Optional<OrthancRoutingService.ServerRoute> route = orthancRoutingService.routeForHopital(hopitalId);
+        if (route.isEmpty()) {
+            log.warn("Aucun serveur DICOM trouvé pour l'hôpital avec l'ID: {}", hopitalId);
+            return ResponseEntity.notFound().build();
+        }
+        String orthancUrl = route.get().baseUrl();
+
+        // Index local à jour: lecture page par page
+        Integer serveurId = route.get().serveurId();
+        if (orthancIndexService.isReady(serveurId)) {
+            return ResponseEntity.ok(orthancIndexService.streamPatients(serveurId));
+        }
+
+        // Sinon, détails demandés à Orthanc et émis dans leur ordre d'arrivée
+        Flux<OrthancPatientsResponseDTO.OrthancPatientDetailDTO> patients = dynamicOrthancService.getPatients(orthancUrl)
+                .flatMapMany(patientIds -> orthancFanOutService.fanOut(orthancUrl, Arrays.asList(patientIds),
+                        patientId -> dynamicOrthancService.getPatient(orthancUrl, patientId)
+                                .map(orthancMapperService::mapToPatientSummary),
+                        patientId -> OrthancPatientsResponseDTO.OrthancPatientDetailDTO.builder()
+                                .id(patientId)
+                                .build(),
+                        false));
+        return ResponseEntity.ok(patients);
+    }
+
     /**
      * Récupère les détails complets d'un patient Orthanc avec ses études et séries
      * Accessible aux professionnels de santé et aux administrateurs
@@ -399,125 +540,8 @@ public class MedicalDataController {
             return Mono.just(ResponseEntity.notFound().build());
         }
         
-        // Récupérer les détails du patient
-        return dynamicOrthancService.getPatient(orthancUrl, patientId)
-                .flatMap(patientData -> {
-                    @SuppressWarnings("unchecked")
-                    Map<String, String> patientMainDicomTags = (Map<String, String>) patientData.get("MainDicomTags");
-                    @SuppressWarnings("unchecked")
-                    List<String> studyIds = (List<String>) patientData.get("Studies");
-                    
-                    if (studyIds == null || studyIds.isEmpty()) {
-                        // Patient sans études
-                        OrthancPatientDetailResponseDTO response = OrthancPatientDetailResponseDTO.builder()
-                                .orthancUrl(orthancUrl)
-                                .patientId((String) patientData.get("ID"))
-                                .patientName(patientMainDicomTags != null ? patientMainDicomTags.get("PatientName") : null)
-                                .patientBirthDate(patientMainDicomTags != null ? patientMainDicomTags.get("PatientBirthDate") : null)
-                                .patientSex(patientMainDicomTags != null ? patientMainDicomTags.get("PatientSex") : null)
-                                .patientIdDicom(patientMainDicomTags != null ? patientMainDicomTags.get("PatientID") : null)
-                                .isStable((Boolean) patientData.getOrDefault("IsStable", false))
-                                .lastUpdate((String) patientData.get("LastUpdate"))
-                                .patientMainDicomTags(patientMainDicomTags)
-                                .studies(new ArrayList<>())
-                                .build();
-                        return Mono.just(response);
-                    }
-                    
-                    // Récupérer les détails de chaque étude
-                    List<Mono<OrthancPatientDetailResponseDTO.StudyDetailDTO>> studyDetailMonos = 
-                        studyIds.stream()
-                            .map(studyId -> dynamicOrthancService.getStudy(orthancUrl, studyId)
-                                .flatMap(studyData -> {
-                                    @SuppressWarnings("unchecked")
-                                    Map<String, String> studyMainDicomTags = (Map<String, String>) studyData.get("MainDicomTags");
-                                    @SuppressWarnings("unchecked")
-                                    List<String> seriesIds = (List<String>) studyData.get("Series");
-                                    
-                                    if (seriesIds == null || seriesIds.isEmpty()) {
-                                        // Étude sans séries
-                                        return Mono.just(OrthancPatientDetailResponseDTO.StudyDetailDTO.builder()
-                                                .id((String) studyData.get("ID"))
-                                                .studyDate(studyMainDicomTags != null ? studyMainDicomTags.get("StudyDate") : null)
-                                                .studyTime(studyMainDicomTags != null ? studyMainDicomTags.get("StudyTime") : null)
-                                                .studyDescription(studyMainDicomTags != null ? studyMainDicomTags.get("StudyDescription") : null)
-                                                .studyInstanceUID(studyMainDicomTags != null ? studyMainDicomTags.get("StudyInstanceUID") : null)
-                                                .accessionNumber(studyMainDicomTags != null ? studyMainDicomTags.get("AccessionNumber") : null)
-                                                .isStable((Boolean) studyData.getOrDefault("IsStable", false))
-                                                .lastUpdate((String) studyData.get("LastUpdate"))
-                                                .studyMainDicomTags(studyMainDicomTags)
-                                                .series(new ArrayList<>())
-                                                .build());
-                                    }
-                                    
-                                    // Récupérer les détails de chaque série
-                                    List<Mono<OrthancPatientDetailResponseDTO.SeriesDetailDTO>> seriesDetailMonos = 
-                                        seriesIds.stream()
-                                            .map(seriesId -> dynamicOrthancService.getSeries(orthancUrl, seriesId)
-                                                .map(seriesData -> {
-                                                    @SuppressWarnings("unchecked")
-                                                    Map<String, String> seriesMainDicomTags = (Map<String, String>) seriesData.get("MainDicomTags");
-                                                    @SuppressWarnings("unchecked")
-                                                    List<String> instances = (List<String>) seriesData.get("Instances");
-                                                    
-                                                    return OrthancPatientDetailResponseDTO.SeriesDetailDTO.builder()
-                                                            .id((String) seriesData.get("ID"))
-                                                            .seriesDescription(seriesMainDicomTags != null ? seriesMainDicomTags.get("SeriesDescription") : null)
-                                                            .seriesNumber(seriesMainDicomTags != null ? seriesMainDicomTags.get("SeriesNumber") : null)
-                                                            .modality(seriesMainDicomTags != null ? seriesMainDicomTags.get("Modality") : null)
-                                                            .seriesInstanceUID(seriesMainDicomTags != null ? seriesMainDicomTags.get("SeriesInstanceUID") : null)
-                                                            .bodyPartExamined(seriesMainDicomTags != null ? seriesMainDicomTags.get("BodyPartExamined") : null)
-                                                            .isStable((Boolean) seriesData.getOrDefault("IsStable", false))
-                                                            .lastUpdate((String) seriesData.get("LastUpdate"))
-                                                            .instancesCount(instances != null ? instances.size() : 0)
-                                                            .seriesMainDicomTags(seriesMainDicomTags)
-                                                            .build();
-                                                })
-                                                .onErrorReturn(OrthancPatientDetailResponseDTO.SeriesDetailDTO.builder()
-                                                        .id(seriesId)
-                                                        .build())
-                                            )
-                                            .collect(Collectors.toList());
-                                    
-                                    return Mono.zip(seriesDetailMonos, objects -> Arrays.stream(objects)
-                                            .map(obj -> (OrthancPatientDetailResponseDTO.SeriesDetailDTO) obj)
-                                            .collect(Collectors.toList()))
-                                        .map(seriesDetailsList -> OrthancPatientDetailResponseDTO.StudyDetailDTO.builder()
-                                                .id((String) studyData.get("ID"))
-                                                .studyDate(studyMainDicomTags != null ? studyMainDicomTags.get("StudyDate") : null)
-                                                .studyTime(studyMainDicomTags != null ? studyMainDicomTags.get("StudyTime") : null)
-                                                .studyDescription(studyMainDicomTags != null ? studyMainDicomTags.get("StudyDescription") : null)
-                                                .studyInstanceUID(studyMainDicomTags != null ? studyMainDicomTags.get("StudyInstanceUID") : null)
-                                                .accessionNumber(studyMainDicomTags != null ? studyMainDicomTags.get("AccessionNumber") : null)
-                                                .isStable((Boolean) studyData.getOrDefault("IsStable", false))
-                                                .lastUpdate((String) studyData.get("LastUpdate"))
-                                                .studyMainDicomTags(studyMainDicomTags)
-                                                .series(seriesDetailsList)
-                                                .build());
-                                })
-                                .onErrorReturn(OrthancPatientDetailResponseDTO.StudyDetailDTO.builder()
-                                        .id(studyId)
-                                        .series(new ArrayList<>())
-                                        .build())
-                            )
-                            .collect(Collectors.toList());
-                    
-                    return Mono.zip(studyDetailMonos, objects -> Arrays.stream(objects)
-                            .map(obj -> (OrthancPatientDetailResponseDTO.StudyDetailDTO) obj)
-                            .collect(Collectors.toList()))
-                        .map(studyDetailsList -> OrthancPatientDetailResponseDTO.builder()
-                                .orthancUrl(orthancUrl)
-                                .patientId((String) patientData.get("ID"))
-                                .patientName(patientMainDicomTags != null ? patientMainDicomTags.get("PatientName") : null)
-                                .patientBirthDate(patientMainDicomTags != null ? patientMainDicomTags.get("PatientBirthDate") : null)
-                                .patientSex(patientMainDicomTags != null ? patientMainDicomTags.get("PatientSex") : null)
-                                .patientIdDicom(patientMainDicomTags != null ? patientMainDicomTags.get("PatientID") : null)
-                                .isStable((Boolean) patientData.getOrDefault("IsStable", false))
-                                .lastUpdate((String) patientData.get("LastUpdate"))
-                                .patientMainDicomTags(patientMainDicomTags)
-                                .studies(studyDetailsList)
-                                .build());
-                })
+        // Charger l'arborescence du patient en quelques appels groupés
+        return dynamicOrthancService.loadPatientHierarchy(orthancUrl, patientId)
                 .map(ResponseEntity::ok)
                 .onErrorReturn(ResponseEntity.status(500).build());
     }
@@ -532,157 +556,43 @@ public class MedicalDataController {
     public Mono<ResponseEntity<OrthancPatientDetailResponseDTO>> getOrthancPatientDetailsFromAllHospitals(@PathVariable String patientId) {
         log.info("Requête: récupération des détails du patient Orthanc {} en cherchant dans tous les hôpitaux", patientId);
         
-        // Récupérer tous les hôpitaux
-        List<Hopital> hopitaux = medicalDataService.getAllHopitaux();
-        
-        // Chercher le patient dans chaque hôpital
-        List<Mono<OrthancPatientDetailResponseDTO>> searchMonos = hopitaux.stream()
-                .map(hopital -> {
-                    String orthancUrl = medicalDataService.getDicomUrlByHopitalId(hopital.getId());
-                    if (orthancUrl == null) {
-                        return Mono.<OrthancPatientDetailResponseDTO>empty();
-                    }
-                    
-                    return dynamicOrthancService.getPatient(orthancUrl, patientId)
-                            .flatMap(patientData -> buildPatientDetailResponse(orthancUrl, patientData))
-                            .onErrorResume(e -> {
-                                log.debug("Patient {} non trouvé dans l'hôpital {} ({})", patientId, hopital.getNom(), orthancUrl);
-                                return Mono.empty();
-                            });
-                })
-                .collect(Collectors.toList());
-        
-        return Mono.firstWithValue(searchMonos)
+        // Serveur déjà connu: une seule requête; sinon tous les serveurs sont interrogés en parallèle
+        return orthancPatientLocatorService.findPatientHierarchy(patientId)
                 .map(ResponseEntity::ok)
                 .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
                 .onErrorReturn(ResponseEntity.status(500).build());
     }
 
     /**
-     * Méthode utilitaire pour construire la réponse complète des détails d'un patient
+     * Vignette PNG d'une série (coupe du milieu), rendue une fois par Orthanc puis servie depuis le cache disque.
+     * L'ETag fort permet au navigateur de revalider sans transférer l'image.
+     * Accessible aux professionnels de santé et aux administrateurs
      */
-    private Mono<OrthancPatientDetailResponseDTO> buildPatientDetailResponse(String orthancUrl, Map<String, Object> patientData) {
-        @SuppressWarnings("unchecked")
-        Map<String, String> patientMainDicomTags = (Map<String, String>) patientData.get("MainDicomTags");
-        @SuppressWarnings("unchecked")
-        List<String> studyIds = (List<String>) patientData.get("Studies");
-        
-        if (studyIds == null || studyIds.isEmpty()) {
-            // Patient sans études
-            OrthancPatientDetailResponseDTO response = OrthancPatientDetailResponseDTO.builder()
-                    .orthancUrl(orthancUrl)
-                    .patientId((String) patientData.get("ID"))
-                    .patientName(patientMainDicomTags != null ? patientMainDicomTags.get("PatientName") : null)
-                    .patientBirthDate(patientMainDicomTags != null ? patientMainDicomTags.get("PatientBirthDate") : null)
-                    .patientSex(patientMainDicomTags != null ? patientMainDicomTags.get("PatientSex") : null)
-                    .patientIdDicom(patientMainDicomTags != null ? patientMainDicomTags.get("PatientID") : null)
-                    .isStable((Boolean) patientData.getOrDefault("IsStable", false))
-                    .lastUpdate((String) patientData.get("LastUpdate"))
-                    .patientMainDicomTags(patientMainDicomTags)
-                    .studies(new ArrayList<>())
-                    .build();
-            return Mono.just(response);
+    @GetMapping(value = "/serveurs-dicom/{serveurId}/series/{seriesId}/thumbnail", produces = MediaType.IMAGE_PNG_VALUE)
+    @PreAuthorize("hasAnyRole('PROFESSIONNEL', 'ADMIN')")
+    public Mono<ResponseEntity<byte[]>> getSeriesThumbnail(@PathVariable Integer serveurId, @PathVariable String seriesId,
+                                                           @RequestHeader HttpHeaders headers) {
+        log.debug("Requête: vignette de la série {} du serveur DICOM {}", seriesId, serveurId);
+        String cachedEtag = orthancThumbnailService.cachedEtag(serveurId, seriesId);
+        if (cachedEtag != null && headers.getIfNoneMatch().contains(cachedEtag)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(cachedEtag).build());
+        }
+        Optional<OrthancRoutingService.ServerRoute> route = orthancRoutingService.routeForServeur(serveurId);
+        if (route.isEmpty()) {
+            log.warn("Aucun serveur DICOM trouvé avec l'ID: {}", serveurId);
+            return Mono.just(ResponseEntity.notFound().build());
         }
-        
-        // Récupérer les détails de chaque étude avec leurs séries
-        List<Mono<OrthancPatientDetailResponseDTO.StudyDetailDTO>> studyDetailMonos = 
-            studyIds.stream()
-                .map(studyId -> buildStudyDetailWithSeries(orthancUrl, studyId))
-                .collect(Collectors.toList());
-        
-        return Mono.zip(studyDetailMonos, objects -> Arrays.stream(objects)
-                .map(obj -> (OrthancPatientDetailResponseDTO.StudyDetailDTO) obj)
-                .collect(Collectors.toList()))
-            .map(studyDetailsList -> OrthancPatientDetailResponseDTO.builder()
-                    .orthancUrl(orthancUrl)
-                    .patientId((String) patientData.get("ID"))
-                    .patientName(patientMainDicomTags != null ? patientMainDicomTags.get("PatientName") : null)
-                    .patientBirthDate(patientMainDicomTags != null ? patientMainDicomTags.get("PatientBirthDate") : null)
-                    .patientSex(patientMainDicomTags != null ? patientMainDicomTags.get("PatientSex") : null)
-                    .patientIdDicom(patientMainDicomTags != null ? patientMainDicomTags.get("PatientID") : null)
-                    .isStable((Boolean) patientData.getOrDefault("IsStable", false))
-                    .lastUpdate((String) patientData.get("LastUpdate"))
-                    .patientMainDicomTags(patientMainDicomTags)
-                    .studies(studyDetailsList)
-                    .build());
-    }
 
-    /**
-     * Méthode utilitaire pour construire les détails d'une étude avec ses séries
-     */
-    private Mono<OrthancPatientDetailResponseDTO.StudyDetailDTO> buildStudyDetailWithSeries(String orthancUrl, String studyId) {
-        return dynamicOrthancService.getStudy(orthancUrl, studyId)
-                .flatMap(studyData -> {
-                    @SuppressWarnings("unchecked")
-                    Map<String, String> studyMainDicomTags = (Map<String, String>) studyData.get("MainDicomTags");
-                    @SuppressWarnings("unchecked")
-                    List<String> seriesIds = (List<String>) studyData.get("Series");
-                    
-                    if (seriesIds == null || seriesIds.isEmpty()) {
-                        // Étude sans séries
-                        return Mono.just(OrthancPatientDetailResponseDTO.StudyDetailDTO.builder()
-                                .id((String) studyData.get("ID"))
-                                .studyDate(studyMainDicomTags != null ? studyMainDicomTags.get("StudyDate") : null)
-                                .studyTime(studyMainDicomTags != null ? studyMainDicomTags.get("StudyTime") : null)
-                                .studyDescription(studyMainDicomTags != null ? studyMainDicomTags.get("StudyDescription") : null)
-                                .studyInstanceUID(studyMainDicomTags != null ? studyMainDicomTags.get("StudyInstanceUID") : null)
-                                .accessionNumber(studyMainDicomTags != null ? studyMainDicomTags.get("AccessionNumber") : null)
-                                .isStable((Boolean) studyData.getOrDefault("IsStable", false))
-                                .lastUpdate((String) studyData.get("LastUpdate"))
-                                .studyMainDicomTags(studyMainDicomTags)
-                                .series(new ArrayList<>())
-                                .build());
-                    }
-                    
-                    // Récupérer les détails de chaque série
-                    List<Mono<OrthancPatientDetailResponseDTO.SeriesDetailDTO>> seriesDetailMonos = 
-                        seriesIds.stream()
-                            .map(seriesId -> dynamicOrthancService.getSeries(orthancUrl, seriesId)
-                                .map(seriesData -> {
-                                    @SuppressWarnings("unchecked")
-                                    Map<String, String> seriesMainDicomTags = (Map<String, String>) seriesData.get("MainDicomTags");
-                                    @SuppressWarnings("unchecked")
-                                    List<String> instances = (List<String>) seriesData.get("Instances");
-                                    
-                                    return OrthancPatientDetailResponseDTO.SeriesDetailDTO.builder()
-                                            .id((String) seriesData.get("ID"))
-                                            .seriesDescription(seriesMainDicomTags != null ? seriesMainDicomTags.get("SeriesDescription") : null)
-                                            .seriesNumber(seriesMainDicomTags != null ? seriesMainDicomTags.get("SeriesNumber") : null)
-                                            .modality(seriesMainDicomTags != null ? seriesMainDicomTags.get("Modality") : null)
-                                            .seriesInstanceUID(seriesMainDicomTags != null ? seriesMainDicomTags.get("SeriesInstanceUID") : null)
-                                            .bodyPartExamined(seriesMainDicomTags != null ? seriesMainDicomTags.get("BodyPartExamined") : null)
-                                            .isStable((Boolean) seriesData.getOrDefault("IsStable", false))
-                                            .lastUpdate((String) seriesData.get("LastUpdate"))
-                                            .instancesCount(instances != null ? instances.size() : 0)
-                                            .seriesMainDicomTags(seriesMainDicomTags)
-                                            .build();
-                                })
-                                .onErrorReturn(OrthancPatientDetailResponseDTO.SeriesDetailDTO.builder()
-                                        .id(seriesId)
-                                        .build())
-                            )
-                            .collect(Collectors.toList());
-                    
-                    return Mono.zip(seriesDetailMonos, objects -> Arrays.stream(objects)
-                            .map(obj -> (OrthancPatientDetailResponseDTO.SeriesDetailDTO) obj)
-                            .collect(Collectors.toList()))
-                        .map(seriesDetailsList -> OrthancPatientDetailResponseDTO.StudyDetailDTO.builder()
-                                .id((String) studyData.get("ID"))
-                                .studyDate(studyMainDicomTags != null ? studyMainDicomTags.get("StudyDate") : null)
-                                .studyTime(studyMainDicomTags != null ? studyMainDicomTags.get("StudyTime") : null)
-                                .studyDescription(studyMainDicomTags != null ? studyMainDicomTags.get("StudyDescription") : null)
-                                .studyInstanceUID(studyMainDicomTags != null ? studyMainDicomTags.get("StudyInstanceUID") : null)
-                                .accessionNumber(studyMainDicomTags != null ? studyMainDicomTags.get("AccessionNumber") : null)
-                                .isStable((Boolean) studyData.getOrDefault("IsStable", false))
-                                .lastUpdate((String) studyData.get("LastUpdate"))
-                                .studyMainDicomTags(studyMainDicomTags)
-                                .series(seriesDetailsList)
-                                .build());
-                })
-                .onErrorReturn(OrthancPatientDetailResponseDTO.StudyDetailDTO.builder()
-                        .id(studyId)
-                        .series(new ArrayList<>())
-                        .build());
+        return orthancThumbnailService.getThumbnail(serveurId, route.get().baseUrl(), seriesId)
+                .map(thumbnail -> ResponseEntity.ok()
+                        .eTag(thumbnail.etag())
+                        .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePrivate())
+                        .contentType(MediaType.IMAGE_PNG)
+                        .body(thumbnail.content()))
+                .switchIfEmpty(Mono.just(ResponseEntity.notFound().build()))
+                .onErrorResume(WebClientResponseException.class,
+                        e -> Mono.just(ResponseEntity.status(e.getStatusCode()).build()))
+                .onErrorReturn(ResponseEntity.status(500).build());
     }
 
     /**
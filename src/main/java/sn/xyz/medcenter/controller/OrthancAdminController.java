@@ -0,0 +1,83 @@
+package sn.xyz.medcenter.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import sn.xyz.medcenter.dto.OrthancPoolMetricsDTO;
+import sn.xyz.medcenter.dto.OrthancServerStateDTO;
+import sn.xyz.medcenter.service.DynamicOrthancService;
+import sn.xyz.medcenter.service.OrthancChangeFeedService;
+import sn.xyz.medcenter.service.OrthancClientRegistry;
+import sn.xyz.medcenter.service.OrthancPatientLocatorService;
+import sn.xyz.medcenter.service.OrthancPrefetchService;
+import sn.xyz.medcenter.service.OrthancResilienceService;
+import sn.xyz.medcenter.service.OrthancResourceCache;
+import sn.xyz.medcenter.service.OrthancThumbnailService;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Endpoints d'administration des connexions aux serveurs Orthanc
+ */
+@RestController
+@RequestMapping("/api/orthanc/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class OrthancAdminController {
+
+    private final OrthancClientRegistry orthancClientRegistry;
+    private final DynamicOrthancService dynamicOrthancService;
+    private final OrthancResourceCache orthancResourceCache;
+    private final OrthancChangeFeedService orthancChangeFeedService;
+    private final OrthancPatientLocatorService orthancPatientLocatorService;
+    private final OrthancResilienceService orthancResilienceService;
+    private final OrthancThumbnailService orthancThumbnailService;
+    private final OrthancPrefetchService orthancPrefetchService;
+
+    /**
+     * État des pools de connexions HTTP par serveur Orthanc (connexions utilisées, en attente, saturation)
+     * Nécessite le rôle ADMIN
+     */
+    @GetMapping("/pools")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<OrthancPoolMetricsDTO>> getPoolMetrics() {
+        log.info("Requête: état des pools de connexions Orthanc");
+        return ResponseEntity.ok(orthancClientRegistry.getPoolMetrics());
+    }
+
+    /**
+     * État de résilience par serveur Orthanc (disjoncteur, requêtes en cours et en attente, latence p95,
+     * appels refusés, réessayés et doublés)
+     * Nécessite le rôle ADMIN
+     */
+    @GetMapping("/servers")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<OrthancServerStateDTO>> getServerStates() {
+        log.info("Requête: état de résilience des serveurs Orthanc");
+        return ResponseEntity.ok(orthancResilienceService.getStates());
+    }
+
+    /**
+     * Statistiques du cache des ressources Orthanc, de la localisation des patients, des requêtes partagées
+     * et des vignettes, bilan du dernier préchargement et dernier numéro de séquence /changes traité par serveur
+     * Nécessite le rôle ADMIN
+     */
+    @GetMapping("/cache")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        log.info("Requête: statistiques du cache Orthanc");
+        Map<String, Object> result = new HashMap<>(orthancResourceCache.getStats());
+        result.put("checkpoints", orthancChangeFeedService.getCheckpoints());
+        result.put("locator", orthancPatientLocatorService.getStats());
+        result.put("coalescedRequests", dynamicOrthancService.getCoalescedRequests());
+        result.put("thumbnails", orthancThumbnailService.getStats());
+        result.put("prefetch", orthancPrefetchService.getLastRun());
+        return ResponseEntity.ok(result);
+    }
+}
@@ -1,19 +1,39 @@
 package sn.xyz.medcenter.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.MediaType;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import sn.xyz.medcenter.dto.DicomBatchUploadResultDTO;
+import sn.xyz.medcenter.dto.OrthancFederatedStudyDTO;
 import sn.xyz.medcenter.model.Etude;
 import sn.xyz.medcenter.model.Instance;
 import sn.xyz.medcenter.model.PatientOrthanc;
 import sn.xyz.medcenter.model.Serie;
+import sn.xyz.medcenter.service.DicomArchiveTooLargeException;
+import sn.xyz.medcenter.service.DicomIngestService;
+import sn.xyz.medcenter.service.OrthancFederatedSearchService;
 import sn.xyz.medcenter.service.OrthancService;
+import sn.xyz.medcenter.service.OrthancUnavailableException;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -23,7 +43,12 @@ import java.util.Map;
 @Slf4j
 public class OrthancController {
 
+    private static final MediaType DICOM_MEDIA_TYPE = MediaType.parseMediaType("application/dicom");
+    private static final String DEFAULT_ARCHIVE_NAME = "archive.zip";
+
     private final OrthancService orthancService;
+    private final DicomIngestService dicomIngestService;
+    private final OrthancFederatedSearchService orthancFederatedSearchService;
 
     /**
      * Récupère tous les patients
@@ -122,17 +147,161 @@ public class OrthancController {
 
     /**
      * Upload d'une nouvelle instance DICOM
-     * Nécessite le rôle PROFESSIONNEL
+     * Le corps de la requête est relayé vers Orthanc au fil de sa lecture (taille mémoire constante,
+     * Transfer-Encoding: chunked accepté) ; le débit est renvoyé dans les en-têtes X-Upload-*
+     * Nécessite le rôle RADIOLOGUE
      */
     @PostMapping("/instances")
     @PreAuthorize("hasRole('RADIOLOGUE')")
-    public Mono<ResponseEntity<Instance>> uploadInstance(@RequestBody byte[] dicomData) {
+    public Mono<ResponseEntity<Instance>> uploadInstance(HttpServletRequest request) throws IOException {
         log.info("Requête: upload d'une nouvelle instance DICOM");
-        return orthancService.uploadInstance(dicomData)
-                .map(ResponseEntity::ok)
+        return orthancService.uploadInstance(request.getInputStream(), request.getContentLengthLong())
+                .map(result -> ResponseEntity.ok()
+                        .header("X-Upload-Bytes", String.valueOf(result.getBytes()))
+                        .header("X-Upload-Duration-Ms", String.valueOf(result.getDurationMs()))
+                        .header("X-Upload-Throughput-MBps", String.format(Locale.ROOT, "%.2f", result.getThroughputMBps()))
+                        .body(result.getInstance()))
                 .defaultIfEmpty(ResponseEntity.badRequest().build());
     }
 
+    /**
+     * Upload groupé d'instances DICOM en multipart (champ "files"), les fichiers .zip étant décompressés
+     * Les instances sont envoyées en parallèle à Orthanc ; le bilan détaille le résultat de chacune
+     * Nécessite le rôle RADIOLOGUE
+     */
+    @PostMapping(value = "/instances/batch", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @PreAuthorize("hasRole('RADIOLOGUE')")
+    public Mono<ResponseEntity<DicomBatchUploadResultDTO>> uploadInstances(@RequestParam("files") List<MultipartFile> files) {
+        log.info("Requête: upload groupé de {} fichiers DICOM", files.size());
+        return dicomIngestService.ingestFiles(files)
+                .map(ResponseEntity::ok)
+                .onErrorResume(DicomArchiveTooLargeException.class, this::archiveTooLarge);
+    }
+
+    /**
+     * Upload d'une archive ZIP d'instances DICOM envoyée comme corps de la requête, décompressée au fil de la lecture
+     * Seule voie pour les archives volumineuses : le corps n'est pas soumis aux limites multipart,
+     * seulement aux limites de décompression orthanc.ingest.*. Le nom de l'archive est lu dans Content-Disposition.
+     * Nécessite le rôle RADIOLOGUE
+     */
+    @PostMapping(value = "/instances/batch", consumes = {"application/zip", "application/x-zip-compressed"})
+    @PreAuthorize("hasRole('RADIOLOGUE')")
+    public Mono<ResponseEntity<DicomBatchUploadResultDTO>> uploadArchive(
+            HttpServletRequest request,
+            @RequestHeader(value = HttpHeaders.CONTENT_DISPOSITION, required = false) String contentDisposition) throws IOException {
+        String archiveName = archiveName(contentDisposition);
+        log.info("Requête: upload de l'archive ZIP d'instances DICOM {}", archiveName);
+        return dicomIngestService.ingestZip(archiveName, request.getInputStream())
+                .map(ResponseEntity::ok)
+                .onErrorResume(DicomArchiveTooLargeException.class, this::archiveTooLarge);
+    }
+
+    /**
+     * Nom de fichier annoncé par Content-Disposition, sans chemin ; "archive.zip" à défaut
+     */
+    private static String archiveName(String contentDisposition) {
+        if (contentDisposition == null) {
+            return DEFAULT_ARCHIVE_NAME;
+        }
+        try {
+            String filename = ContentDisposition.parse(contentDisposition).getFilename();
+            filename = filename != null ? StringUtils.getFilename(filename.replace('\\', '/')) : null;
+            return StringUtils.hasText(filename) ? filename : DEFAULT_ARCHIVE_NAME;
+        } catch (IllegalArgumentException e) {
+            return DEFAULT_ARCHIVE_NAME;
+        }
+    }
+
+    private Mono<ResponseEntity<DicomBatchUploadResultDTO>> archiveTooLarge(DicomArchiveTooLargeException e) {
+        log.warn("Envoi groupé interrompu: {}", e.getMessage());
+        return Mono.just(ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).build());
+    }
+
+    /**
+     * Fichier DICOM d'une instance, relayé en flux depuis Orthanc (Range et ETag supportés)
+     * Accessible aux professionnels de santé et radiologues
+     */
+    @GetMapping("/instances/{id}/file")
+    @PreAuthorize("hasAnyRole('PROFESSIONNEL', 'RADIOLOGUE')")
+    public Mono<ResponseEntity<StreamingResponseBody>> getInstanceFile(@PathVariable String id,
+                                                                       @RequestHeader HttpHeaders headers) {
+        log.info("Requête: fichier DICOM de l'instance {}", id);
+        return streamInstance(id, "/file", id, DICOM_MEDIA_TYPE, headers);
+    }
+
+    /**
+     * Aperçu PNG d'une instance, rendu par Orthanc
+     * Accessible aux professionnels de santé et radiologues
+     */
+    @GetMapping("/instances/{id}/preview")
+    @PreAuthorize("hasAnyRole('PROFESSIONNEL', 'RADIOLOGUE')")
+    public Mono<ResponseEntity<StreamingResponseBody>> getInstancePreview(@PathVariable String id,
+                                                                          @RequestHeader HttpHeaders headers) {
+        log.info("Requête: aperçu de l'instance {}", id);
+        return streamInstance(id, "/preview", id + "-preview", MediaType.IMAGE_PNG, headers);
+    }
+
+    /**
+     * Frame d'une instance multi-frame (numérotée à partir de 0 comme dans Orthanc) :
+     * pixels bruts, ou image PNG si rendered=true
+     * Accessible aux professionnels de santé et radiologues
+     */
+    @GetMapping("/instances/{id}/frames/{frame}")
+    @PreAuthorize("hasAnyRole('PROFESSIONNEL', 'RADIOLOGUE')")
+    public Mono<ResponseEntity<StreamingResponseBody>> getInstanceFrame(@PathVariable String id, @PathVariable int frame,
+                                                                        @RequestParam(defaultValue = "false") boolean rendered,
+                                                                        @RequestHeader HttpHeaders headers) {
+        log.info("Requête: frame {} de l'instance {}", frame, id);
+        return rendered
+                ? streamInstance(id, "/frames/" + frame + "/preview", id + "-frame-" + frame + "-preview", MediaType.IMAGE_PNG, headers)
+                : streamInstance(id, "/frames/" + frame + "/raw", id + "-frame-" + frame, MediaType.APPLICATION_OCTET_STREAM, headers);
+    }
+
+    /**
+     * Relaie une ressource binaire d'instance. Une instance Orthanc étant immuable, l'ETag fort est
+     * dérivé de son ID : un If-None-Match correspondant est satisfait sans interroger Orthanc. Un
+     * If-None-Match: * n'est satisfait que si l'instance existe, donc après réponse d'Orthanc.
+     * Les octets sont copiés bloc par bloc vers la réponse, sans être agrégés en mémoire.
+     */
+    private Mono<ResponseEntity<StreamingResponseBody>> streamInstance(String id, String resourcePath, String tag,
+                                                                       MediaType accept, HttpHeaders requestHeaders) {
+        String etag = "\"" + tag + "\"";
+        if (requestHeaders.getIfNoneMatch().contains(etag)) {
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build());
+        }
+        if (requestHeaders.getIfNoneMatch().contains("*")) {
+            // Le contenu n'est pas relayé : le premier bloc suffit à confirmer l'existence de l'instance
+            return orthancService.streamInstanceResource(id, resourcePath, accept, null)
+                    .flatMap(response -> Flux.from(response.getBody())
+                            .take(1)
+                            .map(DataBufferUtils::release)
+                            .then(Mono.just(response.getStatusCode().is2xxSuccessful()
+                                    ? ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).<StreamingResponseBody>build()
+                                    : ResponseEntity.status(response.getStatusCode()).<StreamingResponseBody>build())))
+                    .onErrorResume(WebClientResponseException.class,
+                            e -> Mono.just(ResponseEntity.status(e.getStatusCode()).build()))
+                    .onErrorResume(OrthancUnavailableException.class,
+                            e -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build()));
+        }
+        // If-Range : la plage n'est servie que si la version du client est toujours la bonne
+        String ifRange = requestHeaders.getFirst(HttpHeaders.IF_RANGE);
+        String range = ifRange == null || ifRange.equals(etag) ? requestHeaders.getFirst(HttpHeaders.RANGE) : null;
+
+        return orthancService.streamInstanceResource(id, resourcePath, accept, range)
+                .map(response -> ResponseEntity.status(response.getStatusCode())
+                        .headers(response.getHeaders())
+                        .eTag(etag)
+                        .cacheControl(CacheControl.maxAge(Duration.ofDays(1)).cachePrivate())
+                        .body((StreamingResponseBody) outputStream -> DataBufferUtils
+                                .write(response.getBody(), outputStream)
+                                .map(DataBufferUtils::release)
+                                .blockLast()))
+                .onErrorResume(WebClientResponseException.class,
+                        e -> Mono.just(ResponseEntity.status(e.getStatusCode()).build()))
+                .onErrorResume(OrthancUnavailableException.class,
+                        e -> Mono.just(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build()));
+    }
+
     /**
      * Export d'une étude vers un autre PACS
      * Nécessite le rôle PROFESSIONNEL
@@ -158,4 +327,25 @@ public class OrthancController {
                 .map(ResponseEntity::ok)
                 .defaultIfEmpty(ResponseEntity.notFound().build());
     }
+
+    /**
+     * Recherche DICOM sur tous les serveurs des hôpitaux (NDJSON ou Server-Sent Events) : les études sont
+     * envoyées au fil des réponses, sans doublon de StudyInstanceUID, jusqu'à la limite ou l'échéance (en ms)
+     * Nécessite le rôle PROFESSIONNEL ou RADIOLOGUE
+     */
+    @PostMapping(value = "/tools/find/federated",
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    @PreAuthorize("hasAnyRole('PROFESSIONNEL', 'RADIOLOGUE')")
+    public ResponseEntity<Flux<OrthancFederatedStudyDTO>> findDicomFederated(@RequestBody Map<String, Object> query,
+                                                                              @RequestParam(required = false) Integer limit,
+                                                                              @RequestParam(required = false) Long timeout) {
+        log.info("Requête: recherche DICOM fédérée avec critères: {}", query);
+        try {
+            return ResponseEntity.ok(orthancFederatedSearchService.search(query, limit,
+                    timeout != null ? Duration.ofMillis(timeout) : null));
+        } catch (IllegalArgumentException e) {
+            log.warn("Recherche fédérée refusée: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
 }
@@ -0,0 +1,90 @@
+package sn.xyz.medcenter.controller;
+
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import sn.xyz.medcenter.dto.OrthancExportJobDTO;
+import sn.xyz.medcenter.dto.OrthancExportJobRequestDTO;
+import sn.xyz.medcenter.service.OrthancExportService;
+
+import java.security.Principal;
+import java.util.List;
+
+/**
+ * Endpoints des exports d'études en lot vers d'autres PACS
+ */
+@RestController
+@RequestMapping("/api/orthanc/exports")
+@RequiredArgsConstructor
+@Slf4j
+public class OrthancExportController {
+
+    private final OrthancExportService orthancExportService;
+
+    /**
+     * Lance l'export d'un lot d'études vers une ou plusieurs modalités ; l'export se poursuit en tâche de fond
+     * Nécessite le rôle RADIOLOGUE ou ADMIN
+     */
+    @PostMapping
+    @PreAuthorize("hasAnyRole('RADIOLOGUE', 'ADMIN')")
+    public ResponseEntity<OrthancExportJobDTO> createExport(@Valid @RequestBody OrthancExportJobRequestDTO request,
+                                                            Principal principal) {
+        log.info("Requête: export de {} études vers {}", request.getStudyIds().size(), request.getTargets());
+        try {
+            OrthancExportJobDTO job = orthancExportService.createJob(request, principal != null ? principal.getName() : null);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(job);
+        } catch (IllegalArgumentException e) {
+            log.warn("Export refusé: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Derniers lots d'export et leur avancement
+     * Nécessite le rôle RADIOLOGUE ou ADMIN
+     */
+    @GetMapping
+    @PreAuthorize("hasAnyRole('RADIOLOGUE', 'ADMIN')")
+    public ResponseEntity<List<OrthancExportJobDTO>> getExports() {
+        log.info("Requête: liste des lots d'export");
+        return ResponseEntity.ok(orthancExportService.getRecentJobs());
+    }
+
+    /**
+     * Avancement d'un lot d'export, étude par étude
+     * Nécessite le rôle RADIOLOGUE ou ADMIN
+     */
+    @GetMapping("/{id}")
+    @PreAuthorize("hasAnyRole('RADIOLOGUE', 'ADMIN')")
+    public ResponseEntity<OrthancExportJobDTO> getExport(@PathVariable Long id) {
+        log.info("Requête: avancement du lot d'export {}", id);
+        return orthancExportService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Annule un lot d'export
+     * Nécessite le rôle RADIOLOGUE ou ADMIN
+     */
+    @PostMapping("/{id}/cancel")
+    @PreAuthorize("hasAnyRole('RADIOLOGUE', 'ADMIN')")
+    public ResponseEntity<OrthancExportJobDTO> cancelExport(@PathVariable Long id) {
+        log.info("Requête: annulation du lot d'export {}", id);
+        if (!orthancExportService.cancelJob(id)) {
+            return ResponseEntity.notFound().build();
+        }
+        return orthancExportService.getJob(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
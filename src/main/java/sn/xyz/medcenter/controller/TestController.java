@@ -4,12 +4,14 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import sn.xyz.medcenter.dto.CursorPageDTO;
 import sn.xyz.medcenter.dto.DtoConverter;
+import sn.xyz.medcenter.dto.KeysetPage;
 import sn.xyz.medcenter.dto.PatientDTO;
-import sn.xyz.medcenter.model.Patient;
+import sn.xyz.medcenter.repository.PatientRepository.PatientRow;
 import sn.xyz.medcenter.service.MedicalDataService;
 
-import java.util.List;
+import java.util.Map;
 
 /**
  * Contrôleur de test pour déboguer les problèmes d'API
@@ -24,14 +26,22 @@ public class TestController {
     private final MedicalDataService medicalDataService;
 
     /**
-     * Endpoint de test pour récupérer tous les patients sans authentification
+     * Endpoint de test pour récupérer les patients sans authentification, page par page
      */
     @GetMapping("/patients")
-    public ResponseEntity<List<PatientDTO>> getAllPatients() {
-        log.info("Requête de test: récupérer tous les patients");
-        List<Patient> patients = medicalDataService.getAllPatients();
-        List<PatientDTO> patientDTOs = DtoConverter.convertToPatientDTOList(patients);
-        return ResponseEntity.ok(patientDTOs);
+    public ResponseEntity<CursorPageDTO<PatientDTO>> getAllPatients(@RequestParam(required = false) Integer size,
+                                                                   @RequestParam(required = false) String cursor) {
+        log.info("Requête de test: récupérer une page de patients");
+        try {
+            KeysetPage<PatientRow> page = medicalDataService.getPatientsPage(size, null, cursor, false);
+            Map<Integer, Long> consultationCounts =
+                    medicalDataService.getConsultationCounts(page.items().stream().map(PatientRow::id).toList());
+            return ResponseEntity.ok(DtoConverter.convertToCursorPageDTO(page,
+                    patients -> DtoConverter.convertToPatientDTOList(patients, consultationCounts)));
+        } catch (IllegalArgumentException e) {
+            log.warn("Pagination des patients invalide: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
     }
 
     /**
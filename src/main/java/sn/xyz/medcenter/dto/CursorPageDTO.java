@@ -0,0 +1,26 @@
+package sn.xyz.medcenter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO d'une page de résultats paginée par curseur
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageDTO<T> {
+    private List<T> items;
+    private int size;
+    // Clé de tri de la page (id par défaut)
+    private String sort;
+    // Curseur opaque de la page suivante, null sur la dernière page
+    private String nextCursor;
+    // Nombre total d'éléments, uniquement si demandé (includeTotal=true)
+    private Long total;
+}
@@ -0,0 +1,27 @@
+package sn.xyz.medcenter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO pour le bilan d'un envoi groupé d'instances DICOM (fichiers multiples ou archive ZIP)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DicomBatchUploadResultDTO {
+    private int total;
+    private int succeeded;
+    private int alreadyStored;
+    private int failed;
+    private long bytes;
+    private long durationMs;
+    // Débit global de l'envoi en Mo/s
+    private double throughputMBps;
+    private List<DicomUploadResultDTO> results;
+}
@@ -0,0 +1,27 @@
+package sn.xyz.medcenter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import sn.xyz.medcenter.model.Instance;
+
+/**
+ * DTO pour le résultat de l'envoi d'une instance DICOM vers Orthanc
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DicomUploadResultDTO {
+    // Nom du fichier ou de l'entrée d'archive (envois groupés)
+    private String fileName;
+    // Statut renvoyé par Orthanc (Success, AlreadyStored) ou Failure
+    private String status;
+    private Instance instance;
+    private String error;
+    private long bytes;
+    private long durationMs;
+    // Débit de l'envoi en Mo/s
+    private double throughputMBps;
+}
@@ -1,9 +1,15 @@
 package sn.xyz.medcenter.dto;
 
 import sn.xyz.medcenter.model.*;
+import sn.xyz.medcenter.repository.HopitalRepository.HopitalRow;
+import sn.xyz.medcenter.repository.PatientRepository.PatientRow;
+import sn.xyz.medcenter.repository.ProfessionnelSanteRepository.ProfessionnelRow;
+import sn.xyz.medcenter.repository.ProfessionnelSanteRepository.ProfessionnelSimpleRow;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 
@@ -104,6 +110,19 @@ public class DtoConverter {
         if (patient == null) {
             return null;
         }
+        return convertToPatientDTO(patient, patient.getConsultations() != null ? patient.getConsultations().size() : 0);
+    }
+
+    /**
+     * Convertit une entité Patient en PatientDTO, sans charger ses consultations
+     * @param patient Entité Patient à convertir
+     * @param nombreConsultations Nombre de consultations du patient
+     * @return PatientDTO correspondant
+     */
+    public static PatientDTO convertToPatientDTO(Patient patient, int nombreConsultations) {
+        if (patient == null) {
+            return null;
+        }
         
         return PatientDTO.builder()
                 .id(patient.getId())
@@ -118,7 +137,7 @@ public class DtoConverter {
                 .dateCreation(patient.getDateCreation())
                 .actif(patient.getActif())
                 .dossierMedicalId(patient.getDossierMedical() != null ? patient.getDossierMedical().getId() : null)
-                .nombreConsultations(patient.getConsultations() != null ? patient.getConsultations().size() : 0)
+                .nombreConsultations(nombreConsultations)
                 .build();
     }
 
@@ -136,6 +155,50 @@ public class DtoConverter {
                 .map(DtoConverter::convertToPatientDTO)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Convertit une projection PatientRow en PatientDTO
+     * @param patient Projection PatientRow à convertir
+     * @param nombreConsultations Nombre de consultations du patient
+     * @return PatientDTO correspondant
+     */
+    public static PatientDTO convertToPatientDTO(PatientRow patient, int nombreConsultations) {
+        if (patient == null) {
+            return null;
+        }
+
+        return PatientDTO.builder()
+                .id(patient.id())
+                .lastName(patient.lastName())
+                .firstName(patient.firstName())
+                .username(patient.username())
+                .email(patient.email())
+                .tel(patient.tel())
+                .numeroSecu(patient.numeroSecu())
+                .adresse(patient.adresse())
+                .contactUrgence(patient.contactUrgence())
+                .dateCreation(patient.dateCreation())
+                .actif(patient.actif())
+                .dossierMedicalId(patient.dossierMedicalId())
+                .nombreConsultations(nombreConsultations)
+                .build();
+    }
+
+    /**
+     * Convertit une liste de projections PatientRow en liste de PatientDTO, avec les nombres de consultations déjà comptés
+     * @param patients Liste de projections PatientRow à convertir
+     * @param consultationCounts Nombre de consultations par ID de patient (absent si aucune)
+     * @return Liste de PatientDTO correspondants
+     */
+    public static List<PatientDTO> convertToPatientDTOList(List<PatientRow> patients, Map<Integer, Long> consultationCounts) {
+        if (patients == null) {
+            return Collections.emptyList();
+        }
+
+        return patients.stream()
+                .map(patient -> convertToPatientDTO(patient, consultationCounts.getOrDefault(patient.id(), 0L).intValue()))
+                .collect(Collectors.toList());
+    }
     
     /**
      * Convertit une entité DossierMedical en DossierMedicalDTO
@@ -319,4 +382,128 @@ public class DtoConverter {
                 .map(DtoConverter::convertToHopitalDTO)
                 .collect(Collectors.toList());
     }
+
+    /**
+     * Convertit une projection ProfessionnelRow en ProfessionnelSanteDTO
+     * @param professionnel Projection ProfessionnelRow à convertir
+     * @return ProfessionnelSanteDTO correspondant
+     */
+    public static ProfessionnelSanteDTO convertToProfessionnelSanteDTO(ProfessionnelRow professionnel) {
+        if (professionnel == null) {
+            return null;
+        }
+        HopitalShortDTO hopital = null;
+        if (professionnel.hopitalId() != null) {
+            hopital = HopitalShortDTO.builder()
+                    .id(professionnel.hopitalId())
+                    .nom(professionnel.hopitalNom())
+                    .type(professionnel.hopitalType() != null ? professionnel.hopitalType().toString() : null)
+                    .region(professionnel.hopitalRegion())
+                    .ville(professionnel.hopitalVille())
+                    .adresse(professionnel.hopitalAdresse())
+                    .telephone(professionnel.hopitalTelephone())
+                    .build();
+        }
+        return ProfessionnelSanteDTO.builder()
+                .id(professionnel.id())
+                .lastName(professionnel.lastName())
+                .firstName(professionnel.firstName())
+                .username(professionnel.username())
+                .email(professionnel.email())
+                .tel(professionnel.tel())
+                .role(professionnel.role())
+                .dateCreation(professionnel.dateCreation())
+                .actif(professionnel.actif())
+                .specialite(professionnel.specialite())
+                .numeroOrdre(professionnel.numeroOrdre())
+                .hopital(hopital)
+                .build();
+    }
+
+    /**
+     * Convertit une projection ProfessionnelSimpleRow en ProfessionnelSanteSimpleDTO
+     * @param professionnel Projection ProfessionnelSimpleRow à convertir
+     * @return ProfessionnelSanteSimpleDTO correspondant
+     */
+    public static ProfessionnelSanteSimpleDTO convertToProfessionnelSanteSimpleDTO(ProfessionnelSimpleRow professionnel) {
+        if (professionnel == null) {
+            return null;
+        }
+        return ProfessionnelSanteSimpleDTO.builder()
+                .id(professionnel.id())
+                .lastName(professionnel.lastName())
+                .firstName(professionnel.firstName())
+                .username(professionnel.username())
+                .email(professionnel.email())
+                .tel(professionnel.tel())
+                .role(professionnel.role())
+                .dateCreation(professionnel.dateCreation())
+                .actif(professionnel.actif())
+                .specialite(professionnel.specialite())
+                .numeroOrdre(professionnel.numeroOrdre())
+                .etablissement(professionnel.etablissement())
+                .region(professionnel.region())
+                .build();
+    }
+
+    /**
+     * Convertit une projection HopitalRow en HopitalDTO
+     * @param hopital Projection HopitalRow à convertir
+     * @param professionnels Professionnels de l'hôpital
+     * @return HopitalDTO correspondant
+     */
+    public static HopitalDTO convertToHopitalDTO(HopitalRow hopital, List<ProfessionnelSimpleRow> professionnels) {
+        if (hopital == null) {
+            return null;
+        }
+        return HopitalDTO.builder()
+                .id(hopital.id())
+                .nom(hopital.nom())
+                .type(hopital.type() != null ? hopital.type().toString() : null)
+                .region(hopital.region())
+                .ville(hopital.ville())
+                .adresse(hopital.adresse())
+                .telephone(hopital.telephone())
+                .email(hopital.email())
+                .siteWeb(hopital.siteWeb())
+                .statut(hopital.statut())
+                .professionnels(professionnels.stream()
+                        .map(DtoConverter::convertToProfessionnelSanteSimpleDTO)
+                        .collect(Collectors.toList()))
+                .build();
+    }
+
+    /**
+     * Convertit une liste de projections HopitalRow en liste de HopitalDTO, avec les professionnels déjà chargés
+     * @param hopitaux Liste de projections HopitalRow à convertir
+     * @param professionnels Professionnels par ID d'hôpital (absent si aucun)
+     * @return Liste de HopitalDTO correspondants
+     */
+    public static List<HopitalDTO> convertToHopitalDTOList(List<HopitalRow> hopitaux,
+                                                           Map<Integer, List<ProfessionnelSimpleRow>> professionnels) {
+        if (hopitaux == null) {
+            return Collections.emptyList();
+        }
+        return hopitaux.stream()
+                .map(hopital -> convertToHopitalDTO(hopital, professionnels.getOrDefault(hopital.id(), List.of())))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Convertit une page d'entités paginée par curseur en CursorPageDTO
+     * @param page Page d'entités
+     * @param converter Conversion de la liste d'entités en liste de DTO
+     * @return CursorPageDTO correspondant
+     */
+    public static <T, D> CursorPageDTO<D> convertToCursorPageDTO(KeysetPage<T> page,
+                                                                 Function<List<T>, List<D>> converter) {
+        List<D> items = converter.apply(page.items());
+        return CursorPageDTO.<D>builder()
+                .items(items)
+                .size(items.size())
+                .sort(page.sort())
+                .nextCursor(page.nextCursor())
+                .total(page.total())
+                .build();
+    }
 }
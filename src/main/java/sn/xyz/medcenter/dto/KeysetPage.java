@@ -0,0 +1,13 @@
+package sn.xyz.medcenter.dto;
+
+import java.util.List;
+
+/**
+ * Page d'une liste paginée par curseur, convertie en {@link CursorPageDTO} par {@link DtoConverter}
+ * @param items Éléments de la page
+ * @param sort Clé de tri appliquée
+ * @param nextCursor Curseur de la page suivante, null sur la dernière page
+ * @param total Nombre total d'éléments, null s'il n'a pas été demandé
+ */
+public record KeysetPage<T>(List<T> items, String sort, String nextCursor, Long total) {
+}
@@ -0,0 +1,56 @@
+package sn.xyz.medcenter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO exposant l'avancement et le débit d'un lot d'export
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrthancExportJobDTO {
+    private Long id;
+    private Integer serveurId;
+    // QUEUED, RUNNING, COMPLETED, COMPLETED_WITH_ERRORS ou CANCELLED
+    private String status;
+    private int totalItems;
+    private long pending;
+    private long running;
+    private long succeeded;
+    private long failed;
+    private long cancelled;
+    // Avancement global (0.0 à 100.0), exports en cours compris
+    private double progress;
+    // Études exportées par minute depuis le démarrage du lot
+    private double studiesPerMinute;
+    private String createdBy;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    // Détail par étude et par cible (uniquement pour un lot demandé individuellement)
+    private List<ItemDTO> items;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemDTO {
+        private Long id;
+        private String studyId;
+        private String target;
+        private String status;
+        private String orthancJobId;
+        private int progress;
+        private int attempts;
+        private String error;
+        private LocalDateTime startedAt;
+        private LocalDateTime finishedAt;
+    }
+}
@@ -0,0 +1,30 @@
+package sn.xyz.medcenter.dto;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Demande d'export d'études vers un ou plusieurs PACS : chaque étude est envoyée à chaque cible
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrthancExportJobRequestDTO {
+
+    // Serveur DICOM source (null pour le serveur Orthanc configuré)
+    private Integer serveurId;
+
+    @NotEmpty(message = "La liste des études ne peut pas être vide")
+    private List<@NotBlank String> studyIds;
+
+    // Modalités DICOM cibles déclarées dans Orthanc
+    @NotEmpty(message = "La liste des PACS cibles ne peut pas être vide")
+    private List<@NotBlank String> targets;
+}
@@ -0,0 +1,31 @@
+package sn.xyz.medcenter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO d'une étude trouvée par la recherche sur l'ensemble des serveurs DICOM
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrthancFederatedStudyDTO {
+    // Serveur DICOM et hôpital où l'étude a été trouvée (première réponse reçue)
+    private Integer serveurId;
+    private Integer hopitalId;
+    // ID Orthanc de l'étude sur ce serveur
+    private String id;
+    private String studyInstanceUID;
+    private String studyDate;
+    private String studyTime;
+    private String studyDescription;
+    private String accessionNumber;
+    private String patientId;
+    private String patientName;
+    private String patientBirthDate;
+    private int seriesCount;
+    private String lastUpdate;
+}
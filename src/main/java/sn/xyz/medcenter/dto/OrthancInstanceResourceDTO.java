@@ -0,0 +1,21 @@
+package sn.xyz.medcenter.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * Réponse Orthanc /instances/{id}, ou réponse à l'envoi d'une instance (POST /instances)
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OrthancInstanceResourceDTO(
+        @JsonProperty("ID") String id,
+        // Success ou AlreadyStored (envoi uniquement)
+        @JsonProperty("Status") String status,
+        @JsonProperty("MainDicomTags") Map<String, String> mainDicomTags,
+        @JsonProperty("ParentSeries") String parentSeries,
+        @JsonProperty("FileUuid") String fileUuid,
+        @JsonProperty("FileSize") Long fileSize,
+        @JsonProperty("IndexInSeries") Integer indexInSeries) {
+}
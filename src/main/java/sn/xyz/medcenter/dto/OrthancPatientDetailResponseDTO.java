@@ -59,5 +59,7 @@ public class OrthancPatientDetailResponseDTO {
         private String lastUpdate;
         private Integer instancesCount;
         private Map<String, String> seriesMainDicomTags;
+        // Vignette de la coupe du milieu (null si le serveur n'est pas un ServeurDICOM enregistré)
+        private String thumbnailUrl;
     }
 }
@@ -0,0 +1,24 @@
+package sn.xyz.medcenter.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Réponse Orthanc /patients/{id}
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OrthancPatientResourceDTO(
+        @JsonProperty("ID") String id,
+        @JsonProperty("IsStable") boolean stable,
+        @JsonProperty("LastUpdate") String lastUpdate,
+        @JsonProperty("MainDicomTags") Map<String, String> mainDicomTags,
+        @JsonProperty("Studies") List<String> studies) implements OrthancResource {
+
+    @Override
+    public String parentId() {
+        return null;
+    }
+}
@@ -20,6 +20,11 @@ public class OrthancPatientsResponseDTO {
     private Integer hopitalId;
     private String hopitalNom;
     private List<OrthancPatientDetailDTO> patients;
+    // Pagination (absente quand toute la liste est demandée)
+    private Integer page;
+    private Integer size;
+    // Curseur à renvoyer pour obtenir la page suivante, null sur la dernière page
+    private String nextCursor;
     
     @Data
     @Builder
@@ -0,0 +1,26 @@
+package sn.xyz.medcenter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO exposant l'état du pool de connexions HTTP d'un serveur Orthanc
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrthancPoolMetricsDTO {
+    private Integer serveurId;
+    private String orthancUrl;
+    private int maxConnections;
+    private int acquired;
+    private int idle;
+    private int allocated;
+    private int pendingAcquire;
+    private int maxPendingAcquire;
+    // Part des connexions utilisées (0.0 à 1.0)
+    private double saturation;
+}
@@ -0,0 +1,23 @@
+package sn.xyz.medcenter.dto;
+
+import java.util.Map;
+
+/**
+ * Ressource Orthanc (patient, étude, série) décodée directement par Jackson
+ */
+public interface OrthancResource {
+
+    String id();
+
+    boolean stable();
+
+    // Format Orthanc "AAAAMMJJTHHMMSS"
+    String lastUpdate();
+
+    Map<String, String> mainDicomTags();
+
+    /**
+     * ID Orthanc du parent (patient d'une étude, étude d'une série), null pour un patient
+     */
+    String parentId();
+}
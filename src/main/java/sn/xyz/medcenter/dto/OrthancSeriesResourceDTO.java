@@ -0,0 +1,28 @@
+package sn.xyz.medcenter.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
+import sn.xyz.medcenter.util.JsonArraySizeDeserializer;
+
+import java.util.Map;
+
+/**
+ * Réponse Orthanc /series/{id}. Seul le nombre d'instances est conservé : les IDs des instances
+ * (souvent plusieurs centaines) sont comptés pendant la lecture sans être matérialisés.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OrthancSeriesResourceDTO(
+        @JsonProperty("ID") String id,
+        @JsonProperty("IsStable") boolean stable,
+        @JsonProperty("LastUpdate") String lastUpdate,
+        @JsonProperty("MainDicomTags") Map<String, String> mainDicomTags,
+        @JsonProperty("ParentStudy") String parentStudy,
+        @JsonProperty("Instances") @JsonDeserialize(using = JsonArraySizeDeserializer.class) int instancesCount)
+        implements OrthancResource {
+
+    @Override
+    public String parentId() {
+        return parentStudy;
+    }
+}
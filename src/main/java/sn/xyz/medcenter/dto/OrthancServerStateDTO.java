@@ -0,0 +1,28 @@
+package sn.xyz.medcenter.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO exposant l'état de résilience d'un serveur Orthanc (disjoncteur, concurrence, latence)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrthancServerStateDTO {
+    private String orthancUrl;
+    // CLOSED, OPEN ou HALF_OPEN
+    private String circuitState;
+    // Part des derniers appels en échec (0.0 à 1.0)
+    private double failureRate;
+    private int bufferedCalls;
+    private int inFlight;
+    private int waiting;
+    private Long p95LatencyMs;
+    private long rejectedCalls;
+    private long retriedCalls;
+    private long hedgedCalls;
+}
@@ -0,0 +1,26 @@
+package sn.xyz.medcenter.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Réponse Orthanc /studies/{id}
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record OrthancStudyResourceDTO(
+        @JsonProperty("ID") String id,
+        @JsonProperty("IsStable") boolean stable,
+        @JsonProperty("LastUpdate") String lastUpdate,
+        @JsonProperty("MainDicomTags") Map<String, String> mainDicomTags,
+        @JsonProperty("PatientMainDicomTags") Map<String, String> patientMainDicomTags,
+        @JsonProperty("ParentPatient") String parentPatient,
+        @JsonProperty("Series") List<String> series) implements OrthancResource {
+
+    @Override
+    public String parentId() {
+        return parentPatient;
+    }
+}
@@ -9,6 +9,16 @@ import java.util.List;
 @Data
 @Entity
 @Table(name = "consultation")
+@NamedEntityGraph(name = "Consultation.detail",
+        attributeNodes = {
+                @NamedAttributeNode(value = "professionnel", subgraph = "professionnel"),
+                @NamedAttributeNode(value = "patient", subgraph = "patient"),
+                @NamedAttributeNode("prescriptions")
+        },
+        subgraphs = {
+                @NamedSubgraph(name = "professionnel", attributeNodes = @NamedAttributeNode("hopital")),
+                @NamedSubgraph(name = "patient", attributeNodes = @NamedAttributeNode("dossierMedical"))
+        })
 @NoArgsConstructor
 @AllArgsConstructor
 public class Consultation {
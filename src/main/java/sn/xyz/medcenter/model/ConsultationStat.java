@@ -0,0 +1,117 @@
+package sn.xyz.medcenter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.temporal.IsoFields;
+import java.time.temporal.TemporalAdjusters;
+
+/**
+ * Nombre de consultations et de patients distincts d'une période (jour, semaine ISO ou mois),
+ * pour l'ensemble des consultations, un professionnel de santé ou un hôpital
+ */
+@Entity
+@Table(name = "consultation_stat")
+@IdClass(ConsultationStat.Key.class)
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsultationStat {
+
+    @Id
+    @Column(name = "scope", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Scope scope;
+
+    // ID du professionnel ou de l'hôpital, 0 pour GLOBAL
+    @Id
+    @Column(name = "scope_id", nullable = false)
+    private Integer scopeId;
+
+    @Id
+    @Column(name = "granularity", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Granularity granularity;
+
+    // Premier jour de la période (lundi pour WEEK, 1er du mois pour MONTH)
+    @Id
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(name = "consultations", nullable = false)
+    private long consultations;
+
+    @Column(name = "patients", nullable = false)
+    private long patients;
+
+    public enum Scope {
+        GLOBAL, PROFESSIONNEL, HOPITAL
+    }
+
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        /**
+         * Granularité d'une période exposée par l'API (daily, weekly, monthly ; daily par défaut)
+         */
+        public static Granularity fromPeriod(String period) {
+            return switch (period.toLowerCase()) {
+                case "weekly" -> WEEK;
+                case "monthly" -> MONTH;
+                default -> DAY;
+            };
+        }
+
+        /**
+         * Premier jour de la période contenant une date
+         */
+        public LocalDate start(LocalDate date) {
+            return switch (this) {
+                case DAY -> date;
+                case WEEK -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH -> date.withDayOfMonth(1);
+            };
+        }
+
+        /**
+         * Premier jour de la période suivante
+         */
+        public LocalDate next(LocalDate periodStart) {
+            return switch (this) {
+                case DAY -> periodStart.plusDays(1);
+                case WEEK -> periodStart.plusWeeks(1);
+                case MONTH -> periodStart.plusMonths(1);
+            };
+        }
+
+        /**
+         * Libellé d'une période : 2024-03-12, 2024-W11 (année et semaine ISO) ou 2024-03
+         */
+        public String label(LocalDate periodStart) {
+            return switch (this) {
+                case DAY -> periodStart.toString();
+                case WEEK -> String.format("%d-W%02d", periodStart.get(IsoFields.WEEK_BASED_YEAR),
+                        periodStart.get(IsoFields.WEEK_OF_WEEK_BASED_YEAR));
+                case MONTH -> YearMonth.from(periodStart).toString();
+            };
+        }
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Scope scope;
+        private Integer scopeId;
+        private Granularity granularity;
+        private LocalDate periodStart;
+    }
+}
@@ -0,0 +1,36 @@
+package sn.xyz.medcenter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Dernière consultation prise en compte dans les statistiques pré-agrégées (ligne unique)
+ */
+@Entity
+@Table(name = "consultation_stat_checkpoint")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ConsultationStatCheckpoint {
+
+    @Id
+    private Integer id;
+
+    @Column(name = "last_consultation_id", nullable = false)
+    private Integer lastConsultationId;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
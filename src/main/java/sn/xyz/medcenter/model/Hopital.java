@@ -2,11 +2,13 @@ package sn.xyz.medcenter.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import sn.xyz.medcenter.service.OrthancRoutingEntityListener;
 
 import java.util.List;
 
 @Entity
 @Table(name = "hopital")
+@EntityListeners(OrthancRoutingEntityListener.class)
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -0,0 +1,41 @@
+package sn.xyz.medcenter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Dernier numéro de séquence du flux /changes traité pour un serveur DICOM
+ */
+@Entity
+@Table(name = "orthanc_change_checkpoint")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrthancChangeCheckpoint {
+
+    @Id
+    @Column(name = "serveur_dicom_id")
+    private Integer serveurDicomId;
+
+    @Column(name = "last_seq", nullable = false)
+    private Long lastSeq;
+
+    // Indique que l'index local a été entièrement construit (amorçage terminé)
+    @Column(name = "index_ready", nullable = false)
+    private boolean indexReady;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
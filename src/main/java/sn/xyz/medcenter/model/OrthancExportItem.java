@@ -0,0 +1,67 @@
+package sn.xyz.medcenter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Export d'une étude vers un PACS au sein d'un {@link OrthancExportJob}, suivi par son job Orthanc asynchrone
+ */
+@Entity
+@Table(name = "orthanc_export_item")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrthancExportItem {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "job_id", nullable = false)
+    private Long jobId;
+
+    @Column(name = "study_id", nullable = false)
+    private String studyId;
+
+    // Modalité DICOM cible, telle que déclarée dans Orthanc
+    @Column(name = "target", nullable = false)
+    private String target;
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    // ID du job Orthanc (/jobs/{id}) une fois l'export soumis
+    @Column(name = "orthanc_job_id")
+    private String orthancJobId;
+
+    // Avancement rapporté par Orthanc (0 à 100)
+    @Column(name = "progress", nullable = false)
+    private int progress;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "error")
+    private String error;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public enum Status {
+        PENDING, SUBMITTING, RUNNING, SUCCESS, FAILURE, CANCELLED;
+
+        public boolean isFinal() {
+            return this == SUCCESS || this == FAILURE || this == CANCELLED;
+        }
+    }
+}
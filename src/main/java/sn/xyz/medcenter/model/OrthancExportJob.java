@@ -0,0 +1,61 @@
+package sn.xyz.medcenter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Lot d'export d'études d'un serveur Orthanc vers un ou plusieurs PACS (modalités DICOM),
+ * exécuté en tâche de fond (voir {@link OrthancExportItem})
+ */
+@Entity
+@Table(name = "orthanc_export_job")
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrthancExportJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Serveur source (null pour orthanc.server.url)
+    @Column(name = "serveur_dicom_id")
+    private Integer serveurDicomId;
+
+    @Column(name = "orthanc_url", nullable = false)
+    private String orthancUrl;
+
+    @Column(name = "status", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Status status;
+
+    @Column(name = "total_items", nullable = false)
+    private int totalItems;
+
+    @Column(name = "created_by")
+    private String createdBy;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public enum Status {
+        QUEUED, RUNNING, COMPLETED, COMPLETED_WITH_ERRORS, CANCELLED
+    }
+
+    @PrePersist
+    protected void onCreate() {
+        createdAt = LocalDateTime.now();
+    }
+}
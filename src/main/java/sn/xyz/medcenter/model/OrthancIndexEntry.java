@@ -0,0 +1,82 @@
+package sn.xyz.medcenter.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ressource Orthanc (patient, étude ou série) indexée localement avec ses principaux tags DICOM
+ */
+@Entity
+@Table(name = "orthanc_index_entry",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"serveur_dicom_id", "level", "orthanc_id"}))
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrthancIndexEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "serveur_dicom_id", nullable = false)
+    private Integer serveurDicomId;
+
+    @Column(name = "level", nullable = false)
+    @Enumerated(EnumType.STRING)
+    private Level level;
+
+    @Column(name = "orthanc_id", nullable = false)
+    private String orthancId;
+
+    // ID Orthanc du parent (patient d'une étude, étude d'une série)
+    @Column(name = "parent_orthanc_id")
+    private String parentOrthancId;
+
+    @Column(name = "patient_name")
+    private String patientName;
+
+    // Tag DICOM PatientID
+    @Column(name = "patient_dicom_id")
+    private String patientDicomId;
+
+    @Column(name = "study_instance_uid")
+    private String studyInstanceUid;
+
+    @Column(name = "study_date")
+    private String studyDate;
+
+    @Column(name = "series_instance_uid")
+    private String seriesInstanceUid;
+
+    @Column(name = "modality")
+    private String modality;
+
+    // MainDicomTags complets au format JSON
+    @Column(name = "main_dicom_tags", columnDefinition = "TEXT")
+    private String mainDicomTags;
+
+    @Column(name = "is_stable", nullable = false)
+    private boolean stable;
+
+    @Column(name = "last_update")
+    private String lastUpdate;
+
+    @Column(name = "indexed_at", nullable = false)
+    private LocalDateTime indexedAt;
+
+    public enum Level {
+        PATIENT, STUDY, SERIES
+    }
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        indexedAt = LocalDateTime.now();
+    }
+}
@@ -2,12 +2,14 @@ package sn.xyz.medcenter.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import sn.xyz.medcenter.service.OrthancRoutingEntityListener;
 
 import java.util.List;
 
 @Data
 @Entity
 @Table(name = "professionnel_sante")
+@EntityListeners(OrthancRoutingEntityListener.class)
 @PrimaryKeyJoinColumn(name = "id")
 @EqualsAndHashCode(callSuper = false)
 public class ProfessionnelSante extends Utilisateur {
@@ -2,10 +2,12 @@ package sn.xyz.medcenter.model;
 
 import jakarta.persistence.*;
 import lombok.*;
+import sn.xyz.medcenter.service.OrthancRoutingEntityListener;
 
 @Data
 @Entity
 @Table(name = "serveur_dicom")
+@EntityListeners(OrthancRoutingEntityListener.class)
 @NoArgsConstructor
 @AllArgsConstructor
 public class ServeurDICOM {
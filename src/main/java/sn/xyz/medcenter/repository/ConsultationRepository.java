@@ -1,17 +1,21 @@
 package sn.xyz.medcenter.repository;
 
 import sn.xyz.medcenter.model.Consultation;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 @Repository
 public interface ConsultationRepository extends JpaRepository<Consultation, Integer> {
+    @EntityGraph("Consultation.detail")
     List<Consultation> findByPatientId(Integer patientId);
+    @EntityGraph("Consultation.detail")
     List<Consultation> findByProfessionnelId(Integer professionnelId);
     List<Consultation> findByDateHeureBetween(LocalDateTime start, LocalDateTime end);
 
@@ -20,4 +24,24 @@ public interface ConsultationRepository extends JpaRepository<Consultation, Inte
     @Query("SELECT COUNT(DISTINCT c.patient.id) FROM Consultation c WHERE c.professionnel.id = :professionnelId")
     long countDistinctPatientsByProfessionnelId(@Param("professionnelId") Integer professionnelId);
 
+    @Query("SELECT DISTINCT c.patient.numeroSecu AS numeroSecu, c.professionnel.hopital.id AS hopitalId " +
+           "FROM Consultation c WHERE c.dateHeure BETWEEN :start AND :end AND c.professionnel.hopital IS NOT NULL")
+    List<ScheduledPatient> findScheduledPatients(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("SELECT c.patient.id AS id, COUNT(c) AS count FROM Consultation c " +
+           "WHERE c.patient.id IN :patientIds GROUP BY c.patient.id")
+    List<IdCount> countByPatientIds(@Param("patientIds") Collection<Integer> patientIds);
+
+    /**
+     * Nombre de consultations par patient
+     */
+    interface IdCount {
+        Integer getId();
+        long getCount();
+    }
+
+    interface ScheduledPatient {
+        String getNumeroSecu();
+        Integer getHopitalId();
+    }
 }
@@ -0,0 +1,22 @@
+package sn.xyz.medcenter.repository;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import sn.xyz.medcenter.model.ConsultationStatCheckpoint;
+
+import java.util.Optional;
+
+@Repository
+public interface ConsultationStatCheckpointRepository extends JpaRepository<ConsultationStatCheckpoint, Integer> {
+
+    /**
+     * Point de reprise verrouillé jusqu'à la fin de la transaction : une seule instance recalcule à la fois
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM ConsultationStatCheckpoint c WHERE c.id = :id")
+    Optional<ConsultationStatCheckpoint> findForUpdate(@Param("id") Integer id);
+}
@@ -0,0 +1,39 @@
+package sn.xyz.medcenter.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import sn.xyz.medcenter.model.ConsultationStat;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ConsultationStatRepository extends JpaRepository<ConsultationStat, ConsultationStat.Key> {
+
+    @Query("SELECT s FROM ConsultationStat s WHERE s.scope = :scope AND s.scopeId = :scopeId " +
+           "AND s.granularity = :granularity AND s.periodStart >= :from AND s.periodStart < :to ORDER BY s.periodStart")
+    List<ConsultationStat> findPeriods(@Param("scope") ConsultationStat.Scope scope, @Param("scopeId") Integer scopeId,
+                                       @Param("granularity") ConsultationStat.Granularity granularity,
+                                       @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ConsultationStat s WHERE s.scope = :scope AND s.granularity = :granularity " +
+           "AND s.periodStart >= :from AND s.periodStart < :to")
+    int deletePeriods(@Param("scope") ConsultationStat.Scope scope,
+                      @Param("granularity") ConsultationStat.Granularity granularity,
+                      @Param("from") LocalDate from, @Param("to") LocalDate to);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM ConsultationStat s WHERE s.scope = :scope AND s.scopeId IN :scopeIds " +
+           "AND s.granularity = :granularity AND s.periodStart >= :from AND s.periodStart < :to")
+    int deletePeriods(@Param("scope") ConsultationStat.Scope scope, @Param("scopeIds") Collection<Integer> scopeIds,
+                      @Param("granularity") ConsultationStat.Granularity granularity,
+                      @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -10,6 +10,7 @@ import java.util.List;
 @Repository
 public interface DonneeSanteRepository extends JpaRepository<DonneeSante, Integer> {
     List<DonneeSante> findByParametreId(Integer parametreId);
+    List<DonneeSante> findByParametrePathologiePatientId(Integer patientId);
     List<DonneeSante> findByDateEnregistrementBetween(LocalDateTime start, LocalDateTime end);
     List<DonneeSante> findByValideFalse();
 }
@@ -1,6 +1,11 @@
 package sn.xyz.medcenter.repository;
 
 import sn.xyz.medcenter.model.Hopital;
+import sn.xyz.medcenter.model.TypeHopital;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
@@ -10,5 +15,13 @@ import java.util.List;
 public interface HopitalRepository extends JpaRepository<Hopital, Integer> {
     List<Hopital> findByRegion(String region);
     List<Hopital> findByType(String type);
-}
 
+    Window<HopitalRow> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    /**
+     * Colonnes d'un hôpital affichées dans les listes, lues sans charger d'entité
+     */
+    record HopitalRow(Integer id, String nom, TypeHopital type, String region, String ville, String adresse,
+                      String telephone, String email, String siteWeb, String statut) {
+    }
+}
@@ -0,0 +1,9 @@
+package sn.xyz.medcenter.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import sn.xyz.medcenter.model.OrthancChangeCheckpoint;
+
+@Repository
+public interface OrthancChangeCheckpointRepository extends JpaRepository<OrthancChangeCheckpoint, Integer> {
+}
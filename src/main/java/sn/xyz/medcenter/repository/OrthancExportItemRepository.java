@@ -0,0 +1,101 @@
+package sn.xyz.medcenter.repository;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import sn.xyz.medcenter.model.OrthancExportItem;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrthancExportItemRepository extends JpaRepository<OrthancExportItem, Long> {
+
+    List<OrthancExportItem> findByJobIdOrderByIdAsc(Long jobId);
+
+    List<OrthancExportItem> findByStatusIn(Collection<OrthancExportItem.Status> statuses);
+
+    List<OrthancExportItem> findByJobIdAndStatusOrderByIdAsc(Long jobId, OrthancExportItem.Status status, Pageable pageable);
+
+    @Query("SELECT i.jobId AS jobId, i.status AS status, COUNT(i) AS count FROM OrthancExportItem i " +
+           "WHERE i.jobId IN :jobIds GROUP BY i.jobId, i.status")
+    List<StatusCount> countByStatus(@Param("jobIds") Collection<Long> jobIds);
+
+    /**
+     * Réserve un export en attente ; 0 si une autre instance l'a déjà pris.
+     * La date de réservation (startedAt) fait démarrer le bail de soumission.
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OrthancExportItem i SET i.status = sn.xyz.medcenter.model.OrthancExportItem.Status.SUBMITTING, i.attempts = i.attempts + 1, " +
+           "i.startedAt = :claimedAt " +
+           "WHERE i.id = :id AND i.status = sn.xyz.medcenter.model.OrthancExportItem.Status.PENDING")
+    int claim(@Param("id") Long id, @Param("claimedAt") LocalDateTime claimedAt);
+
+    /**
+     * Exports réservés avant cutoff et toujours en cours de soumission
+     */
+    @Query("SELECT i FROM OrthancExportItem i WHERE i.status = sn.xyz.medcenter.model.OrthancExportItem.Status.SUBMITTING " +
+           "AND (i.startedAt IS NULL OR i.startedAt < :cutoff) ORDER BY i.id")
+    List<OrthancExportItem> findStaleSubmissions(@Param("cutoff") LocalDateTime cutoff);
+
+    boolean existsByOrthancJobId(String orthancJobId);
+
+    /**
+     * Passe un export en cours de soumission à l'état soumis ; 0 s'il a été annulé entre-temps
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OrthancExportItem i SET i.status = sn.xyz.medcenter.model.OrthancExportItem.Status.RUNNING, " +
+           "i.orthancJobId = :orthancJobId, i.startedAt = :startedAt, i.error = NULL " +
+           "WHERE i.id = :id AND i.status = sn.xyz.medcenter.model.OrthancExportItem.Status.SUBMITTING")
+    int markSubmitted(@Param("id") Long id, @Param("orthancJobId") String orthancJobId,
+                      @Param("startedAt") LocalDateTime startedAt);
+
+    /**
+     * Libère un export en cours de soumission (en attente ou en échec) ; 0 s'il a été annulé entre-temps
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OrthancExportItem i SET i.status = :status, i.error = :error, i.finishedAt = :finishedAt " +
+           "WHERE i.id = :id AND i.status = sn.xyz.medcenter.model.OrthancExportItem.Status.SUBMITTING")
+    int releaseSubmission(@Param("id") Long id, @Param("status") OrthancExportItem.Status status,
+                          @Param("error") String error, @Param("finishedAt") LocalDateTime finishedAt);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE OrthancExportItem i SET i.error = :error " +
+           "WHERE i.id = :id AND i.status = sn.xyz.medcenter.model.OrthancExportItem.Status.SUBMITTING")
+    int recordSubmissionError(@Param("id") Long id, @Param("error") String error);
+
+    /**
+     * Avancement d'un export soumis ; 0 s'il a été annulé entre-temps
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OrthancExportItem i SET i.status = :status, i.progress = :progress, i.error = :error, i.finishedAt = :finishedAt " +
+           "WHERE i.id = :id AND i.status = sn.xyz.medcenter.model.OrthancExportItem.Status.RUNNING")
+    int updateRunning(@Param("id") Long id, @Param("status") OrthancExportItem.Status status, @Param("progress") int progress,
+                      @Param("error") String error, @Param("finishedAt") LocalDateTime finishedAt);
+
+    /**
+     * Annule les exports non terminés d'un lot, quel que soit leur état
+     */
+    @Transactional
+    @Modifying
+    @Query("UPDATE OrthancExportItem i SET i.status = sn.xyz.medcenter.model.OrthancExportItem.Status.CANCELLED, i.finishedAt = CURRENT_TIMESTAMP " +
+           "WHERE i.jobId = :jobId AND i.status IN (sn.xyz.medcenter.model.OrthancExportItem.Status.PENDING, " +
+           "sn.xyz.medcenter.model.OrthancExportItem.Status.SUBMITTING, sn.xyz.medcenter.model.OrthancExportItem.Status.RUNNING)")
+    int cancelUnfinished(@Param("jobId") Long jobId);
+
+    interface StatusCount {
+        Long getJobId();
+        OrthancExportItem.Status getStatus();
+        long getCount();
+    }
+}
@@ -0,0 +1,16 @@
+package sn.xyz.medcenter.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import sn.xyz.medcenter.model.OrthancExportJob;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrthancExportJobRepository extends JpaRepository<OrthancExportJob, Long> {
+
+    List<OrthancExportJob> findTop50ByOrderByIdDesc();
+
+    List<OrthancExportJob> findByStatusInOrderByIdAsc(Collection<OrthancExportJob.Status> statuses);
+}
@@ -0,0 +1,42 @@
+package sn.xyz.medcenter.repository;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import sn.xyz.medcenter.model.OrthancIndexEntry;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OrthancIndexEntryRepository extends JpaRepository<OrthancIndexEntry, Long> {
+
+    List<OrthancIndexEntry> findByServeurDicomIdAndLevelAndOrthancIdIn(Integer serveurDicomId, OrthancIndexEntry.Level level,
+                                                                       Collection<String> orthancIds);
+
+    List<OrthancIndexEntry> findByServeurDicomIdAndLevelOrderByPatientNameAscOrthancIdAsc(Integer serveurDicomId,
+                                                                                          OrthancIndexEntry.Level level);
+
+    List<OrthancIndexEntry> findByServeurDicomIdAndLevel(Integer serveurDicomId, OrthancIndexEntry.Level level);
+
+    List<OrthancIndexEntry> findByServeurDicomIdAndLevelAndPatientDicomId(Integer serveurDicomId, OrthancIndexEntry.Level level,
+                                                                          String patientDicomId);
+
+    List<OrthancIndexEntry> findByServeurDicomIdAndLevelAndParentOrthancIdIn(Integer serveurDicomId, OrthancIndexEntry.Level level,
+                                                                             Collection<String> parentOrthancIds);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OrthancIndexEntry e WHERE e.serveurDicomId = :serveurDicomId AND e.level = :level " +
+           "AND e.orthancId IN :orthancIds")
+    int deleteResources(@Param("serveurDicomId") Integer serveurDicomId, @Param("level") OrthancIndexEntry.Level level,
+                        @Param("orthancIds") Collection<String> orthancIds);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM OrthancIndexEntry e WHERE e.serveurDicomId = :serveurDicomId")
+    int deleteByServeur(@Param("serveurDicomId") Integer serveurDicomId);
+}
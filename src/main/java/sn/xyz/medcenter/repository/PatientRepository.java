@@ -1,18 +1,31 @@
 package sn.xyz.medcenter.repository;
 
 import sn.xyz.medcenter.model.Patient;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface PatientRepository extends JpaRepository<Patient, Integer> {
     Optional<Patient> findByNumeroSecu(String numeroSecu);
-    
-    @Query("SELECT DISTINCT c.patient FROM Consultation c WHERE c.professionnel.id = :professionnelId")
-    List<Patient> findPatientsByProfessionnelId(@Param("professionnelId") Integer professionnelId);
+
+    Window<PatientRow> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    List<PatientRow> findDistinctByConsultationsProfessionnelId(Integer professionnelId);
+
+    /**
+     * Colonnes d'un patient affichées dans les listes, lues sans charger d'entité
+     * (dossierMedicalId : jointure externe sur le dossier médical)
+     */
+    record PatientRow(Integer id, String lastName, String firstName, String username, String email, String tel,
+                      String numeroSecu, String adresse, String contactUrgence, LocalDateTime dateCreation,
+                      Boolean actif, Integer dossierMedicalId) {
+    }
 }
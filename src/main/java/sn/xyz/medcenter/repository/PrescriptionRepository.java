@@ -9,5 +9,6 @@ import java.util.List;
 
 @Repository
 public interface PrescriptionRepository extends JpaRepository<Prescription, Integer> {
+    List<Prescription> findByConsultationId(Integer consultationId);
     List<Prescription> findByDateEmissionBetween(LocalDate start, LocalDate end);
 }
@@ -1,15 +1,57 @@
 package sn.xyz.medcenter.repository;
 
 import sn.xyz.medcenter.model.ProfessionnelSante;
+import sn.xyz.medcenter.model.TypeHopital;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ProfessionnelSanteRepository extends JpaRepository<ProfessionnelSante, Integer> {
     List<ProfessionnelSante> findBySpecialite(String specialite);
-    List<ProfessionnelSante> findByHopitalId(Integer hopitalId);
     Optional<ProfessionnelSante> findByNumeroOrdre(String numeroOrdre);
+
+    Window<ProfessionnelRow> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    List<ProfessionnelSimpleRow> findByHopitalIdIn(Collection<Integer> hopitalIds);
+
+    @Query("SELECT p.id AS professionnelId, p.hopital.id AS hopitalId FROM ProfessionnelSante p WHERE p.hopital IS NOT NULL")
+    List<HopitalAssignment> findHopitalAssignments();
+
+    /**
+     * Hôpital de rattachement d'un professionnel de santé
+     */
+    interface HopitalAssignment {
+        Integer getProfessionnelId();
+        Integer getHopitalId();
+    }
+
+    /**
+     * Colonnes d'un professionnel de santé et de son hôpital affichées dans les listes, lues sans charger d'entité
+     * (colonnes hopital* : jointure externe sur l'hôpital)
+     */
+    record ProfessionnelRow(Integer id, String lastName, String firstName, String username, String email, String tel,
+                            String role, LocalDateTime dateCreation, Boolean actif, String specialite,
+                            String numeroOrdre, Integer hopitalId, String hopitalNom, TypeHopital hopitalType,
+                            String hopitalRegion, String hopitalVille, String hopitalAdresse,
+                            String hopitalTelephone) {
+    }
+
+    /**
+     * Colonnes d'un professionnel de santé affichées dans la liste des professionnels d'un hôpital
+     */
+    record ProfessionnelSimpleRow(Integer id, String lastName, String firstName, String username, String email,
+                                  String tel, String role, LocalDateTime dateCreation, Boolean actif,
+                                  String specialite, String numeroOrdre, String etablissement, String region,
+                                  Integer hopitalId) {
+    }
 }
@@ -2,6 +2,7 @@ package sn.xyz.medcenter.repository;
 
 import sn.xyz.medcenter.model.ServeurDICOM;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -9,4 +10,7 @@ import java.util.List;
 @Repository
 public interface ServeurDICOMRepository extends JpaRepository<ServeurDICOM, Integer> {
     List<ServeurDICOM> findByHopitalId(Integer hopitalId);
+
+    @Query("SELECT s FROM ServeurDICOM s JOIN FETCH s.hopital ORDER BY s.id")
+    List<ServeurDICOM> findAllWithHopital();
 }
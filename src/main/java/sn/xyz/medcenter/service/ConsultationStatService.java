@@ -0,0 +1,340 @@
+package sn.xyz.medcenter.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.TypedQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import sn.xyz.medcenter.dto.StatPeriodeDTO;
+import sn.xyz.medcenter.model.ConsultationStat;
+import sn.xyz.medcenter.model.ConsultationStat.Granularity;
+import sn.xyz.medcenter.model.ConsultationStat.Scope;
+import sn.xyz.medcenter.model.ConsultationStatCheckpoint;
+import sn.xyz.medcenter.repository.ConsultationStatCheckpointRepository;
+import sn.xyz.medcenter.repository.ConsultationStatRepository;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Statistiques de consultations pré-agrégées (table consultation_stat) par jour, semaine ISO et mois,
+ * pour l'ensemble des consultations, chaque professionnel de santé et chaque hôpital.
+ * Les consultations sont écrites hors de l'application : les nouvelles consultations (ID supérieur au point de reprise)
+ * sont agrégées périodiquement, en ne recalculant que les périodes qu'elles touchent ; les modifications et suppressions,
+ * ainsi que les consultations validées après leur agrégation, sont rattrapées par le recalcul quotidien des derniers jours.
+ */
+@Service
+@Slf4j
+public class ConsultationStatService {
+
+    private static final int CHECKPOINT_ID = 1;
+
+    private final ConsultationStatRepository statRepository;
+    private final ConsultationStatCheckpointRepository checkpointRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int reconcileDays;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public ConsultationStatService(ConsultationStatRepository statRepository,
+                                   ConsultationStatCheckpointRepository checkpointRepository,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${medical.stats.rollup.enabled:true}") boolean enabled,
+                                   @Value("${medical.stats.reconcile-days:31}") int reconcileDays) {
+        this.statRepository = statRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.reconcileDays = reconcileDays;
+    }
+
+    @Scheduled(fixedDelayString = "${medical.stats.refresh-interval-ms:60000}")
+    public void refreshRollups() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.warn("Mise à jour des statistiques de consultations impossible: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${medical.stats.reconcile-cron:0 15 3 * * *}")
+    public void reconcileRollups() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reconcile(LocalDate.now().minusDays(reconcileDays));
+        } catch (Exception e) {
+            log.warn("Recalcul des statistiques de consultations impossible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Agrège les consultations ajoutées depuis le dernier passage ; au premier passage, construit toutes les périodes
+     */
+    public void refresh() {
+        transactionTemplate.executeWithoutResult(status -> {
+            ConsultationStatCheckpoint checkpoint = checkpointRepository.findForUpdate(CHECKPOINT_ID).orElse(null);
+            int upTo = entityManager.createQuery("SELECT COALESCE(MAX(c.id), 0) FROM Consultation c", Integer.class)
+                    .getSingleResult();
+            if (checkpoint == null) {
+                rebuild(null);
+                checkpoint = ConsultationStatCheckpoint.builder().id(CHECKPOINT_ID).build();
+            } else if (upTo > checkpoint.getLastConsultationId()) {
+                refreshChanged(checkpoint.getLastConsultationId(), upTo);
+            } else {
+                return;
+            }
+            checkpoint.setLastConsultationId(upTo);
+            checkpointRepository.save(checkpoint);
+            log.debug("Statistiques de consultations à jour jusqu'à la consultation {}", upTo);
+        });
+    }
+
+    /**
+     * Recalcule toutes les périodes à partir d'une date, pour tous les professionnels et hôpitaux
+     * @param from Première date recalculée (étendue au début de sa semaine et de son mois)
+     */
+    public void reconcile(LocalDate from) {
+        transactionTemplate.executeWithoutResult(status -> {
+            if (checkpointRepository.findForUpdate(CHECKPOINT_ID).isEmpty()) {
+                // Jamais construites : le prochain refresh() construira toutes les périodes
+                return;
+            }
+            rebuild(from);
+            log.info("Statistiques de consultations recalculées depuis le {}", from);
+        });
+    }
+
+    /**
+     * Statistiques d'une plage de dates : périodes complètes lues dans consultation_stat, périodes de début et de fin
+     * incomplètes (plage ne commençant pas ou ne finissant pas en limite de période) calculées sur leurs seuls jours
+     * @param scope Portée (GLOBAL, PROFESSIONNEL ou HOPITAL)
+     * @param scopeId ID du professionnel ou de l'hôpital, ignoré pour GLOBAL
+     * @param granularity Jour, semaine ou mois
+     * @param start Premier jour de la plage
+     * @param end Dernier jour de la plage (inclus)
+     * @return Statistiques des périodes ayant au moins une consultation, par ordre chronologique
+     */
+    @Transactional(readOnly = true)
+    public List<StatPeriodeDTO> getStats(Scope scope, Integer scopeId, Granularity granularity,
+                                         LocalDate start, LocalDate end) {
+        Integer id = scope == Scope.GLOBAL ? 0 : scopeId;
+        List<StatPeriodeDTO> result = new ArrayList<>();
+        if (start.isAfter(end)) {
+            return result;
+        }
+        LocalDate endExclusive = end.plusDays(1);
+        LocalDate fullFrom = granularity.start(start).equals(start) ? start : granularity.next(granularity.start(start));
+        LocalDate fullTo = granularity.next(granularity.start(end)).equals(endExclusive)
+                ? endExclusive
+                : granularity.start(end);
+
+        if (!fullFrom.equals(start)) {
+            LocalDate to = fullFrom.isBefore(endExclusive) ? fullFrom : endExclusive;
+            aggregate(scope, id, granularity, granularity.start(start), start, to).ifPresent(result::add);
+        }
+        if (fullFrom.isBefore(fullTo)) {
+            for (ConsultationStat stat : statRepository.findPeriods(scope, id, granularity, fullFrom, fullTo)) {
+                result.add(new StatPeriodeDTO(granularity.label(stat.getPeriodStart()), stat.getPatients(),
+                        stat.getConsultations()));
+            }
+        }
+        if (fullTo.isBefore(endExclusive) && !fullTo.isBefore(fullFrom)) {
+            aggregate(scope, id, granularity, fullTo, fullTo, endExclusive).ifPresent(result::add);
+        }
+        return result;
+    }
+
+    /**
+     * Périodes touchées par les consultations d'ID ]after, upTo], recalculées par professionnel, hôpital et globalement
+     */
+    private void refreshChanged(int after, int upTo) {
+        @SuppressWarnings("unchecked")
+        List<Object[]> changes = entityManager.createNativeQuery(
+                        "SELECT DISTINCT c.professionnel_id, ps.hopital_id, DATE(c.date_heure) FROM consultation c " +
+                        "JOIN professionnel_sante ps ON ps.id = c.professionnel_id " +
+                        "WHERE c.id > :after AND c.id <= :upTo")
+                .setParameter("after", after)
+                .setParameter("upTo", upTo)
+                .getResultList();
+
+        Map<Integer, Set<LocalDate>> daysByProfessionnel = new HashMap<>();
+        Map<Integer, Set<LocalDate>> daysByHopital = new HashMap<>();
+        Set<LocalDate> days = new HashSet<>();
+        for (Object[] change : changes) {
+            LocalDate day = toLocalDate(change[2]);
+            days.add(day);
+            daysByProfessionnel.computeIfAbsent(((Number) change[0]).intValue(), k -> new HashSet<>()).add(day);
+            if (change[1] != null) {
+                daysByHopital.computeIfAbsent(((Number) change[1]).intValue(), k -> new HashSet<>()).add(day);
+            }
+        }
+        for (Granularity granularity : Granularity.values()) {
+            recomputeChanged(Scope.GLOBAL, granularity, Map.of(0, days));
+            recomputeChanged(Scope.PROFESSIONNEL, granularity, daysByProfessionnel);
+            recomputeChanged(Scope.HOPITAL, granularity, daysByHopital);
+        }
+        log.debug("{} jours de consultation modifiés (consultations {} à {})", days.size(), after + 1, upTo);
+    }
+
+    /**
+     * Regroupe les périodes touchées en plages contiguës, puis recalcule ensemble les IDs ayant la même plage
+     * (en général : la période courante, en une requête pour tous les professionnels)
+     */
+    private void recomputeChanged(Scope scope, Granularity granularity, Map<Integer, Set<LocalDate>> daysById) {
+        Map<List<LocalDate>, List<Integer>> idsByRange = new LinkedHashMap<>();
+        daysById.forEach((id, days) -> {
+            TreeSet<LocalDate> periods = new TreeSet<>();
+            days.forEach(day -> periods.add(granularity.start(day)));
+            LocalDate from = null;
+            LocalDate to = null;
+            for (LocalDate period : periods) {
+                if (from != null && !period.equals(to)) {
+                    idsByRange.computeIfAbsent(List.of(from, to), k -> new ArrayList<>()).add(id);
+                    from = null;
+                }
+                if (from == null) {
+                    from = period;
+                }
+                to = granularity.next(period);
+            }
+            if (from != null) {
+                idsByRange.computeIfAbsent(List.of(from, to), k -> new ArrayList<>()).add(id);
+            }
+        });
+        idsByRange.forEach((range, ids) ->
+                recompute(scope, granularity, range.get(0), range.get(1), scope == Scope.GLOBAL ? null : ids));
+    }
+
+    /**
+     * Recalcule toutes les portées et granularités, depuis une date ou depuis la première consultation
+     */
+    private void rebuild(LocalDate from) {
+        Object[] bounds = entityManager.createQuery(
+                        "SELECT MIN(c.dateHeure), MAX(c.dateHeure) FROM Consultation c", Object[].class)
+                .getSingleResult();
+        if (bounds[0] == null) {
+            return;
+        }
+        LocalDate first = from != null ? from : ((LocalDateTime) bounds[0]).toLocalDate();
+        LocalDate last = ((LocalDateTime) bounds[1]).toLocalDate();
+        for (Granularity granularity : Granularity.values()) {
+            LocalDate periodFrom = granularity.start(first);
+            LocalDate periodTo = granularity.next(granularity.start(last.isBefore(first) ? first : last));
+            for (Scope scope : Scope.values()) {
+                recompute(scope, granularity, periodFrom, periodTo, null);
+            }
+        }
+    }
+
+    /**
+     * Remplace les périodes [from, to) d'une portée par l'agrégat des consultations brutes
+     * @param scopeIds IDs des professionnels ou hôpitaux à recalculer, null pour tous
+     */
+    private void recompute(Scope scope, Granularity granularity, LocalDate from, LocalDate to,
+                           Collection<Integer> scopeIds) {
+        if (scopeIds == null) {
+            statRepository.deletePeriods(scope, granularity, from, to);
+        } else {
+            statRepository.deletePeriods(scope, scopeIds, granularity, from, to);
+        }
+
+        String periodStart = switch (granularity) {
+            case DAY -> "DATE(c.date_heure)";
+            case WEEK -> "ADDDATE(DATE(c.date_heure), -WEEKDAY(c.date_heure))";
+            case MONTH -> "ADDDATE(DATE(c.date_heure), 1 - DAYOFMONTH(c.date_heure))";
+        };
+        String scopeId = switch (scope) {
+            case GLOBAL -> "0";
+            case PROFESSIONNEL -> "c.professionnel_id";
+            case HOPITAL -> "ps.hopital_id";
+        };
+        StringBuilder sql = new StringBuilder(
+                "INSERT INTO consultation_stat (scope, scope_id, granularity, period_start, consultations, patients) " +
+                "SELECT '" + scope.name() + "', " + scopeId + ", '" + granularity.name() + "', " + periodStart + ", " +
+                "  COUNT(c.id), COUNT(DISTINCT c.patient_id) " +
+                "FROM consultation c ");
+        if (scope == Scope.HOPITAL) {
+            sql.append("JOIN professionnel_sante ps ON ps.id = c.professionnel_id ");
+        }
+        sql.append("WHERE c.date_heure >= :from AND c.date_heure < :to ");
+        if (scope == Scope.HOPITAL) {
+            sql.append("AND ps.hopital_id IS NOT NULL ");
+        }
+        if (scopeIds != null) {
+            sql.append("AND ").append(scopeId).append(" IN (:scopeIds) ");
+        }
+        sql.append("GROUP BY ").append(scope == Scope.GLOBAL ? periodStart : scopeId + ", " + periodStart);
+
+        Query query = entityManager.createNativeQuery(sql.toString())
+                .setParameter("from", from.atStartOfDay())
+                .setParameter("to", to.atStartOfDay());
+        if (scopeIds != null) {
+            query.setParameter("scopeIds", scopeIds);
+        }
+        query.executeUpdate();
+    }
+
+    /**
+     * Agrégat des consultations brutes d'une partie de période [from, to)
+     */
+    private Optional<StatPeriodeDTO> aggregate(Scope scope, Integer scopeId, Granularity granularity,
+                                               LocalDate periodStart, LocalDate from, LocalDate to) {
+        String jpql = "SELECT COUNT(c.id), COUNT(DISTINCT c.patient.id) FROM Consultation c " +
+                "WHERE c.dateHeure >= :from AND c.dateHeure < :to" +
+                switch (scope) {
+                    case GLOBAL -> "";
+                    case PROFESSIONNEL -> " AND c.professionnel.id = :scopeId";
+                    case HOPITAL -> " AND c.professionnel.hopital.id = :scopeId";
+                };
+        TypedQuery<Object[]> query = entityManager.createQuery(jpql, Object[].class)
+                .setParameter("from", from.atStartOfDay())
+                .setParameter("to", to.atStartOfDay());
+        if (scope != Scope.GLOBAL) {
+            query.setParameter("scopeId", scopeId);
+        }
+        Object[] counts = query.getSingleResult();
+        long consultations = ((Number) counts[0]).longValue();
+        if (consultations == 0) {
+            return Optional.empty();
+        }
+        return Optional.of(new StatPeriodeDTO(granularity.label(periodStart), ((Number) counts[1]).longValue(),
+                consultations));
+    }
+
+    private static LocalDate toLocalDate(Object value) {
+        if (value instanceof LocalDate date) {
+            return date;
+        }
+        if (value instanceof java.sql.Date date) {
+            return date.toLocalDate();
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toLocalDate();
+        }
+        return ((LocalDateTime) value).toLocalDate();
+    }
+}
@@ -0,0 +1,11 @@
+package sn.xyz.medcenter.service;
+
+/**
+ * Archive DICOM refusée : taille décompressée ou nombre d'entrées au-delà des limites orthanc.ingest.*
+ */
+public class DicomArchiveTooLargeException extends RuntimeException {
+
+    public DicomArchiveTooLargeException(String message) {
+        super(message);
+    }
+}
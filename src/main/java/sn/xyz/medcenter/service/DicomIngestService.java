@@ -0,0 +1,256 @@
+package sn.xyz.medcenter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import sn.xyz.medcenter.dto.DicomBatchUploadResultDTO;
+import sn.xyz.medcenter.dto.DicomUploadResultDTO;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Ingestion groupée d'instances DICOM : fichiers multiples ou archives ZIP, envoyés à Orthanc
+ * avec un nombre borné d'envois simultanés. Les archives sont lues séquentiellement et chaque
+ * entrée est déposée dans un fichier temporaire, pour que la mémoire utilisée ne dépende pas de leur taille.
+ * La décompression est bornée (taille par entrée, taille décompressée totale et nombre d'entrées par requête) :
+ * au-delà, l'envoi est interrompu par une {@link DicomArchiveTooLargeException}.
+ */
+@Service
+@Slf4j
+public class DicomIngestService {
+
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+    private final OrthancService orthancService;
+    private final int parallelism;
+    private final long maxEntrySize;
+    private final long maxTotalSize;
+    private final int maxEntries;
+
+    public DicomIngestService(OrthancService orthancService,
+                              @Value("${orthanc.ingest.parallelism:8}") int parallelism,
+                              @Value("${orthanc.ingest.max-entry-size:1GB}") DataSize maxEntrySize,
+                              @Value("${orthanc.ingest.max-total-size:20GB}") DataSize maxTotalSize,
+                              @Value("${orthanc.ingest.max-entries:50000}") int maxEntries) {
+        this.orthancService = orthancService;
+        this.parallelism = parallelism;
+        this.maxEntrySize = maxEntrySize.toBytes();
+        this.maxTotalSize = maxTotalSize.toBytes();
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Envoie des fichiers reçus en multipart ; les fichiers .zip sont décompressés
+     * @param files Fichiers DICOM ou archives ZIP
+     * @return Bilan par instance
+     */
+    public Mono<DicomBatchUploadResultDTO> ingestFiles(List<MultipartFile> files) {
+        return Mono.defer(() -> {
+            ExpansionBudget budget = new ExpansionBudget();
+            Flux<IngestItem> items = Flux.fromIterable(files)
+                    .concatMap(file -> isZip(file)
+                            ? zipEntries(file.getOriginalFilename(), file::getInputStream, budget)
+                            : Flux.just(IngestItem.ofMultipart(file)));
+            return ingest(items);
+        });
+    }
+
+    /**
+     * Envoie toutes les instances d'une archive ZIP lue en flux
+     * @param archiveName Nom de l'archive (pour le bilan)
+     * @param archive Contenu de l'archive
+     * @return Bilan par instance
+     */
+    public Mono<DicomBatchUploadResultDTO> ingestZip(String archiveName, InputStream archive) {
+        return Mono.defer(() -> ingest(zipEntries(archiveName, () -> archive, new ExpansionBudget())));
+    }
+
+    private Mono<DicomBatchUploadResultDTO> ingest(Flux<IngestItem> items) {
+        return Mono.defer(() -> {
+            long startedAt = System.nanoTime();
+            return items
+                    .flatMap(this::upload, parallelism)
+                    .doOnDiscard(IngestItem.class, IngestItem::delete)
+                    .collectList()
+                    .map(results -> summarize(results, startedAt));
+        });
+    }
+
+    private Mono<DicomUploadResultDTO> upload(IngestItem item) {
+        return Mono.using(item::open,
+                        content -> orthancService.uploadInstance(content, item.size()),
+                        content -> closeQuietly(content))
+                .map(result -> {
+                    result.setFileName(item.name());
+                    return result;
+                })
+                .onErrorResume(e -> {
+                    log.warn("Échec de l'envoi de {}: {}", item.name(), e.getMessage());
+                    return Mono.just(DicomUploadResultDTO.builder()
+                            .fileName(item.name())
+                            .status("Failure")
+                            .error(e.getMessage())
+                            .build());
+                })
+                .doFinally(signal -> item.delete());
+    }
+
+    /**
+     * Entrées d'une archive ZIP, chacune copiée dans un fichier temporaire au moment où elle est demandée
+     */
+    private Flux<IngestItem> zipEntries(String archiveName, Callable<InputStream> opener, ExpansionBudget budget) {
+        return Flux.using(() -> new ZipInputStream(new BufferedInputStream(opener.call())),
+                        zip -> Flux.<IngestItem>generate(sink -> {
+                            try {
+                                ZipEntry entry = nextEntry(zip, archiveName, budget);
+                                while (entry != null && (entry.isDirectory() || isIgnored(entry.getName()))) {
+                                    entry = nextEntry(zip, archiveName, budget);
+                                }
+                                if (entry == null) {
+                                    sink.complete();
+                                    return;
+                                }
+                                String name = archiveName + "!" + entry.getName();
+                                Path tempFile = Files.createTempFile("dicom-ingest-", ".dcm");
+                                try {
+                                    long size = copyEntry(zip, tempFile, name, budget);
+                                    sink.next(IngestItem.ofTempFile(name, tempFile, size));
+                                } catch (IOException | RuntimeException e) {
+                                    Files.deleteIfExists(tempFile);
+                                    throw e;
+                                }
+                            } catch (DicomArchiveTooLargeException e) {
+                                sink.error(e);
+                            } catch (IOException e) {
+                                sink.error(new UncheckedIOException("Lecture de l'archive " + archiveName + " impossible", e));
+                            }
+                        }),
+                        DicomIngestService::closeQuietly)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private ZipEntry nextEntry(ZipInputStream zip, String archiveName, ExpansionBudget budget) throws IOException {
+        ZipEntry entry = zip.getNextEntry();
+        if (entry != null && budget.entries.incrementAndGet() > maxEntries) {
+            throw new DicomArchiveTooLargeException("L'archive " + archiveName + " dépasse " + maxEntries + " entrées");
+        }
+        return entry;
+    }
+
+    /**
+     * Copie l'entrée courante en comptant les octets réellement décompressés (la taille annoncée par l'archive
+     * n'est pas fiable) et s'arrête dès qu'une limite est dépassée
+     */
+    private long copyEntry(ZipInputStream zip, Path target, String name, ExpansionBudget budget) throws IOException {
+        byte[] buffer = new byte[COPY_BUFFER_SIZE];
+        long size = 0;
+        try (OutputStream out = Files.newOutputStream(target)) {
+            int read;
+            while ((read = zip.read(buffer)) != -1) {
+                size += read;
+                if (size > maxEntrySize) {
+                    throw new DicomArchiveTooLargeException(name + " dépasse " + DataSize.ofBytes(maxEntrySize).toMegabytes()
+                            + " Mo une fois décompressé");
+                }
+                if (budget.bytes.addAndGet(read) > maxTotalSize) {
+                    throw new DicomArchiveTooLargeException("Les archives dépassent " + DataSize.ofBytes(maxTotalSize).toMegabytes()
+                            + " Mo une fois décompressées");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return size;
+    }
+
+    private DicomBatchUploadResultDTO summarize(List<DicomUploadResultDTO> results, long startedAt) {
+        long durationMs = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+        long bytes = results.stream().mapToLong(DicomUploadResultDTO::getBytes).sum();
+        int alreadyStored = (int) results.stream().filter(result -> "AlreadyStored".equals(result.getStatus())).count();
+        int failed = (int) results.stream().filter(result -> "Failure".equals(result.getStatus())).count();
+        log.info("Envoi groupé terminé: {} instances ({} échecs) en {} ms", results.size(), failed, durationMs);
+        return DicomBatchUploadResultDTO.builder()
+                .total(results.size())
+                .succeeded(results.size() - alreadyStored - failed)
+                .alreadyStored(alreadyStored)
+                .failed(failed)
+                .bytes(bytes)
+                .durationMs(durationMs)
+                .throughputMBps(bytes / 1_000_000.0 / (durationMs / 1000.0))
+                .results(results)
+                .build();
+    }
+
+    private static boolean isZip(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        String contentType = file.getContentType();
+        return (name != null && name.toLowerCase().endsWith(".zip"))
+                || "application/zip".equals(contentType) || "application/x-zip-compressed".equals(contentType);
+    }
+
+    private static boolean isIgnored(String entryName) {
+        // Métadonnées macOS et index DICOMDIR, qui ne sont pas des instances
+        return entryName.startsWith("__MACOSX/") || entryName.endsWith("DICOMDIR");
+    }
+
+    private static void closeQuietly(InputStream stream) {
+        try {
+            stream.close();
+        } catch (IOException e) {
+            log.debug("Fermeture du flux impossible: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Octets décompressés et entrées lues pour une requête, toutes archives confondues
+     */
+    private static final class ExpansionBudget {
+
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicInteger entries = new AtomicInteger();
+    }
+
+    /**
+     * Instance à envoyer : fichier multipart ou entrée d'archive déposée dans un fichier temporaire
+     */
+    private record IngestItem(String name, long size, Callable<InputStream> opener, Path tempFile) {
+
+        static IngestItem ofMultipart(MultipartFile file) {
+            return new IngestItem(file.getOriginalFilename(), file.getSize(), file::getInputStream, null);
+        }
+
+        static IngestItem ofTempFile(String name, Path tempFile, long size) {
+            return new IngestItem(name, size, () -> Files.newInputStream(tempFile), tempFile);
+        }
+
+        InputStream open() throws Exception {
+            return opener.call();
+        }
+
+        void delete() {
+            if (tempFile != null) {
+                try {
+                    Files.deleteIfExists(tempFile);
+                } catch (IOException e) {
+                    log.warn("Suppression du fichier temporaire {} impossible: {}", tempFile, e.getMessage());
+                }
+            }
+        }
+    }
+}
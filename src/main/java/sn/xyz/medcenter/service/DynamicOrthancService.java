@@ -2,13 +2,24 @@ package sn.xyz.medcenter.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Service;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.core.publisher.Mono;
+import sn.xyz.medcenter.dto.OrthancPatientDetailResponseDTO;
+import sn.xyz.medcenter.dto.OrthancPatientResourceDTO;
+import sn.xyz.medcenter.dto.OrthancResource;
+import sn.xyz.medcenter.dto.OrthancSeriesResourceDTO;
+import sn.xyz.medcenter.dto.OrthancStudyResourceDTO;
+import sn.xyz.medcenter.service.OrthancResourceCache.Level;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
 
 /**
  * Service pour faire des appels Orthanc avec des URLs dynamiques
@@ -17,13 +28,21 @@ import java.util.Map;
 @Slf4j
 public class DynamicOrthancService {
 
-    private final WebClient webClient;
+    private final OrthancClientRegistry clientRegistry;
+    private final OrthancResilienceService resilienceService;
+    private final OrthancMapperService mapper;
+    private final OrthancResourceCache resourceCache;
 
-    public DynamicOrthancService(WebClient.Builder webClientBuilder) {
-        this.webClient = webClientBuilder
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
-                .build();
+    // Requêtes en cours par URL complète, partagées entre les appelants simultanés
+    private final Map<String, Mono<?>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder coalescedRequests = new LongAdder();
+
+    public DynamicOrthancService(OrthancClientRegistry clientRegistry, OrthancResilienceService resilienceService,
+                                 OrthancMapperService mapper, OrthancResourceCache resourceCache) {
+        this.clientRegistry = clientRegistry;
+        this.resilienceService = resilienceService;
+        this.mapper = mapper;
+        this.resourceCache = resourceCache;
     }
 
     /**
@@ -35,10 +54,10 @@ public class DynamicOrthancService {
         log.info("Récupération des patients depuis: {}", orthancUrl);
         String fullUrl = orthancUrl + "/patients";
         
-        return webClient.get()
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
                 .uri(fullUrl)
                 .retrieve()
-                .bodyToMono(String[].class)
+                .bodyToMono(String[].class))
                 .doOnNext(patients -> {
                     if (patients != null) {
                         log.info("Patients récupérés depuis {}: {}", orthancUrl, patients.length);
@@ -53,16 +72,28 @@ public class DynamicOrthancService {
      * @param patientId ID du patient
      * @return Détails du patient
      */
-    public Mono<Map<String, Object>> getPatient(String orthancUrl, String patientId) {
+    public Mono<OrthancPatientResourceDTO> getPatient(String orthancUrl, String patientId) {
+        OrthancPatientResourceDTO cached = resourceCache.get(orthancUrl, Level.PATIENT, patientId, OrthancPatientResourceDTO.class);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
         log.info("Récupération des détails du patient {} depuis: {}", patientId, orthancUrl);
         String fullUrl = orthancUrl + "/patients/" + patientId;
         
-        return webClient.get()
+        return singleFlight(fullUrl, () -> resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
                 .uri(fullUrl)
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .bodyToMono(OrthancPatientResourceDTO.class))
+                .doOnNext(patient -> resourceCache.put(orthancUrl, Level.PATIENT, patient))
                 .doOnNext(patient -> log.info("Détails du patient {} récupérés depuis {}", patientId, orthancUrl))
-                .doOnError(e -> log.error("Erreur lors de la récupération du patient {} depuis {}: {}", patientId, orthancUrl, e.getMessage()));
+                .doOnError(e -> {
+                    // Patient absent : cas attendu lors de la recherche d'un patient sur plusieurs serveurs
+                    if (e instanceof WebClientResponseException.NotFound) {
+                        log.debug("Patient {} absent de {}", patientId, orthancUrl);
+                    } else {
+                        log.error("Erreur lors de la récupération du patient {} depuis {}: {}", patientId, orthancUrl, e.getMessage());
+                    }
+                }));
     }
 
     /**
@@ -71,16 +102,21 @@ public class DynamicOrthancService {
      * @param studyId ID de l'étude
      * @return Détails de l'étude
      */
-    public Mono<Map<String, Object>> getStudy(String orthancUrl, String studyId) {
+    public Mono<OrthancStudyResourceDTO> getStudy(String orthancUrl, String studyId) {
+        OrthancStudyResourceDTO cached = resourceCache.get(orthancUrl, Level.STUDY, studyId, OrthancStudyResourceDTO.class);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
         log.info("Récupération des détails de l'étude {} depuis: {}", studyId, orthancUrl);
         String fullUrl = orthancUrl + "/studies/" + studyId;
         
-        return webClient.get()
+        return singleFlight(fullUrl, () -> resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
                 .uri(fullUrl)
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .bodyToMono(OrthancStudyResourceDTO.class))
+                .doOnNext(study -> resourceCache.put(orthancUrl, Level.STUDY, study))
                 .doOnNext(study -> log.info("Détails de l'étude {} récupérés depuis {}", studyId, orthancUrl))
-                .doOnError(e -> log.error("Erreur lors de la récupération de l'étude {} depuis {}: {}", studyId, orthancUrl, e.getMessage()));
+                .doOnError(e -> log.error("Erreur lors de la récupération de l'étude {} depuis {}: {}", studyId, orthancUrl, e.getMessage())));
     }
 
     /**
@@ -89,15 +125,412 @@ public class DynamicOrthancService {
      * @param seriesId ID de la série
      * @return Détails de la série
      */
-    public Mono<Map<String, Object>> getSeries(String orthancUrl, String seriesId) {
+    public Mono<OrthancSeriesResourceDTO> getSeries(String orthancUrl, String seriesId) {
+        OrthancSeriesResourceDTO cached = resourceCache.get(orthancUrl, Level.SERIES, seriesId, OrthancSeriesResourceDTO.class);
+        if (cached != null) {
+            return Mono.just(cached);
+        }
         log.info("Récupération des détails de la série {} depuis: {}", seriesId, orthancUrl);
         String fullUrl = orthancUrl + "/series/" + seriesId;
         
-        return webClient.get()
+        return singleFlight(fullUrl, () -> resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
                 .uri(fullUrl)
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .bodyToMono(OrthancSeriesResourceDTO.class))
+                .doOnNext(series -> resourceCache.put(orthancUrl, Level.SERIES, series))
                 .doOnNext(series -> log.info("Détails de la série {} récupérés depuis {}", seriesId, orthancUrl))
-                .doOnError(e -> log.error("Erreur lors de la récupération de la série {} depuis {}: {}", seriesId, orthancUrl, e.getMessage()));
+                .doOnError(e -> log.error("Erreur lors de la récupération de la série {} depuis {}: {}", seriesId, orthancUrl, e.getMessage())));
+    }
+
+    /**
+     * Récupère toutes les études d'un patient en un seul appel (réponses complètes)
+     * @param orthancUrl URL du serveur Orthanc
+     * @param patientId ID du patient
+     * @return Détails des études du patient
+     */
+    public Mono<List<OrthancStudyResourceDTO>> getPatientStudies(String orthancUrl, String patientId) {
+        log.info("Récupération des études du patient {} depuis: {}", patientId, orthancUrl);
+        String fullUrl = orthancUrl + "/patients/" + patientId + "/studies?expand";
+
+        return singleFlight(fullUrl, () -> resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
+                .uri(fullUrl)
+                .retrieve()
+                .bodyToFlux(OrthancStudyResourceDTO.class)
+                .collectList())
+                .doOnNext(studies -> studies.forEach(study -> resourceCache.put(orthancUrl, Level.STUDY, study)))
+                .doOnError(e -> log.error("Erreur lors de la récupération des études du patient {} depuis {}: {}", patientId, orthancUrl, e.getMessage())));
+    }
+
+    /**
+     * Récupère toutes les séries d'un patient, toutes études confondues, en un seul appel
+     * @param orthancUrl URL du serveur Orthanc
+     * @param patientId ID du patient
+     * @return Détails des séries du patient
+     */
+    public Mono<List<OrthancSeriesResourceDTO>> getPatientSeries(String orthancUrl, String patientId) {
+        log.info("Récupération des séries du patient {} depuis: {}", patientId, orthancUrl);
+        String fullUrl = orthancUrl + "/patients/" + patientId + "/series?expand";
+
+        return singleFlight(fullUrl, () -> resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
+                .uri(fullUrl)
+                .retrieve()
+                .bodyToFlux(OrthancSeriesResourceDTO.class)
+                .collectList())
+                .doOnNext(seriesList -> seriesList.forEach(series -> resourceCache.put(orthancUrl, Level.SERIES, series)))
+                .doOnError(e -> log.error("Erreur lors de la récupération des séries du patient {} depuis {}: {}", patientId, orthancUrl, e.getMessage())));
+    }
+
+    /**
+     * Liste paginée des ressources d'un niveau avec leurs détails (utilisée pour amorcer l'index local)
+     * @param orthancUrl URL du serveur Orthanc
+     * @param resource Niveau Orthanc ("patients", "studies" ou "series")
+     * @param since Rang de la première ressource
+     * @param limit Nombre maximum de ressources
+     * @param type Type de réponse du niveau
+     * @return Détails des ressources
+     */
+    public <T extends OrthancResource> Mono<List<T>> listResources(String orthancUrl, String resource, int since,
+                                                                   int limit, Class<T> type) {
+        String fullUrl = orthancUrl + "/" + resource + "?expand&since=" + since + "&limit=" + limit;
+
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
+                .uri(fullUrl)
+                .retrieve()
+                .bodyToFlux(type)
+                .collectList())
+                .doOnError(e -> log.error("Erreur lors de la liste des {} depuis {}: {}", resource, orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * ID de l'instance du milieu d'une série, dans l'ordre géométrique des coupes (/ordered-slices)
+     * @param orthancUrl URL du serveur Orthanc
+     * @param seriesId ID de la série
+     * @return ID de l'instance, ou vide si la série n'a pas d'instance
+     */
+    public Mono<String> getMiddleInstanceId(String orthancUrl, String seriesId) {
+        String fullUrl = orthancUrl + "/series/" + seriesId + "/ordered-slices";
+
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
+                .uri(fullUrl)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {}))
+                .flatMap(slices -> {
+                    // SlicesShort: [instanceId, premier frame, nombre de frames] ; Dicom: chemins /instances/{id}
+                    if (slices.get("SlicesShort") instanceof List<?> shortSlices && !shortSlices.isEmpty()
+                            && shortSlices.get(shortSlices.size() / 2) instanceof List<?> slice && !slice.isEmpty()) {
+                        return Mono.justOrEmpty((String) slice.get(0));
+                    }
+                    if (slices.get("Dicom") instanceof List<?> paths && !paths.isEmpty()) {
+                        String path = (String) paths.get(paths.size() / 2);
+                        return Mono.just(path.replace("/instances/", "").replace("/file", ""));
+                    }
+                    return Mono.empty();
+                })
+                .doOnError(e -> log.error("Erreur lors de la lecture des coupes de la série {} depuis {}: {}", seriesId, orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * Aperçu PNG d'une instance, rendu par Orthanc
+     * @param orthancUrl URL du serveur Orthanc
+     * @param instanceId ID de l'instance
+     * @return Image PNG
+     */
+    public Mono<byte[]> getInstancePreview(String orthancUrl, String instanceId) {
+        String fullUrl = orthancUrl + "/instances/" + instanceId + "/preview";
+
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
+                .uri(fullUrl)
+                .accept(MediaType.IMAGE_PNG)
+                .retrieve()
+                .bodyToMono(byte[].class))
+                .doOnError(e -> log.error("Erreur lors du rendu de l'instance {} depuis {}: {}", instanceId, orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * IDs Orthanc des patients portant un PatientID DICOM donné (/tools/find)
+     * @param orthancUrl URL du serveur Orthanc
+     * @param patientDicomId Tag DICOM PatientID
+     * @return IDs Orthanc des patients
+     */
+    public Mono<List<String>> findPatientIds(String orthancUrl, String patientDicomId) {
+        Map<String, Object> query = Map.of(
+                "Level", "Patient",
+                "Query", Map.of("PatientID", patientDicomId));
+
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).post()
+                .uri(orthancUrl + "/tools/find")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(query)
+                .retrieve()
+                .bodyToMono(String[].class)
+                .map(List::of))
+                .doOnError(e -> log.error("Erreur lors de la recherche du patient DICOM {} sur {}: {}", patientDicomId, orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * Page de patients via /tools/find (Since/Limit, tri optionnel), détails inclus dans la réponse
+     * @param orthancUrl URL du serveur Orthanc
+     * @param since Rang du premier patient
+     * @param limit Nombre maximum de patients
+     * @param orderBy Critère OrderBy Orthanc (Type, Key, Direction), ou null pour l'ordre natif
+     * @return Détails des patients de la page
+     */
+    public Mono<List<OrthancPatientResourceDTO>> findPatients(String orthancUrl, int since, int limit,
+                                                             Map<String, String> orderBy) {
+        Map<String, Object> query = new LinkedHashMap<>();
+        query.put("Level", "Patient");
+        query.put("Query", Map.of());
+        query.put("Expand", true);
+        query.put("Since", since);
+        query.put("Limit", limit);
+        if (orderBy != null) {
+            query.put("OrderBy", List.of(orderBy));
+        }
+
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).post()
+                .uri(orthancUrl + "/tools/find")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(query)
+                .retrieve()
+                .bodyToFlux(OrthancPatientResourceDTO.class)
+                .collectList())
+                .doOnError(e -> log.error("Erreur lors de la recherche paginée des patients sur {}: {}", orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * Études correspondant à une requête /tools/find, détails inclus dans la réponse
+     * @param orthancUrl URL du serveur Orthanc
+     * @param query Requête Orthanc (Level Study, Expand)
+     * @return Détails des études trouvées
+     */
+    public Mono<List<OrthancStudyResourceDTO>> findStudies(String orthancUrl, Map<String, Object> query) {
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).post()
+                .uri(orthancUrl + "/tools/find")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(query)
+                .retrieve()
+                .bodyToFlux(OrthancStudyResourceDTO.class)
+                .collectList())
+                .doOnError(e -> log.error("Erreur lors de la recherche d'études sur {}: {}", orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * Soumet l'envoi de ressources vers une modalité DICOM sous forme de job Orthanc asynchrone
+     * @param orthancUrl URL du serveur Orthanc
+     * @param modality Nom de la modalité cible déclarée dans Orthanc
+     * @param resources IDs Orthanc des ressources à envoyer
+     * @return ID du job Orthanc
+     */
+    public Mono<String> storeToModality(String orthancUrl, String modality, List<String> resources) {
+        return resilienceService.call(orthancUrl, clientRegistry.forUrl(orthancUrl).post()
+                .uri(orthancUrl + "/modalities/{modality}/store", modality)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of("Resources", resources, "Asynchronous", true))
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {}))
+                .map(response -> (String) response.get("ID"))
+                .doOnError(e -> log.error("Erreur lors de l'envoi de {} vers {} depuis {}: {}", resources, modality, orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * État d'un job Orthanc (State, Progress, ErrorDescription...)
+     * @param orthancUrl URL du serveur Orthanc
+     * @param jobId ID du job
+     * @return Réponse /jobs/{id}
+     */
+    public Mono<Map<String, Object>> getJob(String orthancUrl, String jobId) {
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
+                .uri(orthancUrl + "/jobs/{id}", jobId)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {}))
+                .doOnError(e -> log.error("Erreur lors de la lecture du job {} depuis {}: {}", jobId, orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * Annule un job Orthanc
+     * @param orthancUrl URL du serveur Orthanc
+     * @param jobId ID du job
+     */
+    public Mono<Void> cancelJob(String orthancUrl, String jobId) {
+        return resilienceService.call(orthancUrl, clientRegistry.forUrl(orthancUrl).post()
+                .uri(orthancUrl + "/jobs/{id}/cancel", jobId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(Map.of())
+                .retrieve()
+                .bodyToMono(Void.class))
+                .doOnError(e -> log.error("Erreur lors de l'annulation du job {} sur {}: {}", jobId, orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * Jobs d'un serveur Orthanc, en cours et historique récent (JobsHistorySize)
+     * @param orthancUrl URL du serveur Orthanc
+     * @return Réponse /jobs?expand (ID, Type, State, CreationTime, Content...)
+     */
+    public Mono<List<Map<String, Object>>> getJobs(String orthancUrl) {
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
+                .uri(orthancUrl + "/jobs?expand")
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {}))
+                .doOnError(e -> log.error("Erreur lors de la lecture des jobs depuis {}: {}", orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * AET d'une modalité DICOM déclarée dans Orthanc
+     * @param orthancUrl URL du serveur Orthanc
+     * @param modality Nom de la modalité
+     * @return AET, ou vide si la modalité n'est pas déclarée
+     */
+    public Mono<String> getModalityAet(String orthancUrl, String modality) {
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
+                .uri(orthancUrl + "/modalities?expand")
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Map<String, Object>>>() {}))
+                .flatMap(modalities -> Mono.justOrEmpty(modalities.get(modality)))
+                .flatMap(configuration -> Mono.justOrEmpty((String) configuration.get("AET")))
+                .doOnError(e -> log.error("Erreur lors de la lecture des modalités depuis {}: {}", orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * Page du flux de modifications d'un serveur Orthanc
+     * @param orthancUrl URL du serveur Orthanc
+     * @param since Dernier numéro de séquence déjà traité
+     * @param limit Nombre maximum de modifications
+     * @return Réponse /changes (Changes, Done, Last)
+     */
+    public Mono<Map<String, Object>> getChanges(String orthancUrl, long since, int limit) {
+        return getChangesPage(orthancUrl, orthancUrl + "/changes?since=" + since + "&limit=" + limit);
+    }
+
+    /**
+     * Numéro de séquence de la dernière modification d'un serveur Orthanc
+     * @param orthancUrl URL du serveur Orthanc
+     * @return Dernier numéro de séquence
+     */
+    public Mono<Long> getLastChangeSeq(String orthancUrl) {
+        return getChangesPage(orthancUrl, orthancUrl + "/changes?last")
+                .map(page -> page.get("Last") instanceof Number last ? last.longValue() : 0L);
+    }
+
+    private Mono<Map<String, Object>> getChangesPage(String orthancUrl, String fullUrl) {
+        return resilienceService.get(orthancUrl, clientRegistry.forUrl(orthancUrl).get()
+                .uri(fullUrl)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {}))
+                .doOnError(e -> log.error("Erreur lors de la lecture du flux /changes de {}: {}", orthancUrl, e.getMessage()));
+    }
+
+    /**
+     * Charge l'arborescence complète d'un patient (études et séries) en trois appels parallèles,
+     * au lieu d'un appel par étude et par série. Sans appel si toute l'arborescence est en cache.
+     * @param orthancUrl URL du serveur Orthanc
+     * @param patientId ID du patient
+     * @return Détails complets du patient
+     */
+    public Mono<OrthancPatientDetailResponseDTO> loadPatientHierarchy(String orthancUrl, String patientId) {
+        OrthancPatientResourceDTO cachedPatient = resourceCache.get(orthancUrl, Level.PATIENT, patientId,
+                OrthancPatientResourceDTO.class);
+        if (cachedPatient != null) {
+            return loadPatientHierarchy(orthancUrl, cachedPatient);
+        }
+        return Mono.zip(getPatient(orthancUrl, patientId),
+                        getPatientStudies(orthancUrl, patientId),
+                        getPatientSeries(orthancUrl, patientId))
+                .map(tuple -> withThumbnails(orthancUrl,
+                        mapper.mapToPatientDetailResponse(orthancUrl, tuple.getT1(), tuple.getT2(), tuple.getT3())));
+    }
+
+    /**
+     * Charge l'arborescence d'un patient dont la réponse Orthanc est déjà connue (deux appels parallèles,
+     * aucun si ses études et séries sont en cache)
+     * @param orthancUrl URL du serveur Orthanc
+     * @param patientData Réponse Orthanc du patient
+     * @return Détails complets du patient
+     */
+    public Mono<OrthancPatientDetailResponseDTO> loadPatientHierarchy(String orthancUrl, OrthancPatientResourceDTO patientData) {
+        OrthancPatientDetailResponseDTO cached = hierarchyFromCache(orthancUrl, patientData);
+        if (cached != null) {
+            log.debug("Arborescence du patient {} servie depuis le cache", patientData.id());
+            return Mono.just(withThumbnails(orthancUrl, cached));
+        }
+        String patientId = patientData.id();
+        return Mono.zip(getPatientStudies(orthancUrl, patientId), getPatientSeries(orthancUrl, patientId))
+                .map(tuple -> withThumbnails(orthancUrl,
+                        mapper.mapToPatientDetailResponse(orthancUrl, patientData, tuple.getT1(), tuple.getT2())));
+    }
+
+    /**
+     * Nombre d'appels servis par une requête identique déjà en cours
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.sum();
+    }
+
+    /**
+     * Partage une requête entre les appelants simultanés : tant qu'une requête vers la même URL est
+     * en cours, les nouveaux abonnés reçoivent son résultat au lieu d'en envoyer une autre. La requête
+     * n'est annulée que si tous ses abonnés se désabonnent.
+     */
+    @SuppressWarnings("unchecked")
+    private <T> Mono<T> singleFlight(String fullUrl, Supplier<Mono<T>> request) {
+        return Mono.defer(() -> {
+            boolean[] created = {false};
+            Mono<?> shared = inFlight.computeIfAbsent(fullUrl, key -> {
+                created[0] = true;
+                return request.get()
+                        .doFinally(signal -> inFlight.remove(key))
+                        .share();
+            });
+            if (!created[0]) {
+                coalescedRequests.increment();
+                log.debug("Requête en cours réutilisée: {}", fullUrl);
+            }
+            return (Mono<T>) shared;
+        });
+    }
+
+    /**
+     * Renseigne l'URL de vignette des séries d'un serveur enregistré
+     */
+    private OrthancPatientDetailResponseDTO withThumbnails(String orthancUrl, OrthancPatientDetailResponseDTO detail) {
+        Integer serveurId = clientRegistry.serveurIdFor(orthancUrl);
+        if (serveurId == null || detail.getStudies() == null) {
+            return detail;
+        }
+        for (OrthancPatientDetailResponseDTO.StudyDetailDTO study : detail.getStudies()) {
+            if (study.getSeries() != null) {
+                for (OrthancPatientDetailResponseDTO.SeriesDetailDTO series : study.getSeries()) {
+                    series.setThumbnailUrl(OrthancThumbnailService.thumbnailUrl(serveurId, series.getId()));
+                }
+            }
+        }
+        return detail;
+    }
+
+    private OrthancPatientDetailResponseDTO hierarchyFromCache(String orthancUrl, OrthancPatientResourceDTO patientData) {
+        List<OrthancStudyResourceDTO> studies = new ArrayList<>();
+        List<OrthancSeriesResourceDTO> series = new ArrayList<>();
+        List<String> studyIds = patientData.studies();
+        if (studyIds == null) {
+            return null;
+        }
+        for (String studyId : studyIds) {
+            OrthancStudyResourceDTO study = resourceCache.get(orthancUrl, Level.STUDY, studyId, OrthancStudyResourceDTO.class);
+            if (study == null) {
+                return null;
+            }
+            studies.add(study);
+            List<String> seriesIds = study.series();
+            if (seriesIds != null) {
+                for (String seriesId : seriesIds) {
+                    OrthancSeriesResourceDTO cachedSeries = resourceCache.get(orthancUrl, Level.SERIES, seriesId,
+                            OrthancSeriesResourceDTO.class);
+                    if (cachedSeries == null) {
+                        return null;
+                    }
+                    series.add(cachedSeries);
+                }
+            }
+        }
+        return mapper.mapToPatientDetailResponse(orthancUrl, patientData, studies, series);
     }
 }
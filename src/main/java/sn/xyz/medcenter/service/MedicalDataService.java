@@ -1,20 +1,35 @@
 package sn.xyz.medcenter.service;
 
-import jakarta.persistence.EntityManager;
-import jakarta.persistence.PersistenceContext;
-import jakarta.persistence.Query;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import sn.xyz.medcenter.dto.KeysetPage;
 import sn.xyz.medcenter.dto.StatPeriodeDTO;
 import sn.xyz.medcenter.model.*;
 import sn.xyz.medcenter.repository.*;
+import sn.xyz.medcenter.repository.HopitalRepository.HopitalRow;
+import sn.xyz.medcenter.repository.PatientRepository.PatientRow;
+import sn.xyz.medcenter.repository.ProfessionnelSanteRepository.ProfessionnelRow;
+import sn.xyz.medcenter.repository.ProfessionnelSanteRepository.ProfessionnelSimpleRow;
+import sn.xyz.medcenter.util.PageCursorUtil;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
 import java.util.stream.Collectors;
 
 /**
@@ -25,6 +40,20 @@ import java.util.stream.Collectors;
 @Slf4j
 public class MedicalDataService {
 
+    // Clés de tri autorisées pour les listes paginées (nom exposé -> propriété JPA)
+    private static final Map<String, SortKey<PatientRow>> PATIENT_SORT_KEYS = Map.of(
+            "id", new SortKey<>("id", PatientRow::id),
+            "nom", new SortKey<>("lastName", PatientRow::lastName),
+            "numeroSecu", new SortKey<>("numeroSecu", PatientRow::numeroSecu));
+    private static final Map<String, SortKey<ProfessionnelRow>> PROFESSIONNEL_SORT_KEYS = Map.of(
+            "id", new SortKey<>("id", ProfessionnelRow::id),
+            "nom", new SortKey<>("lastName", ProfessionnelRow::lastName),
+            "specialite", new SortKey<>("specialite", ProfessionnelRow::specialite));
+    private static final Map<String, SortKey<HopitalRow>> HOPITAL_SORT_KEYS = Map.of(
+            "id", new SortKey<>("id", HopitalRow::id),
+            "nom", new SortKey<>("nom", HopitalRow::nom),
+            "region", new SortKey<>("region", HopitalRow::region));
+
     private final PatientRepository patientRepository;
     private final DossierMedicalRepository dossierMedicalRepository;
     private final ConsultationRepository consultationRepository;
@@ -35,9 +64,14 @@ public class MedicalDataService {
     private final HopitalRepository hopitalRepository;
     private final UtilisateurRepository utilisateurRepository;
     private final EmailLogRepository emailLogRepository;
+    private final OrthancRoutingService orthancRoutingService;
+    private final ConsultationStatService consultationStatService;
+
+    @Value("${medical.paging.default-size:50}")
+    private int defaultPageSize;
 
-    @PersistenceContext
-    private EntityManager entityManager;
+    @Value("${medical.paging.max-size:500}")
+    private int maxPageSize;
 
     /**
      * Compte le nombre total de consultations effectuées par un professionnel de santé
@@ -71,6 +105,36 @@ public class MedicalDataService {
         return patientRepository.findAll();
     }
 
+    /**
+     * Page de patients, par ordre de clé de tri puis d'ID ; seules les colonnes affichées sont lues
+     * @param size Taille de page, ou null pour medical.paging.default-size
+     * @param sort Clé de tri (id, nom, numeroSecu), ou null pour id
+     * @param cursor Curseur de la page suivante renvoyé par l'appel précédent, ou null pour la première page
+     * @param includeTotal true pour compter l'ensemble des patients
+     * @return Page de patients
+     * @throws IllegalArgumentException si la taille, le tri ou le curseur sont invalides
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<PatientRow> getPatientsPage(Integer size, String sort, String cursor, boolean includeTotal) {
+        log.info("Récupération d'une page de patients (taille: {}, tri: {})", size, sort);
+        return scroll(PATIENT_SORT_KEYS, size, sort, cursor, includeTotal,
+                patientRepository::findAllBy, patientRepository::count);
+    }
+
+    /**
+     * Nombre de consultations de chaque patient, en une requête
+     * @param patientIds IDs des patients
+     * @return Nombre de consultations par ID de patient (absent si aucune)
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, Long> getConsultationCounts(Collection<Integer> patientIds) {
+        if (patientIds.isEmpty()) {
+            return Map.of();
+        }
+        return consultationRepository.countByPatientIds(patientIds).stream()
+                .collect(Collectors.toMap(ConsultationRepository.IdCount::getId, ConsultationRepository.IdCount::getCount));
+    }
+
     /**
      * Récupère un patient par son ID
      * @param id ID du patient
@@ -118,13 +182,7 @@ public class MedicalDataService {
     @Transactional(readOnly = true)
     public List<Consultation> getConsultationsByPatientId(Integer patientId) {
         log.info("Récupération des consultations pour le patient avec l'ID: {}", patientId);
-        // Recherche du patient
-        Optional<Patient> patient = patientRepository.findById(patientId);
-        if (patient.isPresent()) {
-            // Retourne les consultations associées au patient
-            return patient.get().getConsultations();
-        }
-        return new ArrayList<>();
+        return consultationRepository.findByPatientId(patientId);
     }
 
     /**
@@ -135,19 +193,7 @@ public class MedicalDataService {
     @Transactional(readOnly = true)
     public List<Consultation> getConsultationsByProfessionnelId(Integer professionnelId) {
         log.info("Récupération des consultations effectuées par le professionnel avec l'ID: {}", professionnelId);
-        // Recherche du professionnel de santé
-        Optional<ProfessionnelSante> professionnel = professionnelSanteRepository.findById(professionnelId);
-        if (professionnel.isPresent()) {
-            // Filtrer les consultations manuellement
-            return consultationRepository.findAll().stream()
-                    .filter(c -> {
-                        // Vérifier si la consultation est liée au professionnel de santé spécifié
-                        // Note: Nous devons adapter cette logique à la structure réelle de votre modèle
-                        return c.getId() != null; // Placeholder - à adapter selon votre modèle
-                    })
-                    .collect(Collectors.toList());
-        }
-        return new ArrayList<>();
+        return consultationRepository.findByProfessionnelId(professionnelId);
     }
 
     /**
@@ -158,11 +204,7 @@ public class MedicalDataService {
     @Transactional(readOnly = true)
     public List<Prescription> getPrescriptionsByConsultationId(Integer consultationId) {
         log.info("Récupération des prescriptions pour la consultation avec l'ID: {}", consultationId);
-        // Filtrer les prescriptions par consultation
-        return prescriptionRepository.findAll().stream()
-                .filter(p -> p.getConsultation() != null && 
-                       p.getConsultation().getId().equals(consultationId))
-                .collect(Collectors.toList());
+        return prescriptionRepository.findByConsultationId(consultationId);
     }
 
     /**
@@ -173,14 +215,8 @@ public class MedicalDataService {
     @Transactional(readOnly = true)
     public List<DonneeSante> getDonneesSanteByPatientId(Integer patientId) {
         log.info("Récupération des données de santé pour le patient avec l'ID: {}", patientId);
-        // Filtrer les données de santé manuellement
-        return donneeSanteRepository.findAll().stream()
-                .filter(d -> {
-                    // Vérifier si la donnée de santé est liée au patient spécifié
-                    // Note: Nous devons adapter cette logique à la structure réelle de votre modèle
-                    return d.getId() != null; // Placeholder - à adapter selon votre modèle
-                })
-                .collect(Collectors.toList());
+        // Données rattachées au patient par ses pathologies chroniques et leurs paramètres de suivi
+        return donneeSanteRepository.findByParametrePathologiePatientId(patientId);
     }
 
     /**
@@ -210,6 +246,24 @@ public class MedicalDataService {
         return professionnelSanteRepository.findAll();
     }
 
+    /**
+     * Page de professionnels de santé et de leur hôpital, par ordre de clé de tri puis d'ID ;
+     * seules les colonnes affichées sont lues
+     * @param size Taille de page, ou null pour medical.paging.default-size
+     * @param sort Clé de tri (id, nom, specialite), ou null pour id
+     * @param cursor Curseur de la page suivante renvoyé par l'appel précédent, ou null pour la première page
+     * @param includeTotal true pour compter l'ensemble des professionnels
+     * @return Page de professionnels de santé
+     * @throws IllegalArgumentException si la taille, le tri ou le curseur sont invalides
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<ProfessionnelRow> getProfessionnelsSantePage(Integer size, String sort, String cursor,
+                                                                     boolean includeTotal) {
+        log.info("Récupération d'une page de professionnels de santé (taille: {}, tri: {})", size, sort);
+        return scroll(PROFESSIONNEL_SORT_KEYS, size, sort, cursor, includeTotal,
+                professionnelSanteRepository::findAllBy, professionnelSanteRepository::count);
+    }
+
     /**
      * Récupère un professionnel de santé par son ID
      * @param id ID du professionnel de santé
@@ -231,6 +285,37 @@ public class MedicalDataService {
         return hopitalRepository.findAll();
     }
 
+    /**
+     * Page d'hôpitaux, par ordre de clé de tri puis d'ID ; seules les colonnes affichées sont lues
+     * (professionnels : voir {@link #getProfessionnelsSanteByHopitalIds})
+     * @param size Taille de page, ou null pour medical.paging.default-size
+     * @param sort Clé de tri (id, nom, region), ou null pour id
+     * @param cursor Curseur de la page suivante renvoyé par l'appel précédent, ou null pour la première page
+     * @param includeTotal true pour compter l'ensemble des hôpitaux
+     * @return Page d'hôpitaux
+     * @throws IllegalArgumentException si la taille, le tri ou le curseur sont invalides
+     */
+    @Transactional(readOnly = true)
+    public KeysetPage<HopitalRow> getHopitauxPage(Integer size, String sort, String cursor, boolean includeTotal) {
+        log.info("Récupération d'une page d'hôpitaux (taille: {}, tri: {})", size, sort);
+        return scroll(HOPITAL_SORT_KEYS, size, sort, cursor, includeTotal,
+                hopitalRepository::findAllBy, hopitalRepository::count);
+    }
+
+    /**
+     * Professionnels de santé de plusieurs hôpitaux, en une requête
+     * @param hopitalIds IDs des hôpitaux
+     * @return Professionnels par ID d'hôpital (absent si aucun)
+     */
+    @Transactional(readOnly = true)
+    public Map<Integer, List<ProfessionnelSimpleRow>> getProfessionnelsSanteByHopitalIds(Collection<Integer> hopitalIds) {
+        if (hopitalIds.isEmpty()) {
+            return Map.of();
+        }
+        return professionnelSanteRepository.findByHopitalIdIn(hopitalIds).stream()
+                .collect(Collectors.groupingBy(ProfessionnelSimpleRow::hopitalId));
+    }
+
     /**
      * Récupère un hôpital par son ID
      * @param id ID de l'hôpital
@@ -248,13 +333,9 @@ public class MedicalDataService {
      * @return Liste des professionnels de santé de l'hôpital
      */
     @Transactional(readOnly = true)
-    public List<ProfessionnelSante> getProfessionnelsSanteByHopitalId(Integer hopitalId) {
+    public List<ProfessionnelSimpleRow> getProfessionnelsSanteByHopitalId(Integer hopitalId) {
         log.info("Récupération des professionnels de santé pour l'hôpital avec l'ID: {}", hopitalId);
-        // Filtrer les professionnels de santé par hôpital
-        return professionnelSanteRepository.findAll().stream()
-                .filter(p -> p.getHopital() != null && 
-                       p.getHopital().getId().equals(hopitalId))
-                .collect(Collectors.toList());
+        return professionnelSanteRepository.findByHopitalIdIn(List.of(hopitalId));
     }
 
     /**
@@ -268,61 +349,35 @@ public class MedicalDataService {
         return Optional.ofNullable(utilisateurRepository.findByUsername(username));
     }
 
+    /**
+     * Statistiques de consultations par période, lues dans les statistiques pré-agrégées
+     * @param period Période (daily, weekly, monthly)
+     * @param start Date de début (format ISO)
+     * @param end Date de fin incluse (format ISO)
+     * @param idProfessionel ID du professionnel de santé, ou null pour toutes les consultations
+     * @return Nombre de patients distincts et de consultations par période
+     * @throws IllegalArgumentException si une date est invalide
+     */
     public List<StatPeriodeDTO> getStatsParPeriode(String period, String start, String end, Integer idProfessionel) {
         log.info("Calcul des statistiques pour la période '{}' du {} au {} pour le professionnel ID: {}", period, start, end, idProfessionel);
+        return consultationStatService.getStats(
+                idProfessionel != null ? ConsultationStat.Scope.PROFESSIONNEL : ConsultationStat.Scope.GLOBAL,
+                idProfessionel, ConsultationStat.Granularity.fromPeriod(period), parseDate(start), parseDate(end));
+    }
 
-        String dateFormat;
-        String groupBy;
-
-        switch (period.toLowerCase()) {
-            case "weekly":
-                dateFormat = "%Y-W%v"; // ISO 8601 week number
-                groupBy = "YEAR(c.date_heure), WEEK(c.date_heure, 1)";
-                break;
-            case "monthly":
-                dateFormat = "%Y-%m";
-                groupBy = "YEAR(c.date_heure), MONTH(c.date_heure)";
-                break;
-            case "daily":
-            default:
-                dateFormat = "%Y-%m-%d";
-                groupBy = "DATE(c.date_heure)";
-                break;
-        }
-
-        StringBuilder sql = new StringBuilder(
-            "SELECT " +
-            "  DATE_FORMAT(c.date_heure, '" + dateFormat + "') as period_date, " +
-            "  COUNT(DISTINCT c.patient_id) as patients, " +
-            "  COUNT(c.id) as consultations " +
-            "FROM consultation c " +
-            "WHERE c.date_heure >= :start AND c.date_heure < DATE_ADD(STR_TO_DATE(:end, '%Y-%m-%d'), INTERVAL 1 DAY) "
-        );
-
-        if (idProfessionel != null) {
-            sql.append("AND c.professionnel_id = :idProfessionnel ");
-        }
-
-        sql.append("GROUP BY ").append(groupBy).append(" ORDER BY ").append(groupBy);
-
-        Query query = entityManager.createNativeQuery(sql.toString());
-        query.setParameter("start", start);
-        query.setParameter("end", end);
-
-        if (idProfessionel != null) {
-            query.setParameter("idProfessionnel", idProfessionel);
-        }
-
-        @SuppressWarnings("unchecked")
-        List<Object[]> results = query.getResultList();
-
-        return results.stream()
-                .map(result -> new StatPeriodeDTO(
-                        (String) result[0],
-                        ((Number) result[1]).longValue(),
-                        ((Number) result[2]).longValue()
-                ))
-                .collect(Collectors.toList());
+    /**
+     * Statistiques de consultations par période des professionnels d'un hôpital, lues dans les statistiques pré-agrégées
+     * @param period Période (daily, weekly, monthly)
+     * @param start Date de début (format ISO)
+     * @param end Date de fin incluse (format ISO)
+     * @param idHopital ID de l'hôpital
+     * @return Nombre de patients distincts et de consultations par période
+     * @throws IllegalArgumentException si une date est invalide
+     */
+    public List<StatPeriodeDTO> getStatsHopitalParPeriode(String period, String start, String end, Integer idHopital) {
+        log.info("Calcul des statistiques pour la période '{}' du {} au {} pour l'hôpital ID: {}", period, start, end, idHopital);
+        return consultationStatService.getStats(ConsultationStat.Scope.HOPITAL, idHopital,
+                ConsultationStat.Granularity.fromPeriod(period), parseDate(start), parseDate(end));
     }
 
     /**
@@ -331,9 +386,9 @@ public class MedicalDataService {
      * @return Liste des patients distincts consultés par le professionnel
      */
     @Transactional(readOnly = true)
-    public List<Patient> getPatientsByProfessionnelId(Integer professionnelId) {
+    public List<PatientRow> getPatientsByProfessionnelId(Integer professionnelId) {
         log.info("Récupération des patients consultés par le professionnel avec l'ID: {}", professionnelId);
-        return patientRepository.findPatientsByProfessionnelId(professionnelId);
+        return patientRepository.findDistinctByConsultationsProfessionnelId(professionnelId);
     }
 
     /**
@@ -341,29 +396,11 @@ public class MedicalDataService {
      * @param hopitalId ID de l'hôpital
      * @return Le lien DICOM complet ou null si aucun serveur DICOM trouvé
      */
-    @Transactional(readOnly = true)
     public String getDicomUrlByHopitalId(Integer hopitalId) {
-        log.info("Construction du lien DICOM pour l'hôpital avec l'ID: {}", hopitalId);
-        // Recherche du serveur DICOM pour cet hôpital
-        Optional<Hopital> hopital = hopitalRepository.findById(hopitalId);
-        if (hopital.isPresent() && hopital.get().getServeursDICOM() != null && !hopital.get().getServeursDICOM().isEmpty()) {
-            ServeurDICOM serveurDICOM = hopital.get().getServeursDICOM().get(0); // Prendre le premier serveur
-            String urlOrthanc = serveurDICOM.getUrlOrthanc();
-            
-            // Vérifier si l'URL contient déjà le protocole
-            if (urlOrthanc.startsWith("http://") || urlOrthanc.startsWith("https://")) {
-                // L'URL contient déjà le protocole, ajouter seulement le port si nécessaire
-                if (urlOrthanc.contains(":" + serveurDICOM.getPortOrthanc())) {
-                    return urlOrthanc; // Le port est déjà inclus
-                } else {
-                    return urlOrthanc + ":" + serveurDICOM.getPortOrthanc();
-                }
-            } else {
-                // L'URL ne contient pas de protocole, construire l'URL complète
-                return "http://" + urlOrthanc + ":" + serveurDICOM.getPortOrthanc();
-            }
-        }
-        return null;
+        log.debug("Résolution du lien DICOM pour l'hôpital avec l'ID: {}", hopitalId);
+        return orthancRoutingService.routeForHopital(hopitalId)
+                .map(OrthancRoutingService.ServerRoute::baseUrl)
+                .orElse(null);
     }
 
     /**
@@ -383,14 +420,11 @@ public class MedicalDataService {
      * @param professionnelId ID du professionnel de santé
      * @return URL DICOM ou null si non trouvé
      */
-    @Transactional(readOnly = true)
     public String getDicomUrlByProfessionnelId(Integer professionnelId) {
-        log.info("Récupération de l'URL DICOM pour le professionnel avec l'ID: {}", professionnelId);
-        Hopital hopital = getHopitalByProfessionnelId(professionnelId);
-        if (hopital != null) {
-            return getDicomUrlByHopitalId(hopital.getId());
-        }
-        return null;
+        log.debug("Résolution de l'URL DICOM pour le professionnel avec l'ID: {}", professionnelId);
+        return orthancRoutingService.routeForProfessionnel(professionnelId)
+                .map(OrthancRoutingService.ServerRoute::baseUrl)
+                .orElse(null);
     }
 
     /**
@@ -490,4 +524,65 @@ public class MedicalDataService {
         
         return emailLogRepository.findByToEmailOrderByCreatedAtDesc(email);
     }
+
+    private static LocalDate parseDate(String date) {
+        try {
+            return LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Date invalide (format attendu: AAAA-MM-JJ): " + date);
+        }
+    }
+
+    /**
+     * Lecture par clé (keyset) : la page suivante reprend après la clé de tri et l'ID du dernier élément,
+     * quelle que soit la profondeur, sans OFFSET ni comptage (sauf si demandé)
+     */
+    private <T> KeysetPage<T> scroll(Map<String, SortKey<T>> sortKeys, Integer size, String sort, String cursor,
+                                     boolean includeTotal, WindowQuery<T> query, LongSupplier counter) {
+        int pageSize = size != null ? size : defaultPageSize;
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new IllegalArgumentException("Taille de page hors limites (1 à " + maxPageSize + "): " + pageSize);
+        }
+        String sortName = sort != null ? sort : "id";
+        SortKey<T> sortKey = sortKeys.get(sortName);
+        if (sortKey == null) {
+            throw new IllegalArgumentException("Tri non supporté: " + sortName + " (valeurs possibles: " + sortKeys.keySet() + ")");
+        }
+        SortKey<T> idKey = sortKeys.get("id");
+        boolean byId = sortKey == idKey;
+
+        ScrollPosition position = ScrollPosition.keyset();
+        if (cursor != null) {
+            String[] parts = PageCursorUtil.decode(cursor, 3);
+            if (!parts[0].equals(sortName)) {
+                throw new IllegalArgumentException("Curseur obtenu avec un autre tri: " + parts[0]);
+            }
+            Map<String, Object> keys = new LinkedHashMap<>();
+            if (!byId) {
+                keys.put(sortKey.property(), parts[1]);
+            }
+            keys.put("id", Integer.valueOf(parts[2]));
+            position = ScrollPosition.forward(keys);
+        }
+
+        Sort order = byId ? Sort.by("id") : Sort.by(sortKey.property(), "id");
+        Window<T> window = query.find(position, order, Limit.of(pageSize));
+        List<T> items = window.getContent();
+
+        String nextCursor = null;
+        if (window.hasNext() && !items.isEmpty()) {
+            T last = items.get(items.size() - 1);
+            nextCursor = PageCursorUtil.encode(sortName, byId ? "" : String.valueOf(sortKey.value().apply(last)),
+                    String.valueOf(idKey.value().apply(last)));
+        }
+        return new KeysetPage<>(items, sortName, nextCursor, includeTotal ? counter.getAsLong() : null);
+    }
+
+    private record SortKey<T>(String property, Function<T, Object> value) {
+    }
+
+    @FunctionalInterface
+    private interface WindowQuery<T> {
+        Window<T> find(ScrollPosition position, Sort sort, Limit limit);
+    }
 }
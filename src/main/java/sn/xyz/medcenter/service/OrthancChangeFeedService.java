@@ -0,0 +1,221 @@
+package sn.xyz.medcenter.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import sn.xyz.medcenter.model.OrthancChangeCheckpoint;
+import sn.xyz.medcenter.repository.OrthancChangeCheckpointRepository;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Suit le flux /changes des serveurs Orthanc et notifie les {@link OrthancChangeListener}.
+ * Pour les ServeurDICOM enregistrés, le dernier numéro de séquence traité est sauvegardé en base et
+ * l'index local est amorcé au premier passage ; les autres serveurs (ex. orthanc.server.url) ne sont
+ * suivis que tant que des ressources sont en cache, à partir de leur dernière modification.
+ * Chaque serveur est lu sur son propre thread (un serveur lent ne retarde pas les autres) et les
+ * amorçages s'exécutent sur un pool dédié, hors du thread des tâches planifiées.
+ */
+@Service
+@Slf4j
+public class OrthancChangeFeedService {
+
+    private static final int MAX_BATCHES_PER_POLL = 50;
+
+    private final DynamicOrthancService dynamicOrthancService;
+    private final OrthancClientRegistry clientRegistry;
+    private final OrthancResourceCache resourceCache;
+    private final OrthancIndexService indexService;
+    private final OrthancChangeCheckpointRepository checkpointRepository;
+    private final List<OrthancChangeListener> listeners;
+    private final int batchSize;
+    private final Duration requestTimeout;
+
+    private final ExecutorService pollExecutor;
+    private final ExecutorService bootstrapExecutor;
+
+    private final Map<String, Long> lastSeqByServer = new ConcurrentHashMap<>();
+    private final Set<String> polling = ConcurrentHashMap.newKeySet();
+    private final Set<String> bootstrapping = ConcurrentHashMap.newKeySet();
+
+    public OrthancChangeFeedService(DynamicOrthancService dynamicOrthancService, OrthancClientRegistry clientRegistry,
+                                    OrthancResourceCache resourceCache, OrthancIndexService indexService,
+                                    OrthancChangeCheckpointRepository checkpointRepository,
+                                    List<OrthancChangeListener> listeners,
+                                    @Value("${orthanc.changes.batch-size:100}") int batchSize,
+                                    @Value("${orthanc.changes.request-timeout:10s}") Duration requestTimeout,
+                                    @Value("${orthanc.changes.poll-threads:4}") int pollThreads,
+                                    @Value("${orthanc.index.bootstrap-threads:1}") int bootstrapThreads) {
+        this.dynamicOrthancService = dynamicOrthancService;
+        this.clientRegistry = clientRegistry;
+        this.resourceCache = resourceCache;
+        this.indexService = indexService;
+        this.checkpointRepository = checkpointRepository;
+        this.listeners = listeners;
+        this.batchSize = batchSize;
+        this.requestTimeout = requestTimeout;
+        this.pollExecutor = Executors.newFixedThreadPool(Math.max(1, pollThreads),
+                new CustomizableThreadFactory("orthanc-changes-"));
+        this.bootstrapExecutor = Executors.newFixedThreadPool(Math.max(1, bootstrapThreads),
+                new CustomizableThreadFactory("orthanc-index-bootstrap-"));
+    }
+
+    /**
+     * Lance la lecture du flux de chaque serveur sans attendre la fin ; un serveur dont la lecture
+     * précédente n'est pas terminée est ignoré jusqu'au passage suivant
+     */
+    @Scheduled(fixedDelayString = "${orthanc.changes.poll-interval-ms:5000}")
+    public void pollChanges() {
+        Map<String, Integer> registered = clientRegistry.getRegisteredServers();
+        Set<String> orthancUrls = new LinkedHashSet<>(registered.keySet());
+        orthancUrls.addAll(resourceCache.getCachedServers());
+        for (String orthancUrl : orthancUrls) {
+            if (!polling.add(orthancUrl)) {
+                continue;
+            }
+            Integer serveurId = registered.get(orthancUrl);
+            pollExecutor.execute(() -> {
+                try {
+                    poll(orthancUrl, serveurId);
+                } catch (Exception e) {
+                    log.warn("Lecture du flux /changes impossible sur {}: {}", orthancUrl, e.getMessage());
+                } finally {
+                    polling.remove(orthancUrl);
+                }
+            });
+        }
+    }
+
+    /**
+     * Traite les modifications en attente d'un serveur Orthanc
+     * @param orthancUrl URL du serveur Orthanc
+     * @param serveurId ID du ServeurDICOM, ou null pour un serveur non enregistré
+     */
+    public void poll(String orthancUrl, Integer serveurId) {
+        Long since = lastSeqByServer.get(orthancUrl);
+        if (since == null) {
+            resume(orthancUrl, serveurId);
+            return;
+        }
+
+        for (int batch = 0; batch < MAX_BATCHES_PER_POLL; batch++) {
+            Map<String, Object> page = dynamicOrthancService.getChanges(orthancUrl, since, batchSize).block(requestTimeout);
+            if (page == null) {
+                return;
+            }
+            long last = page.get("Last") instanceof Number number ? number.longValue() : since;
+            if (last < since) {
+                // Base Orthanc réinitialisée : les numéros de séquence repartent de zéro
+                log.warn("Flux /changes de {} réinitialisé ({} < {})", orthancUrl, last, since);
+                resourceCache.invalidateServer(orthancUrl);
+                if (serveurId != null) {
+                    // Index périmé : les lectures repassent par Orthanc jusqu'à la fin du nouvel amorçage
+                    lastSeqByServer.remove(orthancUrl);
+                    saveCheckpoint(serveurId, last, false);
+                    startBootstrap(serveurId, orthancUrl);
+                } else {
+                    lastSeqByServer.put(orthancUrl, last);
+                }
+                return;
+            }
+
+            @SuppressWarnings("unchecked")
+            List<Map<String, Object>> changes = (List<Map<String, Object>>) page.get("Changes");
+            if (changes != null && !changes.isEmpty()) {
+                dispatch(orthancUrl, changes);
+                log.debug("{} modifications traitées sur {}", changes.size(), orthancUrl);
+            }
+            if (last != since) {
+                since = last;
+                lastSeqByServer.put(orthancUrl, since);
+                saveCheckpoint(serveurId, since, true);
+            }
+            if (Boolean.TRUE.equals(page.get("Done"))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Dernier numéro de séquence traité par serveur
+     */
+    public Map<String, Long> getCheckpoints() {
+        return Map.copyOf(lastSeqByServer);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pollExecutor.shutdownNow();
+        bootstrapExecutor.shutdownNow();
+    }
+
+    /**
+     * Point de départ du suivi d'un serveur : dernière modification pour un serveur non enregistré,
+     * point de reprise sauvegardé si l'index est construit, sinon amorçage de l'index en arrière-plan
+     */
+    private void resume(String orthancUrl, Integer serveurId) {
+        if (serveurId == null) {
+            Long last = dynamicOrthancService.getLastChangeSeq(orthancUrl).block(requestTimeout);
+            lastSeqByServer.put(orthancUrl, last != null ? last : 0L);
+            return;
+        }
+        Optional<OrthancChangeCheckpoint> checkpoint = checkpointRepository.findById(serveurId);
+        if (checkpoint.isPresent() && checkpoint.get().isIndexReady()) {
+            log.info("Reprise du flux /changes de {} à la séquence {}", orthancUrl, checkpoint.get().getLastSeq());
+            lastSeqByServer.put(orthancUrl, checkpoint.get().getLastSeq());
+            return;
+        }
+        startBootstrap(serveurId, orthancUrl);
+    }
+
+    /**
+     * Construit l'index d'un serveur sur le pool d'amorçage. Le flux du serveur n'est suivi qu'une fois
+     * l'index prêt ; en cas d'échec, l'amorçage est relancé au passage suivant.
+     */
+    private void startBootstrap(Integer serveurId, String orthancUrl) {
+        if (!bootstrapping.add(orthancUrl)) {
+            return;
+        }
+        bootstrapExecutor.execute(() -> {
+            try {
+                lastSeqByServer.put(orthancUrl, indexService.bootstrap(serveurId, orthancUrl));
+            } catch (Exception e) {
+                log.warn("Amorçage de l'index Orthanc impossible sur {}: {}", orthancUrl, e.getMessage());
+            } finally {
+                bootstrapping.remove(orthancUrl);
+            }
+        });
+    }
+
+    private void saveCheckpoint(Integer serveurId, long lastSeq, boolean indexReady) {
+        if (serveurId == null) {
+            return;
+        }
+        checkpointRepository.save(OrthancChangeCheckpoint.builder()
+                .serveurDicomId(serveurId)
+                .lastSeq(lastSeq)
+                .indexReady(indexReady)
+                .build());
+    }
+
+    /**
+     * Une erreur d'un listener interrompt le suivi du serveur jusqu'au prochain passage,
+     * sans avancer le point de reprise : la page sera rejouée
+     */
+    private void dispatch(String orthancUrl, List<Map<String, Object>> changes) {
+        for (OrthancChangeListener listener : listeners) {
+            listener.onChanges(orthancUrl, changes);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package sn.xyz.medcenter.service;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Abonné au flux de modifications (/changes) des serveurs Orthanc, notifié par {@link OrthancChangeFeedService}
+ */
+public interface OrthancChangeListener {
+
+    /**
+     * Appelé pour chaque modification, dans l'ordre des numéros de séquence du serveur
+     * @param orthancUrl URL du serveur Orthanc
+     * @param change Entrée du flux (ChangeType, ResourceType, ID, Path, Seq)
+     */
+    void onChange(String orthancUrl, Map<String, Object> change);
+
+    /**
+     * Appelé pour chaque page du flux ; à surcharger pour traiter les modifications par lot
+     * @param orthancUrl URL du serveur Orthanc
+     * @param changes Modifications de la page, dans l'ordre des numéros de séquence
+     */
+    default void onChanges(String orthancUrl, List<Map<String, Object>> changes) {
+        changes.forEach(change -> onChange(orthancUrl, change));
+    }
+}
@@ -0,0 +1,270 @@
+package sn.xyz.medcenter.service;
+
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionPoolMetrics;
+import reactor.netty.resources.ConnectionProvider;
+import sn.xyz.medcenter.configuration.OrthancClientProperties;
+import sn.xyz.medcenter.dto.OrthancPoolMetricsDTO;
+import sn.xyz.medcenter.model.ServeurDICOM;
+import sn.xyz.medcenter.repository.ServeurDICOMRepository;
+import sn.xyz.medcenter.util.OrthancUrlUtil;
+
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registre des clients HTTP Orthanc : un pool de connexions dédié (keep-alive, éviction des connexions
+ * inactives, timeouts de connexion et de réponse) par ServeurDICOM, pour qu'un serveur qui ne répond plus
+ * n'épuise pas les connexions des autres hôpitaux.
+ * L'en-tête Authorization (Basic) de chaque serveur est calculé une fois, à la création de son client ;
+ * si les identifiants changent en base, le client est reconstruit sur le même pool de connexions.
+ */
+@Service
+@Slf4j
+public class OrthancClientRegistry {
+
+    private static final int MAX_IN_MEMORY_SIZE = 16 * 1024 * 1024;
+
+    private final WebClient.Builder webClientBuilder;
+    private final ServeurDICOMRepository serveurDICOMRepository;
+    private final OrthancClientProperties properties;
+
+    private final Map<String, OrthancClient> clients = new ConcurrentHashMap<>();
+    private volatile Map<String, RegisteredServer> serversByUrl;
+
+    public OrthancClientRegistry(WebClient.Builder webClientBuilder, ServeurDICOMRepository serveurDICOMRepository,
+                                 OrthancClientProperties properties) {
+        this.webClientBuilder = webClientBuilder;
+        this.serveurDICOMRepository = serveurDICOMRepository;
+        this.properties = properties;
+    }
+
+    /**
+     * Client HTTP dédié à un serveur DICOM
+     * @param serveurDICOM Serveur DICOM
+     * @return WebClient utilisant le pool de connexions du serveur
+     */
+    public WebClient forServer(ServeurDICOM serveurDICOM) {
+        return clientFor(serveurDICOM.getId(), OrthancUrlUtil.buildBaseUrl(serveurDICOM),
+                OrthancUrlUtil.buildBasicAuthorization(serveurDICOM.getUsername(), serveurDICOM.getPassword())).webClient;
+    }
+
+    /**
+     * Client HTTP pour une URL Orthanc. Les URLs correspondant à un ServeurDICOM en base partagent
+     * le pool de ce serveur ; les autres (ex. orthanc.server.url) obtiennent leur propre pool.
+     * @param orthancUrl URL de base du serveur Orthanc
+     * @return WebClient utilisant le pool de connexions du serveur
+     */
+    public WebClient forUrl(String orthancUrl) {
+        RegisteredServer server = knownServers().get(orthancUrl);
+        return server != null
+                ? clientFor(server.serveurId(), orthancUrl, server.authorization()).webClient
+                : clientFor(null, orthancUrl, unregisteredAuthorization()).webClient;
+    }
+
+    /**
+     * ID du ServeurDICOM correspondant à une URL Orthanc
+     * @param orthancUrl URL de base du serveur Orthanc
+     * @return ID du serveur, ou null si l'URL ne correspond à aucun serveur enregistré
+     */
+    public Integer serveurIdFor(String orthancUrl) {
+        RegisteredServer server = knownServers().get(orthancUrl);
+        return server != null ? server.serveurId() : null;
+    }
+
+    /**
+     * Serveurs DICOM enregistrés en base
+     * @return URL de base -> ID du ServeurDICOM
+     */
+    public Map<String, Integer> getRegisteredServers() {
+        Map<String, Integer> result = new HashMap<>();
+        knownServers().forEach((url, server) -> result.put(url, server.serveurId()));
+        return result;
+    }
+
+    /**
+     * Oublie l'association URL -> ServeurDICOM et les identifiants, rechargés au prochain appel
+     */
+    public void refresh() {
+        serversByUrl = null;
+    }
+
+    /**
+     * État des pools de connexions, du plus saturé au moins saturé
+     */
+    public List<OrthancPoolMetricsDTO> getPoolMetrics() {
+        List<OrthancPoolMetricsDTO> result = new ArrayList<>();
+        for (OrthancClient client : clients.values()) {
+            int acquired = 0;
+            int idle = 0;
+            int allocated = 0;
+            int pending = 0;
+            int maxPending = 0;
+            for (ConnectionPoolMetrics metrics : client.metrics.values()) {
+                acquired += metrics.acquiredSize();
+                idle += metrics.idleSize();
+                allocated += metrics.allocatedSize();
+                pending += metrics.pendingAcquireSize();
+                maxPending = Math.max(maxPending, metrics.maxPendingAcquireSize());
+            }
+            result.add(OrthancPoolMetricsDTO.builder()
+                    .serveurId(client.serveurId)
+                    .orthancUrl(client.baseUrl)
+                    .maxConnections(client.maxConnections)
+                    .acquired(acquired)
+                    .idle(idle)
+                    .allocated(allocated)
+                    .pendingAcquire(pending)
+                    .maxPendingAcquire(maxPending)
+                    .saturation(client.maxConnections > 0 ? (double) acquired / client.maxConnections : 0)
+                    .build());
+        }
+        result.sort(Comparator.comparingDouble(OrthancPoolMetricsDTO::getSaturation).reversed());
+        return result;
+    }
+
+    @PreDestroy
+    public void dispose() {
+        clients.values().forEach(client -> client.connectionProvider.dispose());
+        clients.clear();
+    }
+
+    private OrthancClient clientFor(Integer serveurId, String baseUrl, String authorization) {
+        String key = serveurId != null ? "serveur-" + serveurId : baseUrl;
+        OrthancClient client = clients.get(key);
+        if (client != null && Objects.equals(client.authorization, authorization)) {
+            return client;
+        }
+        return clients.compute(key, (k, existing) -> {
+            if (existing == null) {
+                return createClient(k, serveurId, baseUrl, authorization);
+            }
+            if (Objects.equals(existing.authorization, authorization)) {
+                return existing;
+            }
+            log.info("Identifiants du serveur Orthanc {} modifiés, reconstruction de son client", k);
+            return existing.withWebClient(buildWebClient(existing.httpClient, authorization), authorization);
+        });
+    }
+
+    private String unregisteredAuthorization() {
+        return OrthancUrlUtil.buildBasicAuthorization(properties.getUsername(), properties.getPassword());
+    }
+
+    private Map<String, RegisteredServer> knownServers() {
+        Map<String, RegisteredServer> servers = serversByUrl;
+        if (servers == null) {
+            synchronized (this) {
+                servers = serversByUrl;
+                if (servers == null) {
+                    servers = new HashMap<>();
+                    for (ServeurDICOM serveurDICOM : serveurDICOMRepository.findAll()) {
+                        servers.put(OrthancUrlUtil.buildBaseUrl(serveurDICOM), new RegisteredServer(serveurDICOM.getId(),
+                                OrthancUrlUtil.buildBasicAuthorization(serveurDICOM.getUsername(), serveurDICOM.getPassword())));
+                    }
+                    log.info("{} serveurs DICOM enregistrés dans le registre des clients Orthanc", servers.size());
+                    serversByUrl = servers;
+                }
+            }
+        }
+        return servers;
+    }
+
+    private OrthancClient createClient(String key, Integer serveurId, String baseUrl, String authorization) {
+        OrthancClientProperties.Pool pool = properties.poolFor(serveurId);
+        log.info("Création du pool de connexions Orthanc {} ({}): {} connexions max, timeout de réponse {}",
+                key, baseUrl, pool.getMaxConnections(), pool.getResponseTimeout());
+
+        Map<SocketAddress, ConnectionPoolMetrics> metrics = new ConcurrentHashMap<>();
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("orthanc-" + key)
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireMaxCount(pool.getPendingAcquireMaxCount())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .maxLifeTime(pool.getMaxLifeTime())
+                .evictInBackground(pool.getEvictionInterval())
+                .metrics(true, () -> new ConnectionProvider.MeterRegistrar() {
+                    @Override
+                    public void registerMetrics(String poolName, String id, SocketAddress remoteAddress,
+                                                ConnectionPoolMetrics poolMetrics) {
+                        metrics.put(remoteAddress, poolMetrics);
+                    }
+
+                    @Override
+                    public void deRegisterMetrics(String poolName, String id, SocketAddress remoteAddress) {
+                        metrics.remove(remoteAddress);
+                    }
+                })
+                .build();
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) pool.getConnectTimeout().toMillis())
+                .responseTimeout(pool.getResponseTimeout());
+
+        return new OrthancClient(serveurId, baseUrl, pool.getMaxConnections(), connectionProvider, httpClient,
+                buildWebClient(httpClient, authorization), authorization, metrics);
+    }
+
+    private WebClient buildWebClient(HttpClient httpClient, String authorization) {
+        WebClient.Builder builder = webClientBuilder.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
+                .codecs(configurer -> configurer.defaultCodecs().maxInMemorySize(MAX_IN_MEMORY_SIZE));
+        if (authorization != null) {
+            builder.defaultHeader(HttpHeaders.AUTHORIZATION, authorization);
+        }
+        return builder.build();
+    }
+
+    /**
+     * ServeurDICOM enregistré et en-tête Authorization précalculé (null sans authentification)
+     */
+    private record RegisteredServer(Integer serveurId, String authorization) {
+    }
+
+    private static final class OrthancClient {
+
+        private final Integer serveurId;
+        private final String baseUrl;
+        private final int maxConnections;
+        private final ConnectionProvider connectionProvider;
+        private final HttpClient httpClient;
+        private final WebClient webClient;
+        private final String authorization;
+        private final Map<SocketAddress, ConnectionPoolMetrics> metrics;
+
+        private OrthancClient(Integer serveurId, String baseUrl, int maxConnections, ConnectionProvider connectionProvider,
+                              HttpClient httpClient, WebClient webClient, String authorization,
+                              Map<SocketAddress, ConnectionPoolMetrics> metrics) {
+            this.serveurId = serveurId;
+            this.baseUrl = baseUrl;
+            this.maxConnections = maxConnections;
+            this.connectionProvider = connectionProvider;
+            this.httpClient = httpClient;
+            this.webClient = webClient;
+            this.authorization = authorization;
+            this.metrics = metrics;
+        }
+
+        private OrthancClient withWebClient(WebClient webClient, String authorization) {
+            return new OrthancClient(serveurId, baseUrl, maxConnections, connectionProvider, httpClient, webClient,
+                    authorization, metrics);
+        }
+    }
+}
@@ -0,0 +1,557 @@
+package sn.xyz.medcenter.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import sn.xyz.medcenter.dto.OrthancExportJobDTO;
+import sn.xyz.medcenter.dto.OrthancExportJobRequestDTO;
+import sn.xyz.medcenter.model.OrthancExportItem;
+import sn.xyz.medcenter.model.OrthancExportJob;
+import sn.xyz.medcenter.repository.OrthancExportItemRepository;
+import sn.xyz.medcenter.repository.OrthancExportJobRepository;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Exports d'études vers d'autres PACS en tâche de fond. Chaque couple étude/cible devient un job Orthanc
+ * asynchrone (/modalities/{cible}/store) ; l'état est conservé en base pour survivre aux redémarrages.
+ * Un passage périodique relève l'avancement des jobs en cours (/jobs/{id}) puis soumet les exports en
+ * attente, dans la limite de orthanc.export.max-running-per-server exports simultanés par serveur source.
+ * <p>
+ * Une soumission sans réponse (timeout, redémarrage) laisse l'export réservé : passé le bail
+ * orthanc.export.submit-lease, il est rapproché des jobs Orthanc existants (/jobs) et n'est soumis à
+ * nouveau que si aucun job ne correspond, pour ne pas envoyer deux fois la même étude.
+ */
+@Service
+@Slf4j
+public class OrthancExportService {
+
+    private static final int MAX_ERROR_LENGTH = 255;
+    private static final List<OrthancExportItem.Status> ACTIVE_ITEM_STATUSES =
+            List.of(OrthancExportItem.Status.SUBMITTING, OrthancExportItem.Status.RUNNING);
+    private static final String STORE_JOB_TYPE = "DicomModalityStore";
+    private static final DateTimeFormatter JOB_CREATION_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    /** Écart d'horloge toléré entre ce serveur et Orthanc pour dater les jobs */
+    private static final Duration CLOCK_SKEW = Duration.ofMinutes(1);
+
+    private final OrthancExportJobRepository jobRepository;
+    private final OrthancExportItemRepository itemRepository;
+    private final DynamicOrthancService dynamicOrthancService;
+    private final OrthancRoutingService routingService;
+    private final String defaultOrthancUrl;
+    private final int maxRunningPerServer;
+    private final int maxAttempts;
+    private final Duration requestTimeout;
+    private final Duration submitLease;
+    private final ExecutorService exportExecutor =
+            Executors.newSingleThreadExecutor(new CustomizableThreadFactory("orthanc-export-"));
+    private final AtomicBoolean processing = new AtomicBoolean();
+
+    public OrthancExportService(OrthancExportJobRepository jobRepository, OrthancExportItemRepository itemRepository,
+                                DynamicOrthancService dynamicOrthancService, OrthancRoutingService routingService,
+                                @Value("${orthanc.server.url}") String defaultOrthancUrl,
+                                @Value("${orthanc.export.max-running-per-server:4}") int maxRunningPerServer,
+                                @Value("${orthanc.export.max-attempts:3}") int maxAttempts,
+                                @Value("${orthanc.export.request-timeout:30s}") Duration requestTimeout,
+                                @Value("${orthanc.export.submit-lease:5m}") Duration submitLease) {
+        this.jobRepository = jobRepository;
+        this.itemRepository = itemRepository;
+        this.dynamicOrthancService = dynamicOrthancService;
+        this.routingService = routingService;
+        this.defaultOrthancUrl = defaultOrthancUrl;
+        this.maxRunningPerServer = maxRunningPerServer;
+        this.maxAttempts = maxAttempts;
+        this.requestTimeout = requestTimeout;
+        this.submitLease = submitLease;
+    }
+
+    /**
+     * Enregistre un lot d'export ; les études sont envoyées en tâche de fond
+     * @param request Études, cibles et serveur source
+     * @param createdBy Utilisateur à l'origine de la demande
+     * @return Lot créé, en attente
+     * @throws IllegalArgumentException si le serveur source n'existe pas
+     */
+    @Transactional
+    public OrthancExportJobDTO createJob(OrthancExportJobRequestDTO request, String createdBy) {
+        String orthancUrl = request.getServeurId() == null
+                ? defaultOrthancUrl
+                : routingService.routeForServeur(request.getServeurId())
+                        .map(OrthancRoutingService.ServerRoute::baseUrl)
+                        .orElseThrow(() -> new IllegalArgumentException("Serveur DICOM inconnu: " + request.getServeurId()));
+        Set<String> studyIds = new HashSet<>(request.getStudyIds());
+        Set<String> targets = new HashSet<>(request.getTargets());
+
+        OrthancExportJob job = jobRepository.save(OrthancExportJob.builder()
+                .serveurDicomId(request.getServeurId())
+                .orthancUrl(orthancUrl)
+                .status(OrthancExportJob.Status.QUEUED)
+                .totalItems(studyIds.size() * targets.size())
+                .createdBy(createdBy)
+                .build());
+        List<OrthancExportItem> items = new ArrayList<>(job.getTotalItems());
+        for (String studyId : studyIds) {
+            for (String target : targets) {
+                items.add(OrthancExportItem.builder()
+                        .jobId(job.getId())
+                        .studyId(studyId)
+                        .target(target)
+                        .status(OrthancExportItem.Status.PENDING)
+                        .build());
+            }
+        }
+        itemRepository.saveAll(items);
+        log.info("Lot d'export {} créé: {} études vers {} depuis {}", job.getId(), studyIds.size(), targets, orthancUrl);
+        return toDTO(job, countsFor(List.of(job.getId())).get(job.getId()), null);
+    }
+
+    /**
+     * Avancement d'un lot, avec le détail de ses exports
+     */
+    @Transactional(readOnly = true)
+    public Optional<OrthancExportJobDTO> getJob(Long jobId) {
+        return jobRepository.findById(jobId)
+                .map(job -> toDTO(job, countsFor(List.of(jobId)).get(jobId), itemRepository.findByJobIdOrderByIdAsc(jobId)));
+    }
+
+    /**
+     * Avancement des 50 derniers lots
+     */
+    @Transactional(readOnly = true)
+    public List<OrthancExportJobDTO> getRecentJobs() {
+        List<OrthancExportJob> jobs = jobRepository.findTop50ByOrderByIdDesc();
+        Map<Long, Map<OrthancExportItem.Status, Long>> counts = countsFor(jobs.stream().map(OrthancExportJob::getId).toList());
+        return jobs.stream()
+                .map(job -> toDTO(job, counts.get(job.getId()), null))
+                .toList();
+    }
+
+    /**
+     * Annule un lot : les exports en attente sont abandonnés, les jobs Orthanc en cours sont annulés
+     * @return false si le lot n'existe pas
+     */
+    public boolean cancelJob(Long jobId) {
+        Optional<OrthancExportJob> job = jobRepository.findById(jobId);
+        if (job.isEmpty()) {
+            return false;
+        }
+        // Les transitions du thread d'export sont conditionnelles : un export soumis pendant l'annulation
+        // reste annulé et son job Orthanc est annulé par le thread d'export lui-même
+        List<Long> unfinished = itemRepository.findByJobIdOrderByIdAsc(jobId).stream()
+                .filter(item -> !item.getStatus().isFinal())
+                .map(OrthancExportItem::getId)
+                .toList();
+        int cancelled = itemRepository.cancelUnfinished(jobId);
+        for (OrthancExportItem item : itemRepository.findAllById(unfinished)) {
+            if (item.getStatus() == OrthancExportItem.Status.CANCELLED && item.getOrthancJobId() != null) {
+                cancelOrthancJob(job.get().getOrthancUrl(), item.getOrthancJobId());
+            }
+        }
+        OrthancExportJob cancelledJob = job.get();
+        if (cancelledJob.getFinishedAt() == null) {
+            cancelledJob.setStatus(OrthancExportJob.Status.CANCELLED);
+            cancelledJob.setFinishedAt(LocalDateTime.now());
+            jobRepository.save(cancelledJob);
+        }
+        log.info("Lot d'export {} annulé ({} exports abandonnés)", jobId, cancelled);
+        return true;
+    }
+
+    /**
+     * Lance un passage sur le thread dédié aux exports, pour ne pas bloquer le planificateur partagé ;
+     * un passage demandé alors que le précédent n'est pas terminé est ignoré
+     */
+    @Scheduled(fixedDelayString = "${orthanc.export.poll-interval-ms:2000}")
+    public void processExports() {
+        if (!processing.compareAndSet(false, true)) {
+            return;
+        }
+        exportExecutor.execute(() -> {
+            try {
+                process();
+            } catch (Exception e) {
+                log.warn("Passage des exports interrompu: {}", e.getMessage());
+            } finally {
+                processing.set(false);
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        exportExecutor.shutdownNow();
+    }
+
+    void process() {
+        List<OrthancExportJob> activeJobs = jobRepository.findByStatusInOrderByIdAsc(
+                List.of(OrthancExportJob.Status.QUEUED, OrthancExportJob.Status.RUNNING));
+        if (activeJobs.isEmpty()) {
+            return;
+        }
+        Map<Long, OrthancExportJob> jobsById = activeJobs.stream()
+                .collect(Collectors.toMap(OrthancExportJob::getId, Function.identity()));
+        Set<Long> touched = new HashSet<>();
+
+        // 0. Soumissions restées sans réponse au-delà du bail
+        touched.addAll(recoverStaleSubmissions(jobsById));
+
+        // 1. Avancement des jobs Orthanc en cours
+        Map<String, Integer> runningByServer = new HashMap<>();
+        for (OrthancExportItem item : itemRepository.findByStatusIn(ACTIVE_ITEM_STATUSES)) {
+            OrthancExportJob job = jobsById.get(item.getJobId());
+            if (job == null) {
+                continue;
+            }
+            if (item.getStatus() == OrthancExportItem.Status.RUNNING && poll(job, item)) {
+                touched.add(job.getId());
+            }
+            if (!item.getStatus().isFinal()) {
+                runningByServer.merge(job.getOrthancUrl(), 1, Integer::sum);
+            }
+        }
+
+        // 2. Soumission des exports en attente, lot par lot, dans la limite des places libres de chaque serveur source
+        for (OrthancExportJob job : activeJobs) {
+            int free = maxRunningPerServer - runningByServer.getOrDefault(job.getOrthancUrl(), 0);
+            if (free <= 0) {
+                continue;
+            }
+            for (OrthancExportItem item : itemRepository.findByJobIdAndStatusOrderByIdAsc(job.getId(),
+                    OrthancExportItem.Status.PENDING, PageRequest.of(0, free))) {
+                if (itemRepository.claim(item.getId(), LocalDateTime.now()) == 0) {
+                    continue;
+                }
+                runningByServer.merge(job.getOrthancUrl(), 1, Integer::sum);
+                submit(job, item);
+                touched.add(job.getId());
+            }
+        }
+
+        if (!touched.isEmpty()) {
+            refreshJobs(touched);
+        }
+    }
+
+    /**
+     * Relève l'état du job Orthanc d'un export
+     * @return true si l'export a changé d'état ou d'avancement
+     */
+    private boolean poll(OrthancExportJob job, OrthancExportItem item) {
+        Map<String, Object> orthancJob;
+        try {
+            orthancJob = dynamicOrthancService.getJob(job.getOrthancUrl(), item.getOrthancJobId()).block(requestTimeout);
+        } catch (WebClientResponseException.NotFound e) {
+            // Job sorti de l'historique (JobsHistorySize) ou perdu au redémarrage d'Orthanc : issue inconnue
+            orthancJob = Map.of("State", "Failure", "ErrorDescription", "Job Orthanc introuvable");
+        } catch (Exception e) {
+            log.debug("État du job Orthanc {} indisponible: {}", item.getOrthancJobId(), e.getMessage());
+            return false;
+        }
+        if (orthancJob == null) {
+            return false;
+        }
+        int progress = orthancJob.get("Progress") instanceof Number number ? number.intValue() : item.getProgress();
+        Object state = orthancJob.get("State");
+        OrthancExportItem.Status status = "Success".equals(state) ? OrthancExportItem.Status.SUCCESS
+                : "Failure".equals(state) ? OrthancExportItem.Status.FAILURE
+                : OrthancExportItem.Status.RUNNING;
+        if (status == item.getStatus() && progress == item.getProgress()) {
+            return false;
+        }
+        item.setProgress(status == OrthancExportItem.Status.SUCCESS ? 100 : progress);
+        item.setStatus(status);
+        if (status.isFinal()) {
+            item.setFinishedAt(LocalDateTime.now());
+        }
+        if (status == OrthancExportItem.Status.FAILURE) {
+            item.setError(truncate(String.valueOf(orthancJob.get("ErrorDescription"))));
+            log.warn("Échec de l'export de l'étude {} vers {}: {}", item.getStudyId(), item.getTarget(), item.getError());
+        }
+        return itemRepository.updateRunning(item.getId(), item.getStatus(), item.getProgress(), item.getError(),
+                item.getFinishedAt()) > 0;
+    }
+
+    private void submit(OrthancExportJob job, OrthancExportItem item) {
+        OrthancExportItem claimed = itemRepository.findById(item.getId()).orElse(item);
+        String orthancJobId;
+        try {
+            orthancJobId = dynamicOrthancService.storeToModality(job.getOrthancUrl(), claimed.getTarget(),
+                    List.of(claimed.getStudyId())).block(requestTimeout);
+        } catch (WebClientResponseException | OrthancUnavailableException e) {
+            // Refus certain : nouvelle tentative au prochain passage, jusqu'à orthanc.export.max-attempts
+            release(claimed, e.getMessage());
+            log.warn("Soumission de l'export de l'étude {} vers {} impossible (tentative {}): {}",
+                    claimed.getStudyId(), claimed.getTarget(), claimed.getAttempts(), e.getMessage());
+            return;
+        } catch (Exception e) {
+            // Sans réponse, Orthanc a pu créer le job : l'export reste réservé jusqu'à la fin du bail
+            itemRepository.recordSubmissionError(claimed.getId(), truncate(e.getMessage()));
+            log.warn("Soumission de l'export de l'étude {} vers {} sans réponse (tentative {}), vérification après {}: {}",
+                    claimed.getStudyId(), claimed.getTarget(), claimed.getAttempts(), submitLease, e.getMessage());
+            return;
+        }
+        attach(job, claimed, orthancJobId, LocalDateTime.now());
+    }
+
+    /**
+     * Rattache un export en cours de soumission à son job Orthanc ; si l'export a été annulé
+     * entre-temps, le job Orthanc est annulé à son tour
+     */
+    private void attach(OrthancExportJob job, OrthancExportItem item, String orthancJobId, LocalDateTime startedAt) {
+        if (itemRepository.markSubmitted(item.getId(), orthancJobId, startedAt) == 0) {
+            log.info("Export de l'étude {} vers {} annulé pendant sa soumission", item.getStudyId(), item.getTarget());
+            if (orthancJobId != null) {
+                cancelOrthancJob(job.getOrthancUrl(), orthancJobId);
+            }
+        }
+    }
+
+    private void cancelOrthancJob(String orthancUrl, String orthancJobId) {
+        try {
+            dynamicOrthancService.cancelJob(orthancUrl, orthancJobId).block(requestTimeout);
+        } catch (Exception e) {
+            log.warn("Annulation du job Orthanc {} impossible: {}", orthancJobId, e.getMessage());
+        }
+    }
+
+    /**
+     * Rapproche les exports réservés depuis plus que le bail des jobs Orthanc existants : un job
+     * retrouvé est suivi comme s'il venait d'être soumis, sinon l'export repasse en attente
+     * @return Lots dont un export a changé d'état
+     */
+    private Set<Long> recoverStaleSubmissions(Map<Long, OrthancExportJob> jobsById) {
+        List<OrthancExportItem> stale = itemRepository.findStaleSubmissions(LocalDateTime.now().minus(submitLease));
+        Set<Long> touched = new HashSet<>();
+        Map<String, List<Map<String, Object>>> jobsByServer = new HashMap<>();
+        Set<String> unreachable = new HashSet<>();
+        for (OrthancExportItem item : stale) {
+            OrthancExportJob job = jobsById.get(item.getJobId());
+            if (job == null || unreachable.contains(job.getOrthancUrl())) {
+                continue;
+            }
+            Optional<String> orthancJobId;
+            try {
+                List<Map<String, Object>> orthancJobs = jobsByServer.computeIfAbsent(job.getOrthancUrl(),
+                        url -> dynamicOrthancService.getJobs(url).block(requestTimeout));
+                orthancJobId = findStoreJob(job.getOrthancUrl(), item, orthancJobs == null ? List.of() : orthancJobs);
+            } catch (Exception e) {
+                // Orthanc injoignable : l'export reste réservé, nouvelle vérification au passage suivant
+                log.debug("Vérification de la soumission de l'export {} impossible: {}", item.getId(), e.getMessage());
+                unreachable.add(job.getOrthancUrl());
+                continue;
+            }
+            if (orthancJobId.isPresent()) {
+                attach(job, item, orthancJobId.get(), item.getStartedAt());
+                log.info("Export de l'étude {} vers {} rattaché au job Orthanc {}", item.getStudyId(), item.getTarget(),
+                        orthancJobId.get());
+            } else {
+                release(item, item.getError() != null ? item.getError() : "Soumission interrompue");
+                log.warn("Soumission de l'export de l'étude {} vers {} perdue (tentative {})",
+                        item.getStudyId(), item.getTarget(), item.getAttempts());
+            }
+            touched.add(job.getId());
+        }
+        return touched;
+    }
+
+    /**
+     * Job d'envoi vers la cible de l'étude de l'export, créé depuis sa réservation et pas encore
+     * rattaché à un autre export ; le plus récent s'il y en a plusieurs
+     */
+    private Optional<String> findStoreJob(String orthancUrl, OrthancExportItem item, List<Map<String, Object>> orthancJobs) {
+        Instant claimedAt = item.getStartedAt() == null ? Instant.EPOCH
+                : item.getStartedAt().atZone(ZoneId.systemDefault()).toInstant().minus(CLOCK_SKEW);
+        String remoteAet = null;
+        List<Map<String, Object>> candidates = new ArrayList<>();
+        for (Map<String, Object> orthancJob : orthancJobs) {
+            if (!STORE_JOB_TYPE.equals(orthancJob.get("Type"))
+                    || !(orthancJob.get("Content") instanceof Map<?, ?> content)
+                    || !(content.get("ParentResources") instanceof Collection<?> resources)
+                    || !resources.contains(item.getStudyId())) {
+                continue;
+            }
+            Instant createdAt = creationTime(orthancJob);
+            if (createdAt == null || createdAt.isBefore(claimedAt)) {
+                continue;
+            }
+            if (remoteAet == null) {
+                remoteAet = dynamicOrthancService.getModalityAet(orthancUrl, item.getTarget()).blockOptional(requestTimeout)
+                        .orElse("");
+            }
+            if (!remoteAet.isEmpty() && !remoteAet.equals(content.get("RemoteAet"))) {
+                continue;
+            }
+            candidates.add(orthancJob);
+        }
+        return candidates.stream()
+                .sorted(Comparator.comparing(OrthancExportService::creationTime).reversed())
+                .map(orthancJob -> (String) orthancJob.get("ID"))
+                .filter(orthancJobId -> orthancJobId != null && !itemRepository.existsByOrthancJobId(orthancJobId))
+                .findFirst();
+    }
+
+    /**
+     * Date de création d'un job Orthanc (CreationTime, UTC au format ISO compact), ou null si illisible
+     */
+    private static Instant creationTime(Map<String, Object> orthancJob) {
+        if (!(orthancJob.get("CreationTime") instanceof String value) || value.length() < 15) {
+            return null;
+        }
+        try {
+            return LocalDateTime.parse(value.substring(0, 15), JOB_CREATION_TIME).toInstant(ZoneOffset.UTC);
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Remet un export en attente, ou le passe en échec une fois orthanc.export.max-attempts atteint
+     */
+    private void release(OrthancExportItem item, String error) {
+        boolean exhausted = item.getAttempts() >= maxAttempts;
+        itemRepository.releaseSubmission(item.getId(),
+                exhausted ? OrthancExportItem.Status.FAILURE : OrthancExportItem.Status.PENDING,
+                truncate(error), exhausted ? LocalDateTime.now() : null);
+    }
+
+    /**
+     * Met à jour l'état des lots à partir de celui de leurs exports
+     */
+    private void refreshJobs(Set<Long> jobIds) {
+        Map<Long, Map<OrthancExportItem.Status, Long>> counts = countsFor(jobIds);
+        for (OrthancExportJob job : jobRepository.findAllById(jobIds)) {
+            if (job.getStatus() == OrthancExportJob.Status.CANCELLED) {
+                continue;
+            }
+            Map<OrthancExportItem.Status, Long> jobCounts = counts.getOrDefault(job.getId(), Map.of());
+            long unfinished = jobCounts.getOrDefault(OrthancExportItem.Status.PENDING, 0L)
+                    + jobCounts.getOrDefault(OrthancExportItem.Status.SUBMITTING, 0L)
+                    + jobCounts.getOrDefault(OrthancExportItem.Status.RUNNING, 0L);
+            OrthancExportJob.Status status;
+            if (unfinished > 0) {
+                status = OrthancExportJob.Status.RUNNING;
+            } else if (jobCounts.getOrDefault(OrthancExportItem.Status.CANCELLED, 0L) > 0) {
+                status = OrthancExportJob.Status.CANCELLED;
+            } else if (jobCounts.getOrDefault(OrthancExportItem.Status.FAILURE, 0L) > 0) {
+                status = OrthancExportJob.Status.COMPLETED_WITH_ERRORS;
+            } else {
+                status = OrthancExportJob.Status.COMPLETED;
+            }
+            if (job.getStartedAt() == null && status != OrthancExportJob.Status.QUEUED) {
+                job.setStartedAt(LocalDateTime.now());
+            }
+            if (unfinished == 0 && job.getFinishedAt() == null) {
+                job.setFinishedAt(LocalDateTime.now());
+                log.info("Lot d'export {} terminé: {}", job.getId(), jobCounts);
+            }
+            job.setStatus(status);
+            jobRepository.save(job);
+        }
+    }
+
+    private Map<Long, Map<OrthancExportItem.Status, Long>> countsFor(Collection<Long> jobIds) {
+        Map<Long, Map<OrthancExportItem.Status, Long>> result = new HashMap<>();
+        for (OrthancExportItemRepository.StatusCount count : itemRepository.countByStatus(jobIds)) {
+            result.computeIfAbsent(count.getJobId(), id -> new EnumMap<>(OrthancExportItem.Status.class))
+                    .put(count.getStatus(), count.getCount());
+        }
+        return result;
+    }
+
+    private static OrthancExportJobDTO toDTO(OrthancExportJob job, Map<OrthancExportItem.Status, Long> counts,
+                                             List<OrthancExportItem> items) {
+        Map<OrthancExportItem.Status, Long> jobCounts = counts != null ? counts : Map.of();
+        long succeeded = jobCounts.getOrDefault(OrthancExportItem.Status.SUCCESS, 0L);
+        long failed = jobCounts.getOrDefault(OrthancExportItem.Status.FAILURE, 0L);
+        long cancelled = jobCounts.getOrDefault(OrthancExportItem.Status.CANCELLED, 0L);
+        long running = jobCounts.getOrDefault(OrthancExportItem.Status.RUNNING, 0L)
+                + jobCounts.getOrDefault(OrthancExportItem.Status.SUBMITTING, 0L);
+        long pending = jobCounts.getOrDefault(OrthancExportItem.Status.PENDING, 0L);
+
+        double progress = 0;
+        if (job.getTotalItems() > 0) {
+            double done = succeeded + failed + cancelled;
+            if (items != null) {
+                done += items.stream()
+                        .filter(item -> item.getStatus() == OrthancExportItem.Status.RUNNING)
+                        .mapToDouble(item -> item.getProgress() / 100.0)
+                        .sum();
+            }
+            progress = 100.0 * done / job.getTotalItems();
+        }
+        double studiesPerMinute = 0;
+        if (job.getStartedAt() != null) {
+            LocalDateTime end = job.getFinishedAt() != null ? job.getFinishedAt() : LocalDateTime.now();
+            double minutes = Duration.between(job.getStartedAt(), end).toMillis() / 60000.0;
+            studiesPerMinute = minutes > 0 ? succeeded / minutes : 0;
+        }
+
+        return OrthancExportJobDTO.builder()
+                .id(job.getId())
+                .serveurId(job.getServeurDicomId())
+                .status(job.getStatus().name())
+                .totalItems(job.getTotalItems())
+                .pending(pending)
+                .running(running)
+                .succeeded(succeeded)
+                .failed(failed)
+                .cancelled(cancelled)
+                .progress(progress)
+                .studiesPerMinute(studiesPerMinute)
+                .createdBy(job.getCreatedBy())
+                .createdAt(job.getCreatedAt())
+                .startedAt(job.getStartedAt())
+                .finishedAt(job.getFinishedAt())
+                .items(items == null ? null : items.stream().map(OrthancExportService::toItemDTO).toList())
+                .build();
+    }
+
+    private static OrthancExportJobDTO.ItemDTO toItemDTO(OrthancExportItem item) {
+        return OrthancExportJobDTO.ItemDTO.builder()
+                .id(item.getId())
+                .studyId(item.getStudyId())
+                .target(item.getTarget())
+                .status(item.getStatus().name())
+                .orthancJobId(item.getOrthancJobId())
+                .progress(item.getProgress())
+                .attempts(item.getAttempts())
+                .error(item.getError())
+                .startedAt(item.getStartedAt())
+                .finishedAt(item.getFinishedAt())
+                .build();
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > MAX_ERROR_LENGTH ? message.substring(0, MAX_ERROR_LENGTH) : message;
+    }
+}
@@ -0,0 +1,240 @@
+package sn.xyz.medcenter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+/**
+ * Moteur de fan-out pour les appels Orthanc multiples (un appel par patient, étude, série...).
+ * Borne le nombre d'éléments traités en parallèle, applique un timeout à chaque élément et
+ * distribue les jetons de requêtes HTTP simultanées par serveur Orthanc (voir {@link #limited}).
+ */
+@Service
+@Slf4j
+public class OrthancFanOutService {
+
+    private static final int DEFAULT_MAX_WAITING_PER_HOST = 200;
+
+    private final int maxInFlightPerHost;
+    private final int maxWaitingPerHost;
+    private final Duration itemTimeout;
+    private final Map<String, HostPermits> permitsByHost = new ConcurrentHashMap<>();
+
+    @Autowired
+    public OrthancFanOutService(@Value("${orthanc.fanout.max-in-flight:16}") int maxInFlightPerHost,
+                                @Value("${orthanc.fanout.max-waiting:200}") int maxWaitingPerHost,
+                                @Value("${orthanc.fanout.item-timeout:10s}") Duration itemTimeout) {
+        this.maxInFlightPerHost = maxInFlightPerHost;
+        this.maxWaitingPerHost = maxWaitingPerHost;
+        this.itemTimeout = itemTimeout;
+    }
+
+    public OrthancFanOutService(int maxInFlightPerHost, Duration itemTimeout) {
+        this(maxInFlightPerHost, DEFAULT_MAX_WAITING_PER_HOST, itemTimeout);
+    }
+
+    /**
+     * Exécute un appel par élément avec une concurrence bornée pour le serveur Orthanc donné
+     * @param orthancUrl URL du serveur Orthanc ciblé
+     * @param items Éléments à traiter (IDs Orthanc en général)
+     * @param fetcher Appel à exécuter pour chaque élément
+     * @param fallback Valeur de repli en cas d'erreur ou de timeout (null pour ignorer l'élément)
+     * @param ordered true pour conserver l'ordre des éléments, false pour émettre au fil de l'eau
+     * @return Flux des résultats
+     */
+    public <T, R> Flux<R> fanOut(String orthancUrl, Collection<T> items, Function<T, Mono<R>> fetcher,
+                                 Function<T, R> fallback, boolean ordered) {
+        if (items == null || items.isEmpty()) {
+            return Flux.empty();
+        }
+        Function<T, Mono<R>> guarded = item -> Mono.defer(() -> fetcher.apply(item))
+                .timeout(itemTimeout)
+                .onErrorResume(e -> {
+                    log.warn("Échec de l'appel Orthanc pour {} sur {}: {}", item, orthancUrl, e.getMessage());
+                    return fallback != null ? Mono.justOrEmpty(fallback.apply(item)) : Mono.empty();
+                });
+        int concurrency = Math.min(items.size(), maxInFlightPerHost);
+        return ordered
+                ? Flux.fromIterable(items).flatMapSequential(guarded, concurrency)
+                : Flux.fromIterable(items).flatMap(guarded, concurrency);
+    }
+
+    /**
+     * Variante de {@link #fanOut} qui collecte les résultats dans l'ordre des éléments
+     */
+    public <T, R> Mono<List<R>> fanOutToList(String orthancUrl, Collection<T> items, Function<T, Mono<R>> fetcher,
+                                             Function<T, R> fallback) {
+        return fanOut(orthancUrl, items, fetcher, fallback, true).collectList();
+    }
+
+    /**
+     * Exécute une requête HTTP en respectant la limite de requêtes simultanées du serveur Orthanc.
+     * Le jeton n'est tenu que pendant la requête elle-même, ce qui permet d'imbriquer les fan-out
+     * (études puis séries) sans risque d'interblocage. Au-delà de orthanc.fanout.max-waiting requêtes en
+     * attente pour un serveur, les suivantes sont refusées ({@link OrthancUnavailableException}) : un
+     * serveur lent ne peut pas accumuler indéfiniment les requêtes des autres utilisateurs.
+     * @param orthancUrl URL du serveur Orthanc ciblé
+     * @param call Appel à exécuter
+     * @return Résultat de l'appel
+     */
+    public <R> Mono<R> limited(String orthancUrl, Mono<R> call) {
+        HostPermits permits = permitsFor(orthancUrl);
+        return Mono.usingWhen(permits.acquire(orthancUrl),
+                permit -> call,
+                permit -> permits.release(),
+                (permit, e) -> permits.release(),
+                permit -> permits.release());
+    }
+
+    /**
+     * Nombre de requêtes en cours par serveur Orthanc
+     */
+    public Map<String, Integer> getInFlightByHost() {
+        Map<String, Integer> inFlight = new ConcurrentHashMap<>();
+        permitsByHost.forEach((host, permits) -> inFlight.put(host, permits.inUse()));
+        return inFlight;
+    }
+
+    /**
+     * Nombre de requêtes en cours pour un serveur Orthanc
+     */
+    public int inFlight(String orthancUrl) {
+        HostPermits permits = permitsByHost.get(hostKey(orthancUrl));
+        return permits != null ? permits.inUse() : 0;
+    }
+
+    /**
+     * Nombre de requêtes en attente d'un jeton pour un serveur Orthanc
+     */
+    public int waiting(String orthancUrl) {
+        HostPermits permits = permitsByHost.get(hostKey(orthancUrl));
+        return permits != null ? permits.waiting() : 0;
+    }
+
+    private HostPermits permitsFor(String orthancUrl) {
+        return permitsByHost.computeIfAbsent(hostKey(orthancUrl),
+                key -> new HostPermits(maxInFlightPerHost, maxWaitingPerHost));
+    }
+
+    private static String hostKey(String orthancUrl) {
+        try {
+            URI uri = URI.create(orthancUrl);
+            if (uri.getHost() != null) {
+                return uri.getHost() + ":" + uri.getPort();
+            }
+        } catch (IllegalArgumentException e) {
+            log.debug("URL Orthanc non analysable {}: {}", orthancUrl, e.getMessage());
+        }
+        return orthancUrl;
+    }
+
+    /**
+     * Jetons de concurrence d'un serveur Orthanc, distribués dans l'ordre d'arrivée
+     */
+    static final class HostPermits {
+
+        private final int maxPermits;
+        private final int maxWaiting;
+        private final Queue<Waiter> waiters = new ArrayDeque<>();
+        private int inUse;
+
+        HostPermits(int maxPermits, int maxWaiting) {
+            this.maxPermits = Math.max(1, maxPermits);
+            this.maxWaiting = Math.max(0, maxWaiting);
+        }
+
+        Mono<Boolean> acquire(String orthancUrl) {
+            return Mono.create(sink -> {
+                Waiter waiter = new Waiter(sink);
+                boolean granted;
+                boolean rejected = false;
+                synchronized (this) {
+                    granted = inUse < maxPermits;
+                    if (granted) {
+                        inUse++;
+                    } else if (waiters.size() < maxWaiting) {
+                        waiters.add(waiter);
+                    } else {
+                        rejected = true;
+                    }
+                }
+                if (rejected) {
+                    sink.error(new OrthancUnavailableException(orthancUrl, "trop de requêtes en attente"));
+                } else if (granted) {
+                    waiter.grant();
+                } else {
+                    sink.onCancel(() -> {
+                        if (waiter.done.compareAndSet(false, true)) {
+                            synchronized (this) {
+                                waiters.remove(waiter);
+                            }
+                        } else {
+                            // Le jeton a été attribué entre-temps: on le rend
+                            release().subscribe();
+                        }
+                    });
+                }
+            });
+        }
+
+        Mono<Void> release() {
+            return Mono.fromRunnable(() -> {
+                while (true) {
+                    Waiter next;
+                    synchronized (this) {
+                        next = waiters.poll();
+                        if (next == null) {
+                            inUse--;
+                            return;
+                        }
+                    }
+                    // Le jeton est transféré directement au prochain en attente
+                    if (next.grant()) {
+                        return;
+                    }
+                }
+            });
+        }
+
+        synchronized int inUse() {
+            return inUse;
+        }
+
+        synchronized int waiting() {
+            return waiters.size();
+        }
+    }
+
+    private static final class Waiter {
+
+        private final MonoSink<Boolean> sink;
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        Waiter(MonoSink<Boolean> sink) {
+            this.sink = sink;
+        }
+
+        boolean grant() {
+            if (done.compareAndSet(false, true)) {
+                sink.success(Boolean.TRUE);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package sn.xyz.medcenter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import sn.xyz.medcenter.dto.OrthancFederatedStudyDTO;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recherche d'études sur l'ensemble des serveurs DICOM. La requête /tools/find est envoyée à tous les
+ * serveurs en parallèle ; les études sont émises au fil des réponses, une seule fois par StudyInstanceUID
+ * (la première reçue). La recherche s'arrête dès que la limite est atteinte ou à l'échéance, en annulant
+ * les requêtes encore en cours : un serveur lent ou indisponible ne retarde pas les autres.
+ */
+@Service
+@Slf4j
+public class OrthancFederatedSearchService {
+
+    private final DynamicOrthancService dynamicOrthancService;
+    private final OrthancRoutingService routingService;
+    private final OrthancMapperService mapper;
+    private final String defaultOrthancUrl;
+    private final int defaultLimit;
+    private final int maxLimit;
+    private final Duration defaultDeadline;
+    private final Duration maxDeadline;
+
+    public OrthancFederatedSearchService(DynamicOrthancService dynamicOrthancService, OrthancRoutingService routingService,
+                                         OrthancMapperService mapper,
+                                         @Value("${orthanc.server.url}") String defaultOrthancUrl,
+                                         @Value("${orthanc.federated-search.default-limit:100}") int defaultLimit,
+                                         @Value("${orthanc.federated-search.max-limit:1000}") int maxLimit,
+                                         @Value("${orthanc.federated-search.deadline:800ms}") Duration defaultDeadline,
+                                         @Value("${orthanc.federated-search.max-deadline:10s}") Duration maxDeadline) {
+        this.dynamicOrthancService = dynamicOrthancService;
+        this.routingService = routingService;
+        this.mapper = mapper;
+        this.defaultOrthancUrl = defaultOrthancUrl;
+        this.defaultLimit = defaultLimit;
+        this.maxLimit = maxLimit;
+        this.defaultDeadline = defaultDeadline;
+        this.maxDeadline = maxDeadline;
+    }
+
+    /**
+     * Études correspondant à une requête, tous serveurs confondus
+     * @param query Requête Orthanc /tools/find (seuls Query, CaseSensitive et Labels sont transmis tels quels)
+     * @param limit Nombre maximum d'études, ou null pour orthanc.federated-search.default-limit
+     * @param deadline Durée maximale de la recherche, ou null pour orthanc.federated-search.deadline
+     * @return Études dédoublonnées, dans leur ordre d'arrivée
+     * @throws IllegalArgumentException si la limite ou l'échéance ne sont pas positives
+     */
+    public Flux<OrthancFederatedStudyDTO> search(Map<String, Object> query, Integer limit, Duration deadline) {
+        int effectiveLimit = limit == null ? defaultLimit : limit;
+        Duration effectiveDeadline = deadline == null ? defaultDeadline : deadline;
+        if (effectiveLimit < 1 || effectiveDeadline.isNegative() || effectiveDeadline.isZero()) {
+            throw new IllegalArgumentException("La limite et l'échéance doivent être positives");
+        }
+        effectiveLimit = Math.min(effectiveLimit, maxLimit);
+        if (effectiveDeadline.compareTo(maxDeadline) > 0) {
+            effectiveDeadline = maxDeadline;
+        }
+
+        Map<String, Object> studyQuery = studyQuery(query, effectiveLimit);
+        List<OrthancRoutingService.ServerRoute> routes = targets();
+        Set<String> seenUids = ConcurrentHashMap.newKeySet();
+        AtomicInteger answered = new AtomicInteger();
+
+        List<Flux<OrthancFederatedStudyDTO>> perServer = new ArrayList<>(routes.size());
+        for (OrthancRoutingService.ServerRoute route : routes) {
+            perServer.add(dynamicOrthancService.findStudies(route.baseUrl(), studyQuery)
+                    .doOnNext(studies -> answered.incrementAndGet())
+                    .flatMapIterable(studies -> studies)
+                    .map(study -> mapper.mapToFederatedStudy(route.serveurId(), route.hopitalId(), study))
+                    .onErrorResume(e -> {
+                        log.warn("Recherche fédérée: serveur {} ignoré ({})", route.baseUrl(), e.getMessage());
+                        return Flux.empty();
+                    }));
+        }
+
+        long start = System.nanoTime();
+        return Flux.merge(perServer)
+                .filter(study -> study.getStudyInstanceUID() == null || seenUids.add(study.getStudyInstanceUID()))
+                .take(effectiveLimit)
+                .take(effectiveDeadline)
+                .doFinally(signal -> log.info("Recherche fédérée: {} études de {}/{} serveurs en {} ms ({})",
+                        seenUids.size(), answered.get(), routes.size(),
+                        Duration.ofNanos(System.nanoTime() - start).toMillis(), signal));
+    }
+
+    /**
+     * Serveurs DICOM enregistrés, plus le serveur orthanc.server.url s'il n'en fait pas partie
+     */
+    private List<OrthancRoutingService.ServerRoute> targets() {
+        List<OrthancRoutingService.ServerRoute> routes = new ArrayList<>(routingService.allRoutes());
+        boolean defaultRegistered = routes.stream().anyMatch(route -> route.baseUrl().equals(defaultOrthancUrl));
+        if (!defaultRegistered) {
+            routes.add(new OrthancRoutingService.ServerRoute(null, null, null, defaultOrthancUrl, null, null));
+        }
+        return routes;
+    }
+
+    /**
+     * Requête envoyée à chaque serveur : niveau étude, détails inclus, au plus « limit » études par serveur
+     */
+    private static Map<String, Object> studyQuery(Map<String, Object> query, int limit) {
+        Map<String, Object> studyQuery = new LinkedHashMap<>();
+        studyQuery.put("Level", "Study");
+        studyQuery.put("Query", query.getOrDefault("Query", Map.of()));
+        if (query.containsKey("CaseSensitive")) {
+            studyQuery.put("CaseSensitive", query.get("CaseSensitive"));
+        }
+        if (query.containsKey("Labels")) {
+            studyQuery.put("Labels", query.get("Labels"));
+            studyQuery.put("LabelsConstraint", query.getOrDefault("LabelsConstraint", "All"));
+        }
+        studyQuery.put("Expand", true);
+        studyQuery.put("Limit", limit);
+        return studyQuery;
+    }
+}
@@ -0,0 +1,480 @@
+package sn.xyz.medcenter.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import sn.xyz.medcenter.dto.OrthancPatientResourceDTO;
+import sn.xyz.medcenter.dto.OrthancPatientsResponseDTO;
+import sn.xyz.medcenter.dto.OrthancResource;
+import sn.xyz.medcenter.dto.OrthancSeriesResourceDTO;
+import sn.xyz.medcenter.dto.OrthancStudyResourceDTO;
+import sn.xyz.medcenter.model.OrthancChangeCheckpoint;
+import sn.xyz.medcenter.model.OrthancIndexEntry;
+import sn.xyz.medcenter.model.OrthancIndexEntry.Level;
+import sn.xyz.medcenter.repository.OrthancChangeCheckpointRepository;
+import sn.xyz.medcenter.repository.OrthancIndexEntryRepository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Index local des patients, études et séries de chaque ServeurDICOM, construit une première fois
+ * par énumération complète puis tenu à jour à partir du flux /changes (voir {@link OrthancChangeFeedService}).
+ * Exécuté après le cache des ressources, pour relire les ressources modifiées à jour.
+ */
+@Service
+@Slf4j
+@Order(10)
+public class OrthancIndexService implements OrthancChangeListener {
+
+    private static final Map<Level, String> RESOURCE_PATHS = Map.of(
+            Level.PATIENT, "patients",
+            Level.STUDY, "studies",
+            Level.SERIES, "series");
+    private static final Map<Level, Class<? extends OrthancResource>> RESOURCE_TYPES = Map.of(
+            Level.PATIENT, OrthancPatientResourceDTO.class,
+            Level.STUDY, OrthancStudyResourceDTO.class,
+            Level.SERIES, OrthancSeriesResourceDTO.class);
+    private static final Set<String> PATIENT_SORT_COLUMNS = Set.of("patientName", "patientDicomId", "lastUpdate");
+
+    private final OrthancIndexEntryRepository indexRepository;
+    private final OrthancChangeCheckpointRepository checkpointRepository;
+    private final DynamicOrthancService dynamicOrthancService;
+    private final OrthancClientRegistry clientRegistry;
+    private final OrthancFanOutService fanOutService;
+    private final ObjectMapper objectMapper;
+    private final int bootstrapPageSize;
+    private final int streamPageSize;
+    private final Duration requestTimeout;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public OrthancIndexService(OrthancIndexEntryRepository indexRepository,
+                               OrthancChangeCheckpointRepository checkpointRepository,
+                               DynamicOrthancService dynamicOrthancService, OrthancClientRegistry clientRegistry,
+                               OrthancFanOutService fanOutService, ObjectMapper objectMapper,
+                               @Value("${orthanc.index.bootstrap-page-size:500}") int bootstrapPageSize,
+                               @Value("${orthanc.index.stream-page-size:200}") int streamPageSize,
+                               @Value("${orthanc.changes.request-timeout:10s}") Duration requestTimeout) {
+        this.indexRepository = indexRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.dynamicOrthancService = dynamicOrthancService;
+        this.clientRegistry = clientRegistry;
+        this.fanOutService = fanOutService;
+        this.objectMapper = objectMapper;
+        this.bootstrapPageSize = bootstrapPageSize;
+        this.streamPageSize = streamPageSize;
+        this.requestTimeout = requestTimeout;
+    }
+
+    /**
+     * Indique si l'index d'un serveur est construit et peut répondre à la place d'Orthanc
+     */
+    public boolean isReady(Integer serveurId) {
+        return serveurId != null && checkpointRepository.findById(serveurId)
+                .map(OrthancChangeCheckpoint::isIndexReady)
+                .orElse(false);
+    }
+
+    /**
+     * Construit l'index d'un serveur par énumération complète. Le numéro de séquence est relevé avant
+     * l'énumération : les modifications concurrentes seront rejouées (mises à jour idempotentes).
+     * @param serveurId ID du ServeurDICOM
+     * @param orthancUrl URL du serveur Orthanc
+     * @return Numéro de séquence à partir duquel suivre le flux /changes
+     */
+    public long bootstrap(Integer serveurId, String orthancUrl) {
+        long startedAt = System.currentTimeMillis();
+        log.info("Amorçage de l'index Orthanc du serveur {} ({})", serveurId, orthancUrl);
+        Long lastSeq = dynamicOrthancService.getLastChangeSeq(orthancUrl).block(requestTimeout);
+        long seq = lastSeq != null ? lastSeq : 0L;
+
+        checkpointRepository.save(OrthancChangeCheckpoint.builder()
+                .serveurDicomId(serveurId)
+                .lastSeq(seq)
+                .indexReady(false)
+                .build());
+        indexRepository.deleteByServeur(serveurId);
+
+        int total = 0;
+        for (Level level : Level.values()) {
+            int since = 0;
+            while (true) {
+                List<? extends OrthancResource> page = dynamicOrthancService
+                        .listResources(orthancUrl, RESOURCE_PATHS.get(level), since, bootstrapPageSize,
+                                RESOURCE_TYPES.get(level))
+                        .block(requestTimeout);
+                if (page == null || page.isEmpty()) {
+                    break;
+                }
+                List<OrthancIndexEntry> entries = new ArrayList<>(page.size());
+                for (OrthancResource resource : page) {
+                    entries.add(toEntry(serveurId, level, resource, new OrthancIndexEntry()));
+                }
+                indexRepository.saveAll(entries);
+                total += page.size();
+                since += page.size();
+                if (page.size() < bootstrapPageSize) {
+                    break;
+                }
+            }
+        }
+
+        checkpointRepository.save(OrthancChangeCheckpoint.builder()
+                .serveurDicomId(serveurId)
+                .lastSeq(seq)
+                .indexReady(true)
+                .build());
+        log.info("Index Orthanc du serveur {} construit: {} ressources en {} ms", serveurId, total,
+                System.currentTimeMillis() - startedAt);
+        return seq;
+    }
+
+    /**
+     * Patients d'un serveur lus depuis l'index local
+     * @param serveurId ID du ServeurDICOM
+     * @return Patients triés par nom, ou vide si l'index n'est pas encore construit
+     */
+    public Optional<List<OrthancPatientsResponseDTO.OrthancPatientDetailDTO>> findPatients(Integer serveurId) {
+        if (!isReady(serveurId)) {
+            return Optional.empty();
+        }
+        List<OrthancIndexEntry> patients = indexRepository
+                .findByServeurDicomIdAndLevelOrderByPatientNameAscOrthancIdAsc(serveurId, Level.PATIENT);
+        Map<String, List<String>> studiesByPatient = groupByParent(
+                indexRepository.findByServeurDicomIdAndLevel(serveurId, Level.STUDY));
+        return Optional.of(toPatientDTOs(patients, studiesByPatient));
+    }
+
+    /**
+     * Patients d'un serveur lus depuis l'index local page par page, à la demande du consommateur.
+     * Pagination par clé (nom, ID Orthanc) : les mises à jour concurrentes de l'index ne décalent pas les pages.
+     * @param serveurId ID du ServeurDICOM (index construit, voir {@link #isReady})
+     * @return Flux des patients triés par nom
+     */
+    public Flux<OrthancPatientsResponseDTO.OrthancPatientDetailDTO> streamPatients(Integer serveurId) {
+        return Flux.<List<OrthancPatientsResponseDTO.OrthancPatientDetailDTO>, StreamPosition>generate(
+                        () -> new StreamPosition(null, null), (position, sink) -> {
+                    List<OrthancPatientsResponseDTO.OrthancPatientDetailDTO> patients = findPatientPage(serveurId,
+                            "patientName", false, 0, position.afterKey(), position.afterId(), streamPageSize);
+                    sink.next(patients);
+                    if (patients.size() < streamPageSize) {
+                        sink.complete();
+                        return position;
+                    }
+                    OrthancPatientsResponseDTO.OrthancPatientDetailDTO last = patients.get(patients.size() - 1);
+                    return new StreamPosition(last.getPatientName(), last.getId());
+                })
+                .concatMapIterable(patients -> patients)
+                .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * IDs Orthanc des patients d'un serveur portant un PatientID DICOM donné, lus depuis l'index local
+     * @param serveurId ID du ServeurDICOM (index construit, voir {@link #isReady})
+     * @param patientDicomId Tag DICOM PatientID
+     * @return IDs Orthanc des patients
+     */
+    public List<String> findPatientIds(Integer serveurId, String patientDicomId) {
+        return indexRepository.findByServeurDicomIdAndLevelAndPatientDicomId(serveurId, Level.PATIENT, patientDicomId)
+                .stream()
+                .map(OrthancIndexEntry::getOrthancId)
+                .toList();
+    }
+
+    /**
+     * Page de patients lue depuis l'index local, par rang ou après une position (pagination par clé)
+     * @param serveurId ID du ServeurDICOM (index construit, voir {@link #isReady})
+     * @param sortColumn Colonne de tri de OrthancIndexEntry (patientName, patientDicomId ou lastUpdate)
+     * @param descending Tri décroissant
+     * @param offset Rang du premier patient, ignoré si une position est donnée
+     * @param afterKey Valeur de tri du dernier patient de la page précédente, ou null
+     * @param afterId ID Orthanc du dernier patient de la page précédente, ou null
+     * @param limit Nombre maximum de patients
+     * @return Patients de la page, triés par la colonne puis par ID Orthanc
+     */
+    public List<OrthancPatientsResponseDTO.OrthancPatientDetailDTO> findPatientPage(Integer serveurId, String sortColumn,
+                                                                                    boolean descending, int offset,
+                                                                                    String afterKey, String afterId,
+                                                                                    int limit) {
+        if (!PATIENT_SORT_COLUMNS.contains(sortColumn)) {
+            throw new IllegalArgumentException("Colonne de tri non indexée: " + sortColumn);
+        }
+        // Valeurs nulles triées comme des chaînes vides, pour que la position reste comparable
+        String key = "COALESCE(e." + sortColumn + ", '')";
+        String comparison = descending ? "<" : ">";
+        String direction = descending ? "DESC" : "ASC";
+        boolean keyset = afterId != null;
+        TypedQuery<OrthancIndexEntry> query = entityManager.createQuery(
+                "SELECT e FROM OrthancIndexEntry e WHERE e.serveurDicomId = :serveurId AND e.level = :level"
+                        + (keyset ? " AND (" + key + " " + comparison + " :afterKey OR (" + key + " = :afterKey"
+                        + " AND e.orthancId " + comparison + " :afterId))" : "")
+                        + " ORDER BY " + key + " " + direction + ", e.orthancId " + direction,
+                OrthancIndexEntry.class)
+                .setParameter("serveurId", serveurId)
+                .setParameter("level", Level.PATIENT)
+                .setFirstResult(keyset ? 0 : offset)
+                .setMaxResults(limit);
+        if (keyset) {
+            query.setParameter("afterKey", afterKey != null ? afterKey : "")
+                    .setParameter("afterId", afterId);
+        }
+        List<OrthancIndexEntry> patients = query.getResultList();
+        List<String> patientIds = patients.stream().map(OrthancIndexEntry::getOrthancId).toList();
+        Map<String, List<String>> studiesByPatient = patientIds.isEmpty() ? Map.of() : groupByParent(
+                indexRepository.findByServeurDicomIdAndLevelAndParentOrthancIdIn(serveurId, Level.STUDY, patientIds));
+        return toPatientDTOs(patients, studiesByPatient);
+    }
+
+    private List<OrthancPatientsResponseDTO.OrthancPatientDetailDTO> toPatientDTOs(List<OrthancIndexEntry> patients,
+                                                                                  Map<String, List<String>> studiesByPatient) {
+        List<OrthancPatientsResponseDTO.OrthancPatientDetailDTO> result = new ArrayList<>(patients.size());
+        for (OrthancIndexEntry patient : patients) {
+            Map<String, String> mainDicomTags = readTags(patient.getMainDicomTags());
+            result.add(OrthancPatientsResponseDTO.OrthancPatientDetailDTO.builder()
+                    .id(patient.getOrthancId())
+                    .patientName(patient.getPatientName())
+                    .patientBirthDate(mainDicomTags.get("PatientBirthDate"))
+                    .patientSex(mainDicomTags.get("PatientSex"))
+                    .patientId(patient.getPatientDicomId())
+                    .isStable(patient.isStable())
+                    .lastUpdate(patient.getLastUpdate())
+                    .studies(studiesByPatient.getOrDefault(patient.getOrthancId(), new ArrayList<>()))
+                    .mainDicomTags(mainDicomTags)
+                    .build());
+        }
+        return result;
+    }
+
+    private static Map<String, List<String>> groupByParent(List<OrthancIndexEntry> entries) {
+        return entries.stream()
+                .filter(entry -> entry.getParentOrthancId() != null)
+                .collect(Collectors.groupingBy(OrthancIndexEntry::getParentOrthancId,
+                        Collectors.mapping(OrthancIndexEntry::getOrthancId, Collectors.toList())));
+    }
+
+    @Override
+    public void onChange(String orthancUrl, Map<String, Object> change) {
+        onChanges(orthancUrl, List.of(change));
+    }
+
+    /**
+     * Applique une page de modifications : les ressources créées ou modifiées sont relues en parallèle
+     * puis enregistrées, les ressources supprimées (ou introuvables à la relecture) sont retirées avec leurs
+     * descendants. Si une relecture échoue, le reste de la page est appliqué puis une exception est levée :
+     * le point de reprise n'avance pas et la page sera rejouée.
+     */
+    @Override
+    public void onChanges(String orthancUrl, List<Map<String, Object>> changes) {
+        Integer serveurId = clientRegistry.serveurIdFor(orthancUrl);
+        if (serveurId == null) {
+            return;
+        }
+
+        // Seule la dernière modification de chaque ressource compte
+        Map<ResourceKey, Boolean> deletedByResource = new LinkedHashMap<>();
+        for (Map<String, Object> change : changes) {
+            Level level = levelOf(change.get("ResourceType"));
+            Object id = change.get("ID");
+            if (level != null && id != null) {
+                ResourceKey key = new ResourceKey(level, id.toString());
+                deletedByResource.remove(key);
+                deletedByResource.put(key, "Deleted".equals(change.get("ChangeType")));
+            }
+        }
+        if (deletedByResource.isEmpty()) {
+            return;
+        }
+
+        List<ResourceKey> toRefresh = new ArrayList<>();
+        Map<Level, List<String>> toDelete = new HashMap<>();
+        deletedByResource.forEach((key, deleted) -> {
+            if (deleted) {
+                toDelete.computeIfAbsent(key.level(), level -> new ArrayList<>()).add(key.id());
+            } else {
+                toRefresh.add(key);
+            }
+        });
+
+        List<RefreshedResource> results = fanOutService
+                .fanOutToList(orthancUrl, toRefresh, key -> fetch(orthancUrl, key), RefreshedResource::failed)
+                .block();
+        List<Map.Entry<ResourceKey, OrthancResource>> refreshed = new ArrayList<>();
+        List<ResourceKey> failed = new ArrayList<>();
+        for (RefreshedResource result : results) {
+            if (result.failed()) {
+                failed.add(result.key());
+            } else if (result.resource() != null) {
+                refreshed.add(Map.entry(result.key(), result.resource()));
+            } else {
+                toDelete.computeIfAbsent(result.key().level(), level -> new ArrayList<>()).add(result.key().id());
+            }
+        }
+
+        upsert(serveurId, refreshed);
+        for (Level level : Level.values()) {
+            List<String> ids = toDelete.get(level);
+            if (ids != null) {
+                deleteWithDescendants(serveurId, level, ids);
+            }
+        }
+        log.debug("Index Orthanc du serveur {}: {} ressources mises à jour, {} supprimées", serveurId,
+                refreshed.size(), toDelete.values().stream().mapToInt(List::size).sum());
+        if (!failed.isEmpty()) {
+            throw new IllegalStateException("Relecture impossible de " + failed.size() + " ressources sur "
+                    + orthancUrl + " (ex. " + failed.get(0) + "), modifications rejouées au prochain passage");
+        }
+    }
+
+    /**
+     * Relit une ressource modifiée ; une ressource introuvable (404) a été supprimée depuis la modification
+     */
+    private Mono<RefreshedResource> fetch(String orthancUrl, ResourceKey key) {
+        Mono<? extends OrthancResource> resource = switch (key.level()) {
+            case PATIENT -> dynamicOrthancService.getPatient(orthancUrl, key.id());
+            case STUDY -> dynamicOrthancService.getStudy(orthancUrl, key.id());
+            case SERIES -> dynamicOrthancService.getSeries(orthancUrl, key.id());
+        };
+        return resource
+                .map(found -> new RefreshedResource(key, found, false))
+                .onErrorResume(WebClientResponseException.NotFound.class,
+                        e -> Mono.just(new RefreshedResource(key, null, false)))
+                .defaultIfEmpty(new RefreshedResource(key, null, true));
+    }
+
+    private void upsert(Integer serveurId, List<Map.Entry<ResourceKey, OrthancResource>> resources) {
+        if (resources.isEmpty()) {
+            return;
+        }
+        Map<Level, Map<String, OrthancResource>> byLevel = new HashMap<>();
+        for (Map.Entry<ResourceKey, OrthancResource> resource : resources) {
+            byLevel.computeIfAbsent(resource.getKey().level(), level -> new LinkedHashMap<>())
+                    .put(resource.getKey().id(), resource.getValue());
+        }
+        List<OrthancIndexEntry> entries = new ArrayList<>(resources.size());
+        byLevel.forEach((level, resourcesById) -> {
+            Map<String, OrthancIndexEntry> existing = indexRepository
+                    .findByServeurDicomIdAndLevelAndOrthancIdIn(serveurId, level, resourcesById.keySet())
+                    .stream()
+                    .collect(Collectors.toMap(OrthancIndexEntry::getOrthancId, entry -> entry));
+            resourcesById.forEach((id, resource) ->
+                    entries.add(toEntry(serveurId, level, resource, existing.getOrDefault(id, new OrthancIndexEntry()))));
+        });
+        indexRepository.saveAll(entries);
+    }
+
+    private void deleteWithDescendants(Integer serveurId, Level level, Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        Level childLevel = level == Level.PATIENT ? Level.STUDY : level == Level.STUDY ? Level.SERIES : null;
+        if (childLevel != null) {
+            List<String> childIds = indexRepository
+                    .findByServeurDicomIdAndLevelAndParentOrthancIdIn(serveurId, childLevel, ids)
+                    .stream()
+                    .map(OrthancIndexEntry::getOrthancId)
+                    .toList();
+            deleteWithDescendants(serveurId, childLevel, childIds);
+        }
+        indexRepository.deleteResources(serveurId, level, ids);
+    }
+
+    private OrthancIndexEntry toEntry(Integer serveurId, Level level, OrthancResource resource, OrthancIndexEntry entry) {
+        Map<String, String> tags = resource.mainDicomTags() != null ? resource.mainDicomTags() : Map.of();
+        entry.setServeurDicomId(serveurId);
+        entry.setLevel(level);
+        entry.setOrthancId(resource.id());
+        entry.setParentOrthancId(resource.parentId());
+        entry.setStable(resource.stable());
+        entry.setLastUpdate(resource.lastUpdate());
+        entry.setMainDicomTags(writeTags(tags));
+        if (resource instanceof OrthancPatientResourceDTO) {
+            entry.setPatientName(tags.get("PatientName"));
+            entry.setPatientDicomId(tags.get("PatientID"));
+        } else if (resource instanceof OrthancStudyResourceDTO study) {
+            Map<String, String> patientTags = study.patientMainDicomTags() != null
+                    ? study.patientMainDicomTags() : Map.of();
+            entry.setPatientName(patientTags.get("PatientName"));
+            entry.setPatientDicomId(patientTags.get("PatientID"));
+            entry.setStudyInstanceUid(tags.get("StudyInstanceUID"));
+            entry.setStudyDate(tags.get("StudyDate"));
+        } else if (resource instanceof OrthancSeriesResourceDTO) {
+            entry.setSeriesInstanceUid(tags.get("SeriesInstanceUID"));
+            entry.setModality(tags.get("Modality"));
+        }
+        return entry;
+    }
+
+    private String writeTags(Map<String, String> tags) {
+        try {
+            return objectMapper.writeValueAsString(tags);
+        } catch (JsonProcessingException e) {
+            log.warn("Sérialisation des tags DICOM impossible: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Map<String, String> readTags(String json) {
+        if (json == null) {
+            return new HashMap<>();
+        }
+        try {
+            return objectMapper.readValue(json, new TypeReference<Map<String, String>>() {});
+        } catch (JsonProcessingException e) {
+            log.warn("Lecture des tags DICOM indexés impossible: {}", e.getMessage());
+            return new HashMap<>();
+        }
+    }
+
+    private static Level levelOf(Object resourceType) {
+        if ("Patient".equals(resourceType)) {
+            return Level.PATIENT;
+        }
+        if ("Study".equals(resourceType)) {
+            return Level.STUDY;
+        }
+        if ("Series".equals(resourceType)) {
+            return Level.SERIES;
+        }
+        return null;
+    }
+
+    private record ResourceKey(Level level, String id) {
+    }
+
+    /**
+     * Dernier patient émis par {@link #streamPatients}, ou aucun avant la première page
+     */
+    private record StreamPosition(String afterKey, String afterId) {
+    }
+
+    /**
+     * Résultat de la relecture d'une ressource : ressource à jour, introuvable (resource null) ou en échec
+     */
+    private record RefreshedResource(ResourceKey key, OrthancResource resource, boolean failed) {
+
+        static RefreshedResource failed(ResourceKey key) {
+            return new RefreshedResource(key, null, true);
+        }
+    }
+}
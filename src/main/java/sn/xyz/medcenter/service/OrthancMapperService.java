@@ -2,6 +2,13 @@ package sn.xyz.medcenter.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import sn.xyz.medcenter.dto.OrthancFederatedStudyDTO;
+import sn.xyz.medcenter.dto.OrthancInstanceResourceDTO;
+import sn.xyz.medcenter.dto.OrthancPatientDetailResponseDTO;
+import sn.xyz.medcenter.dto.OrthancPatientResourceDTO;
+import sn.xyz.medcenter.dto.OrthancPatientsResponseDTO;
+import sn.xyz.medcenter.dto.OrthancSeriesResourceDTO;
+import sn.xyz.medcenter.dto.OrthancStudyResourceDTO;
 import sn.xyz.medcenter.model.Etude;
 import sn.xyz.medcenter.model.Instance;
 import sn.xyz.medcenter.model.Serie;
@@ -9,6 +16,7 @@ import sn.xyz.medcenter.model.Serie;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -96,35 +104,20 @@ public class OrthancMapperService {
     }
 
     /**
-     * Convertit une réponse Orthanc en objet Instance
+     * Convertit une réponse Orthanc d'instance (ou d'envoi d'instance) en objet Instance
      */
-    public Instance mapToInstance(Map<String, Object> orthancResponse) {
+    public Instance mapToInstance(OrthancInstanceResourceDTO orthancResponse) {
         Instance instance = new Instance();
-        try {
-            instance.setId((String) orthancResponse.get("ID"));
-            instance.setSopInstanceUID((String) orthancResponse.get("SOPInstanceUID"));
-            instance.setInstanceNumber((String) orthancResponse.get("InstanceNumber"));
-            instance.setImageComments((String) orthancResponse.get("ImageComments"));
-            instance.setImageType((String) orthancResponse.get("ImageType"));
-            instance.setPhotometricInterpretation((String) orthancResponse.get("PhotometricInterpretation"));
-            
-            instance.setRows((Integer) orthancResponse.get("Rows"));
-            instance.setColumns((Integer) orthancResponse.get("Columns"));
-            instance.setBitsAllocated((Integer) orthancResponse.get("BitsAllocated"));
-            instance.setBitsStored((Integer) orthancResponse.get("BitsStored"));
-            instance.setHighBit((Integer) orthancResponse.get("HighBit"));
-            instance.setPixelRepresentation((String) orthancResponse.get("PixelRepresentation"));
-            
-            instance.setSeriesId((String) orthancResponse.get("ParentSeries"));
-            instance.setFileUuid((String) orthancResponse.get("FileUUID"));
-            instance.setFileSize((Long) orthancResponse.get("FileSize"));
-            
-            String lastUpdate = (String) orthancResponse.get("LastUpdate");
-            if (lastUpdate != null) {
-                instance.setLastUpdate(LocalDateTime.parse(lastUpdate));
-            }
-        } catch (Exception e) {
-            log.error("Erreur lors du mapping de l'instance: {}", e.getMessage());
+        instance.setId(orthancResponse.id());
+        instance.setSeriesId(orthancResponse.parentSeries());
+        instance.setFileUuid(orthancResponse.fileUuid());
+        instance.setFileSize(orthancResponse.fileSize());
+
+        Map<String, String> mainDicomTags = orthancResponse.mainDicomTags();
+        if (mainDicomTags != null) {
+            instance.setSopInstanceUID(mainDicomTags.get("SOPInstanceUID"));
+            instance.setInstanceNumber(mainDicomTags.get("InstanceNumber"));
+            instance.setImageComments(mainDicomTags.get("ImageComments"));
         }
         return instance;
     }
@@ -153,5 +146,146 @@ public class OrthancMapperService {
         }
         return patient;
     }
-}
 
+    /**
+     * Convertit une réponse Orthanc /patients/{id} en élément de la liste des patients d'un hôpital
+     */
+    public OrthancPatientsResponseDTO.OrthancPatientDetailDTO mapToPatientSummary(OrthancPatientResourceDTO patientData) {
+        Map<String, String> mainDicomTags = patientData.mainDicomTags();
+
+        return OrthancPatientsResponseDTO.OrthancPatientDetailDTO.builder()
+                .id(patientData.id())
+                .patientName(mainDicomTags != null ? mainDicomTags.get("PatientName") : null)
+                .patientBirthDate(mainDicomTags != null ? mainDicomTags.get("PatientBirthDate") : null)
+                .patientSex(mainDicomTags != null ? mainDicomTags.get("PatientSex") : null)
+                .patientId(mainDicomTags != null ? mainDicomTags.get("PatientID") : null)
+                .isStable(patientData.stable())
+                .lastUpdate(patientData.lastUpdate())
+                .studies(patientData.studies() != null ? patientData.studies() : new ArrayList<>())
+                .mainDicomTags(mainDicomTags)
+                .build();
+    }
+
+    /**
+     * Construit l'arborescence patient -> études -> séries à partir des réponses Orthanc
+     * chargées en masse (patient, /patients/{id}/studies et /patients/{id}/series), en une seule passe
+     * @param orthancUrl URL du serveur Orthanc
+     * @param patientData Réponse Orthanc du patient
+     * @param studiesData Études du patient (réponses complètes)
+     * @param seriesData Séries du patient (réponses complètes)
+     * @return Détails complets du patient
+     */
+    public OrthancPatientDetailResponseDTO mapToPatientDetailResponse(String orthancUrl, OrthancPatientResourceDTO patientData,
+                                                                      List<OrthancStudyResourceDTO> studiesData,
+                                                                      List<OrthancSeriesResourceDTO> seriesData) {
+        Map<String, OrthancStudyResourceDTO> studiesById = new HashMap<>();
+        for (OrthancStudyResourceDTO study : studiesData) {
+            studiesById.put(study.id(), study);
+        }
+        Map<String, OrthancSeriesResourceDTO> seriesById = new HashMap<>();
+        for (OrthancSeriesResourceDTO series : seriesData) {
+            seriesById.put(series.id(), series);
+        }
+
+        List<OrthancPatientDetailResponseDTO.StudyDetailDTO> studies = new ArrayList<>();
+        if (patientData.studies() != null) {
+            for (String studyId : patientData.studies()) {
+                OrthancStudyResourceDTO study = studiesById.get(studyId);
+                if (study == null) {
+                    // Étude apparue entre deux appels: on garde au moins son identifiant
+                    studies.add(OrthancPatientDetailResponseDTO.StudyDetailDTO.builder()
+                            .id(studyId)
+                            .series(new ArrayList<>())
+                            .build());
+                    continue;
+                }
+                List<OrthancPatientDetailResponseDTO.SeriesDetailDTO> series = new ArrayList<>();
+                if (study.series() != null) {
+                    for (String seriesId : study.series()) {
+                        OrthancSeriesResourceDTO serie = seriesById.get(seriesId);
+                        series.add(serie != null
+                                ? mapToSeriesDetail(serie)
+                                : OrthancPatientDetailResponseDTO.SeriesDetailDTO.builder().id(seriesId).build());
+                    }
+                }
+                studies.add(mapToStudyDetail(study, series));
+            }
+        }
+
+        Map<String, String> patientMainDicomTags = patientData.mainDicomTags();
+        return OrthancPatientDetailResponseDTO.builder()
+                .orthancUrl(orthancUrl)
+                .patientId(patientData.id())
+                .patientName(patientMainDicomTags != null ? patientMainDicomTags.get("PatientName") : null)
+                .patientBirthDate(patientMainDicomTags != null ? patientMainDicomTags.get("PatientBirthDate") : null)
+                .patientSex(patientMainDicomTags != null ? patientMainDicomTags.get("PatientSex") : null)
+                .patientIdDicom(patientMainDicomTags != null ? patientMainDicomTags.get("PatientID") : null)
+                .isStable(patientData.stable())
+                .lastUpdate(patientData.lastUpdate())
+                .patientMainDicomTags(patientMainDicomTags)
+                .studies(studies)
+                .build();
+    }
+
+    /**
+     * Convertit une réponse Orthanc d'étude en StudyDetailDTO
+     */
+    public OrthancPatientDetailResponseDTO.StudyDetailDTO mapToStudyDetail(OrthancStudyResourceDTO studyData,
+                                                                          List<OrthancPatientDetailResponseDTO.SeriesDetailDTO> series) {
+        Map<String, String> studyMainDicomTags = studyData.mainDicomTags();
+        return OrthancPatientDetailResponseDTO.StudyDetailDTO.builder()
+                .id(studyData.id())
+                .studyDate(studyMainDicomTags != null ? studyMainDicomTags.get("StudyDate") : null)
+                .studyTime(studyMainDicomTags != null ? studyMainDicomTags.get("StudyTime") : null)
+                .studyDescription(studyMainDicomTags != null ? studyMainDicomTags.get("StudyDescription") : null)
+                .studyInstanceUID(studyMainDicomTags != null ? studyMainDicomTags.get("StudyInstanceUID") : null)
+                .accessionNumber(studyMainDicomTags != null ? studyMainDicomTags.get("AccessionNumber") : null)
+                .isStable(studyData.stable())
+                .lastUpdate(studyData.lastUpdate())
+                .studyMainDicomTags(studyMainDicomTags)
+                .series(series)
+                .build();
+    }
+
+    /**
+     * Convertit une étude trouvée sur un serveur DICOM en OrthancFederatedStudyDTO
+     */
+    public OrthancFederatedStudyDTO mapToFederatedStudy(Integer serveurId, Integer hopitalId, OrthancStudyResourceDTO studyData) {
+        Map<String, String> tags = studyData.mainDicomTags() != null ? studyData.mainDicomTags() : Map.of();
+        Map<String, String> patientTags = studyData.patientMainDicomTags() != null ? studyData.patientMainDicomTags() : Map.of();
+        return OrthancFederatedStudyDTO.builder()
+                .serveurId(serveurId)
+                .hopitalId(hopitalId)
+                .id(studyData.id())
+                .studyInstanceUID(tags.get("StudyInstanceUID"))
+                .studyDate(tags.get("StudyDate"))
+                .studyTime(tags.get("StudyTime"))
+                .studyDescription(tags.get("StudyDescription"))
+                .accessionNumber(tags.get("AccessionNumber"))
+                .patientId(patientTags.get("PatientID"))
+                .patientName(patientTags.get("PatientName"))
+                .patientBirthDate(patientTags.get("PatientBirthDate"))
+                .seriesCount(studyData.series() != null ? studyData.series().size() : 0)
+                .lastUpdate(studyData.lastUpdate())
+                .build();
+    }
+
+    /**
+     * Convertit une réponse Orthanc de série en SeriesDetailDTO
+     */
+    public OrthancPatientDetailResponseDTO.SeriesDetailDTO mapToSeriesDetail(OrthancSeriesResourceDTO seriesData) {
+        Map<String, String> seriesMainDicomTags = seriesData.mainDicomTags();
+        return OrthancPatientDetailResponseDTO.SeriesDetailDTO.builder()
+                .id(seriesData.id())
+                .seriesDescription(seriesMainDicomTags != null ? seriesMainDicomTags.get("SeriesDescription") : null)
+                .seriesNumber(seriesMainDicomTags != null ? seriesMainDicomTags.get("SeriesNumber") : null)
+                .modality(seriesMainDicomTags != null ? seriesMainDicomTags.get("Modality") : null)
+                .seriesInstanceUID(seriesMainDicomTags != null ? seriesMainDicomTags.get("SeriesInstanceUID") : null)
+                .bodyPartExamined(seriesMainDicomTags != null ? seriesMainDicomTags.get("BodyPartExamined") : null)
+                .isStable(seriesData.stable())
+                .lastUpdate(seriesData.lastUpdate())
+                .instancesCount(seriesData.instancesCount())
+                .seriesMainDicomTags(seriesMainDicomTags)
+                .build();
+    }
+}
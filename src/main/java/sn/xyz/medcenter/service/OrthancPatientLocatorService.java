@@ -0,0 +1,165 @@
+package sn.xyz.medcenter.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import sn.xyz.medcenter.dto.OrthancPatientDetailResponseDTO;
+import sn.xyz.medcenter.dto.OrthancPatientResourceDTO;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Localise un patient Orthanc parmi les serveurs DICOM de tous les hôpitaux.
+ * Le serveur où un patient a été trouvé est mémorisé (une seule requête aux consultations suivantes) ;
+ * les patients introuvables partout sont mémorisés peu de temps pour ne pas réinterroger tous les serveurs.
+ * Les deux index sont tenus à jour par le flux /changes (voir {@link #onChange}).
+ */
+@Service
+@Slf4j
+@Order(20)
+public class OrthancPatientLocatorService implements OrthancChangeListener {
+
+    private final DynamicOrthancService dynamicOrthancService;
+    private final OrthancClientRegistry clientRegistry;
+
+    // ID Orthanc du patient -> URL du serveur qui le détient
+    private final Cache<String, String> locations;
+    // Patients introuvables sur tous les serveurs
+    private final Cache<String, Boolean> misses;
+
+    public OrthancPatientLocatorService(DynamicOrthancService dynamicOrthancService,
+                                        OrthancClientRegistry clientRegistry,
+                                        @Value("${orthanc.locator.max-size:100000}") long maxSize,
+                                        @Value("${orthanc.locator.location-ttl:24h}") Duration locationTtl,
+                                        @Value("${orthanc.locator.miss-ttl:30s}") Duration missTtl) {
+        this.dynamicOrthancService = dynamicOrthancService;
+        this.clientRegistry = clientRegistry;
+        this.locations = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(locationTtl)
+                .recordStats()
+                .build();
+        this.misses = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(missTtl)
+                .build();
+    }
+
+    /**
+     * Arborescence complète d'un patient, quel que soit le serveur qui le détient
+     * @param patientId ID Orthanc du patient
+     * @return Détails complets du patient, ou vide s'il n'est présent sur aucun serveur
+     */
+    public Mono<OrthancPatientDetailResponseDTO> findPatientHierarchy(String patientId) {
+        return locate(patientId)
+                .flatMap(located -> dynamicOrthancService.loadPatientHierarchy(located.orthancUrl(), located.patient()));
+    }
+
+    /**
+     * Serveur détenant un patient et réponse Orthanc du patient
+     * @param patientId ID Orthanc du patient
+     * @return Patient localisé, ou vide s'il n'est présent sur aucun serveur
+     */
+    public Mono<LocatedPatient> locate(String patientId) {
+        if (misses.getIfPresent(patientId) != null) {
+            log.debug("Patient {} absent de tous les serveurs (cache négatif)", patientId);
+            return Mono.empty();
+        }
+        String knownUrl = locations.getIfPresent(patientId);
+        if (knownUrl == null) {
+            return probeAll(patientId, null);
+        }
+        return dynamicOrthancService.getPatient(knownUrl, patientId)
+                .map(patient -> new LocatedPatient(knownUrl, patient))
+                .onErrorResume(e -> {
+                    log.debug("Patient {} introuvable sur {} ({}), recherche sur les autres serveurs",
+                            patientId, knownUrl, e.getMessage());
+                    locations.invalidate(patientId);
+                    return Mono.empty();
+                })
+                .switchIfEmpty(Mono.defer(() -> probeAll(patientId, knownUrl)));
+    }
+
+    /**
+     * Taille et taux de succès des index de localisation
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("locations", locations.estimatedSize());
+        result.put("misses", misses.estimatedSize());
+        result.put("hitRate", locations.stats().hitRate());
+        return result;
+    }
+
+    /**
+     * Un nouveau patient n'est plus « introuvable » et son serveur est connu ; un patient supprimé
+     * est oublié s'il était localisé sur ce serveur
+     */
+    @Override
+    public void onChange(String orthancUrl, Map<String, Object> change) {
+        if (!"Patient".equals(change.get("ResourceType")) || !(change.get("ID") instanceof String patientId)) {
+            return;
+        }
+        Object changeType = change.get("ChangeType");
+        if ("NewPatient".equals(changeType)) {
+            misses.invalidate(patientId);
+            locations.put(patientId, orthancUrl);
+        } else if ("Deleted".equals(changeType)) {
+            locations.asMap().remove(patientId, orthancUrl);
+        }
+    }
+
+    /**
+     * Interroge tous les serveurs en parallèle ; la première réponse positive annule les autres requêtes.
+     * L'absence n'est mémorisée que si tous les serveurs ont répondu 404.
+     */
+    private Mono<LocatedPatient> probeAll(String patientId, String excludedUrl) {
+        Set<String> orthancUrls = clientRegistry.getRegisteredServers().keySet();
+        AtomicBoolean inconclusive = new AtomicBoolean();
+        List<Mono<LocatedPatient>> probes = orthancUrls.stream()
+                .filter(orthancUrl -> !orthancUrl.equals(excludedUrl))
+                .map(orthancUrl -> dynamicOrthancService.getPatient(orthancUrl, patientId)
+                        .map(patient -> new LocatedPatient(orthancUrl, patient))
+                        .onErrorResume(e -> {
+                            if (!(e instanceof WebClientResponseException.NotFound)) {
+                                inconclusive.set(true);
+                                log.debug("Recherche du patient {} impossible sur {}: {}", patientId, orthancUrl,
+                                        e.getMessage());
+                            }
+                            return Mono.empty();
+                        }))
+                .toList();
+        if (probes.isEmpty()) {
+            return Mono.empty();
+        }
+        return Mono.firstWithValue(probes)
+                .doOnNext(located -> {
+                    log.debug("Patient {} localisé sur {}", patientId, located.orthancUrl());
+                    locations.put(patientId, located.orthancUrl());
+                })
+                .onErrorResume(NoSuchElementException.class, e -> {
+                    log.debug("Patient {} absent des {} serveurs DICOM", patientId, probes.size());
+                    if (!inconclusive.get()) {
+                        misses.put(patientId, Boolean.TRUE);
+                    }
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Patient et serveur Orthanc qui le détient
+     */
+    public record LocatedPatient(String orthancUrl, OrthancPatientResourceDTO patient) {
+    }
+}
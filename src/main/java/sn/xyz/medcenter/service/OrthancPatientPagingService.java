@@ -0,0 +1,206 @@
+package sn.xyz.medcenter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import sn.xyz.medcenter.dto.OrthancPatientsResponseDTO.OrthancPatientDetailDTO;
+import sn.xyz.medcenter.util.PageCursorUtil;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Pagination des patients Orthanc d'un serveur. Quand l'index local est construit, les pages sont lues
+ * par clé (tri puis ID Orthanc) : le curseur reste stable si des patients sont ajoutés entre deux pages.
+ * Sinon, chaque page est une seule requête /tools/find (Since/Limit, détails inclus) : seuls les patients
+ * de la page sont récupérés. Le curseur renvoyé encode la source, le tri et la position de la page suivante.
+ */
+@Service
+@Slf4j
+public class OrthancPatientPagingService {
+
+    private static final String INDEX_SOURCE = "index";
+    private static final String ORTHANC_SOURCE = "orthanc";
+    private static final int CURSOR_PARTS = 6;
+
+    /**
+     * Critères de tri : paramètre de l'API, colonne de l'index local et critère OrderBy Orthanc
+     */
+    public enum SortKey {
+        PATIENT_NAME("patientName", "patientName", "DicomTag", "PatientName", OrthancPatientDetailDTO::getPatientName),
+        PATIENT_ID("patientId", "patientDicomId", "DicomTag", "PatientID", OrthancPatientDetailDTO::getPatientId),
+        LAST_UPDATE("lastUpdate", "lastUpdate", "Metadata", "LastUpdate", OrthancPatientDetailDTO::getLastUpdate);
+
+        private final String parameter;
+        private final String indexColumn;
+        private final String orthancType;
+        private final String orthancKey;
+        private final Function<OrthancPatientDetailDTO, String> value;
+
+        SortKey(String parameter, String indexColumn, String orthancType, String orthancKey,
+                Function<OrthancPatientDetailDTO, String> value) {
+            this.parameter = parameter;
+            this.indexColumn = indexColumn;
+            this.orthancType = orthancType;
+            this.orthancKey = orthancKey;
+            this.value = value;
+        }
+
+        static SortKey fromParameter(String parameter) {
+            return Arrays.stream(values())
+                    .filter(key -> key.parameter.equals(parameter))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Tri non supporté: " + parameter));
+        }
+    }
+
+    /**
+     * Page de patients et curseur de la page suivante (null sur la dernière page)
+     */
+    public record PatientPage(List<OrthancPatientDetailDTO> patients, String nextCursor) {
+    }
+
+    // Tri null: ordre natif d'Orthanc (par nom dans l'index local)
+    private record Position(String source, SortKey sortKey, boolean descending, int offset,
+                            String afterKey, String afterId) {
+    }
+
+    private final OrthancIndexService indexService;
+    private final DynamicOrthancService dynamicOrthancService;
+    private final OrthancMapperService mapper;
+    private final int defaultSize;
+    private final int maxSize;
+
+    public OrthancPatientPagingService(OrthancIndexService indexService, DynamicOrthancService dynamicOrthancService,
+                                       OrthancMapperService mapper,
+                                       @Value("${orthanc.paging.default-size:50}") int defaultSize,
+                                       @Value("${orthanc.paging.max-size:500}") int maxSize) {
+        this.indexService = indexService;
+        this.dynamicOrthancService = dynamicOrthancService;
+        this.mapper = mapper;
+        this.defaultSize = defaultSize;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Taille de page effective
+     * @param size Taille demandée, ou null pour la taille par défaut
+     */
+    public int pageSize(Integer size) {
+        int pageSize = size != null ? size : defaultSize;
+        if (pageSize < 1 || pageSize > maxSize) {
+            throw new IllegalArgumentException("Taille de page hors limites (1 à " + maxSize + "): " + pageSize);
+        }
+        return pageSize;
+    }
+
+    /**
+     * Page de patients d'un serveur Orthanc
+     * @param orthancUrl URL du serveur Orthanc
+     * @param serveurId ID du ServeurDICOM, ou null pour un serveur non enregistré
+     * @param page Numéro de page (à partir de 0), ignoré si since ou cursor est donné
+     * @param size Taille de page, ou null pour la taille par défaut
+     * @param sort Tri "champ" ou "champ,desc" (patientName, patientId, lastUpdate), ou null pour l'ordre natif
+     * @param since Rang du premier patient (Since Orthanc), ignoré si cursor est donné
+     * @param cursor Curseur renvoyé avec la page précédente
+     * @return Patients de la page et curseur de la page suivante
+     * @throws IllegalArgumentException si les paramètres ou le curseur sont invalides
+     */
+    public Mono<PatientPage> findPatients(String orthancUrl, Integer serveurId, Integer page, Integer size,
+                                          String sort, Integer since, String cursor) {
+        int pageSize = pageSize(size);
+        boolean indexReady = indexService.isReady(serveurId);
+        Position position = cursor != null
+                ? decode(cursor)
+                : initialPosition(indexReady ? INDEX_SOURCE : ORTHANC_SOURCE, sort, page, pageSize, since);
+        if (INDEX_SOURCE.equals(position.source()) && !indexReady) {
+            throw new IllegalArgumentException("Curseur expiré: index local en cours de reconstruction");
+        }
+        return INDEX_SOURCE.equals(position.source())
+                ? fromIndex(serveurId, position, pageSize)
+                : fromOrthanc(orthancUrl, position, pageSize);
+    }
+
+    private Mono<PatientPage> fromIndex(Integer serveurId, Position position, int pageSize) {
+        SortKey sortKey = position.sortKey() != null ? position.sortKey() : SortKey.PATIENT_NAME;
+        return Mono.fromCallable(() -> indexService.findPatientPage(serveurId, sortKey.indexColumn,
+                        position.descending(), position.offset(), position.afterKey(), position.afterId(), pageSize + 1))
+                .subscribeOn(Schedulers.boundedElastic())
+                .map(patients -> {
+                    if (patients.size() <= pageSize) {
+                        return new PatientPage(patients, null);
+                    }
+                    List<OrthancPatientDetailDTO> content = patients.subList(0, pageSize);
+                    OrthancPatientDetailDTO last = content.get(pageSize - 1);
+                    String lastKey = sortKey.value.apply(last);
+                    return new PatientPage(content, encode(new Position(INDEX_SOURCE, position.sortKey(),
+                            position.descending(), 0, lastKey != null ? lastKey : "", last.getId())));
+                });
+    }
+
+    private Mono<PatientPage> fromOrthanc(String orthancUrl, Position position, int pageSize) {
+        SortKey sortKey = position.sortKey();
+        Map<String, String> orderBy = sortKey == null ? null : Map.of(
+                "Type", sortKey.orthancType,
+                "Key", sortKey.orthancKey,
+                "Direction", position.descending() ? "DESC" : "ASC");
+        return dynamicOrthancService.findPatients(orthancUrl, position.offset(), pageSize + 1, orderBy)
+                .map(resources -> {
+                    List<OrthancPatientDetailDTO> patients = resources.stream()
+                            .limit(pageSize)
+                            .map(mapper::mapToPatientSummary)
+                            .toList();
+                    String nextCursor = resources.size() > pageSize
+                            ? encode(new Position(ORTHANC_SOURCE, sortKey, position.descending(),
+                                    position.offset() + pageSize, "", ""))
+                            : null;
+                    return new PatientPage(patients, nextCursor);
+                });
+    }
+
+    private static Position initialPosition(String source, String sort, Integer page, int pageSize, Integer since) {
+        SortKey sortKey = null;
+        boolean descending = false;
+        if (sort != null && !sort.isBlank()) {
+            String[] parts = sort.split(",");
+            sortKey = SortKey.fromParameter(parts[0].trim());
+            descending = parts.length > 1 && "desc".equals(parts[1].trim().toLowerCase(Locale.ROOT));
+        }
+        int offset = since != null ? since : (page != null ? page * pageSize : 0);
+        if (offset < 0) {
+            throw new IllegalArgumentException("Position de page négative: " + offset);
+        }
+        return new Position(source, sortKey, descending, offset, null, null);
+    }
+
+    private static String encode(Position position) {
+        return PageCursorUtil.encode(position.source(),
+                position.sortKey() != null ? position.sortKey().parameter : "",
+                position.descending() ? "desc" : "asc",
+                String.valueOf(position.offset()),
+                position.afterKey() != null ? position.afterKey() : "",
+                position.afterId() != null ? position.afterId() : "");
+    }
+
+    private static Position decode(String cursor) {
+        String[] parts = PageCursorUtil.decode(cursor, CURSOR_PARTS);
+        if (!INDEX_SOURCE.equals(parts[0]) && !ORTHANC_SOURCE.equals(parts[0])) {
+            throw new IllegalArgumentException("Curseur de pagination invalide");
+        }
+        try {
+            return new Position(parts[0],
+                    parts[1].isEmpty() ? null : SortKey.fromParameter(parts[1]),
+                    "desc".equals(parts[2]),
+                    Integer.parseInt(parts[3]),
+                    parts[4],
+                    parts[5].isEmpty() ? null : parts[5]);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Curseur de pagination invalide");
+        }
+    }
+}
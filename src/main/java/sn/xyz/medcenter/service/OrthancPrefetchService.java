@@ -0,0 +1,183 @@
+package sn.xyz.medcenter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import sn.xyz.medcenter.dto.OrthancPatientDetailResponseDTO;
+import sn.xyz.medcenter.repository.ConsultationRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Préchargement des données DICOM des patients attendus en consultation : avant les heures d'affluence,
+ * les consultations des prochaines heures sont lues en base et, pour chaque patient, l'arborescence Orthanc
+ * (cache des ressources) et les vignettes des séries (cache disque) sont chargées sur le serveur de l'hôpital
+ * du professionnel. Le patient est retrouvé par son numéro de sécurité sociale (tag DICOM PatientID).
+ */
+@Service
+@Slf4j
+public class OrthancPrefetchService {
+
+    private final ConsultationRepository consultationRepository;
+    private final OrthancRoutingService routingService;
+    private final OrthancIndexService indexService;
+    private final DynamicOrthancService dynamicOrthancService;
+    private final OrthancThumbnailService thumbnailService;
+    private final boolean enabled;
+    private final Duration lookahead;
+    private final int concurrency;
+    private final Duration maxDuration;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile Map<String, Object> lastRun = Map.of();
+
+    public OrthancPrefetchService(ConsultationRepository consultationRepository, OrthancRoutingService routingService,
+                                  OrthancIndexService indexService, DynamicOrthancService dynamicOrthancService,
+                                  OrthancThumbnailService thumbnailService,
+                                  @Value("${orthanc.prefetch.enabled:true}") boolean enabled,
+                                  @Value("${orthanc.prefetch.lookahead:6h}") Duration lookahead,
+                                  @Value("${orthanc.prefetch.concurrency:4}") int concurrency,
+                                  @Value("${orthanc.prefetch.max-duration:1h}") Duration maxDuration) {
+        this.consultationRepository = consultationRepository;
+        this.routingService = routingService;
+        this.indexService = indexService;
+        this.dynamicOrthancService = dynamicOrthancService;
+        this.thumbnailService = thumbnailService;
+        this.enabled = enabled;
+        this.lookahead = lookahead;
+        this.concurrency = concurrency;
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Lance le préchargement sans bloquer le thread des tâches planifiées ; un préchargement encore en cours
+     * n'est pas relancé
+     */
+    @Scheduled(cron = "${orthanc.prefetch.cron:0 30 6,12 * * *}")
+    public void prefetchScheduledPatients() {
+        if (!enabled) {
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            log.warn("Préchargement Orthanc précédent toujours en cours, passage ignoré");
+            return;
+        }
+        LocalDateTime start = LocalDateTime.now();
+        prefetch(start, start.plus(lookahead))
+                .doFinally(signal -> running.set(false))
+                .subscribe(result -> { },
+                        e -> log.warn("Préchargement Orthanc interrompu: {}", e.getMessage()));
+    }
+
+    /**
+     * Précharge les patients des consultations prévues dans un intervalle. Au-delà de orthanc.prefetch.max-duration,
+     * les préchargements en cours sont annulés et le bilan partiel est enregistré (completed = false).
+     * @param start Début de l'intervalle
+     * @param end Fin de l'intervalle
+     * @return Bilan du préchargement
+     */
+    public Mono<Map<String, Object>> prefetch(LocalDateTime start, LocalDateTime end) {
+        return Mono.defer(() -> {
+            long startedAt = System.currentTimeMillis();
+            AtomicInteger scheduledCount = new AtomicInteger();
+            AtomicInteger patients = new AtomicInteger();
+            AtomicInteger series = new AtomicInteger();
+            AtomicInteger thumbnails = new AtomicInteger();
+            AtomicInteger failures = new AtomicInteger();
+            AtomicBoolean timedOut = new AtomicBoolean();
+            return Mono.fromCallable(() -> consultationRepository.findScheduledPatients(start, end))
+                    .doOnNext(scheduled -> {
+                        scheduledCount.set(scheduled.size());
+                        log.info("Préchargement Orthanc de {} patients attendus entre {} et {}", scheduled.size(), start, end);
+                    })
+                    .flatMapMany(Flux::fromIterable)
+                    // Routage et index lus en base : hors des threads réseau
+                    .flatMap(patient -> Mono.defer(() -> prefetchPatient(patient, patients, series, thumbnails))
+                            .subscribeOn(Schedulers.boundedElastic())
+                            .onErrorResume(e -> {
+                                failures.incrementAndGet();
+                                log.debug("Préchargement du patient {} impossible: {}", patient.getNumeroSecu(), e.getMessage());
+                                return Mono.empty();
+                            }), concurrency)
+                    .then()
+                    .timeout(maxDuration)
+                    .onErrorResume(TimeoutException.class, e -> {
+                        timedOut.set(true);
+                        log.warn("Préchargement Orthanc arrêté après {}", maxDuration);
+                        return Mono.empty();
+                    })
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .then(Mono.fromCallable(() -> {
+                        Map<String, Object> result = new HashMap<>();
+                        result.put("startedAt", start.toString());
+                        result.put("scheduledPatients", scheduledCount.get());
+                        result.put("orthancPatients", patients.get());
+                        result.put("series", series.get());
+                        result.put("renderedThumbnails", thumbnails.get());
+                        result.put("failures", failures.get());
+                        result.put("completed", !timedOut.get());
+                        result.put("durationMs", System.currentTimeMillis() - startedAt);
+                        lastRun = result;
+                        log.info("Préchargement Orthanc terminé: {}", result);
+                        return result;
+                    }));
+        });
+    }
+
+    /**
+     * Bilan du dernier préchargement
+     */
+    public Map<String, Object> getLastRun() {
+        return lastRun;
+    }
+
+    private Mono<Void> prefetchPatient(ConsultationRepository.ScheduledPatient patient, AtomicInteger patients,
+                                       AtomicInteger series, AtomicInteger thumbnails) {
+        Optional<OrthancRoutingService.ServerRoute> route = routingService.routeForHopital(patient.getHopitalId());
+        if (route.isEmpty() || patient.getNumeroSecu() == null) {
+            return Mono.empty();
+        }
+        String orthancUrl = route.get().baseUrl();
+        Integer serveurId = route.get().serveurId();
+        return findOrthancPatientIds(serveurId, orthancUrl, patient.getNumeroSecu())
+                .flatMapMany(Flux::fromIterable)
+                .concatMap(orthancId -> dynamicOrthancService.loadPatientHierarchy(orthancUrl, orthancId))
+                .doOnNext(detail -> patients.incrementAndGet())
+                .flatMapIterable(OrthancPrefetchService::seriesIds)
+                .doOnNext(seriesId -> series.incrementAndGet())
+                .filter(seriesId -> thumbnailService.cachedEtag(serveurId, seriesId) == null)
+                .concatMap(seriesId -> thumbnailService.getThumbnail(serveurId, orthancUrl, seriesId)
+                        .doOnNext(thumbnail -> thumbnails.incrementAndGet()))
+                .then();
+    }
+
+    private Mono<List<String>> findOrthancPatientIds(Integer serveurId, String orthancUrl, String patientDicomId) {
+        if (indexService.isReady(serveurId)) {
+            return Mono.just(indexService.findPatientIds(serveurId, patientDicomId));
+        }
+        return dynamicOrthancService.findPatientIds(orthancUrl, patientDicomId);
+    }
+
+    private static List<String> seriesIds(OrthancPatientDetailResponseDTO detail) {
+        if (detail.getStudies() == null) {
+            return List.of();
+        }
+        return detail.getStudies().stream()
+                .filter(study -> study.getSeries() != null)
+                .flatMap(study -> study.getSeries().stream())
+                .map(OrthancPatientDetailResponseDTO.SeriesDetailDTO::getId)
+                .toList();
+    }
+}
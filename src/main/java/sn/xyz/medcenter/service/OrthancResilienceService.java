@@ -0,0 +1,356 @@
+package sn.xyz.medcenter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+import sn.xyz.medcenter.configuration.OrthancResilienceProperties;
+import sn.xyz.medcenter.dto.OrthancServerStateDTO;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Couche de résilience autour des appels Orthanc, par serveur :
+ * <ul>
+ *     <li>disjoncteur : au-delà d'un taux d'échec (5xx, timeouts, erreurs réseau) sur les derniers appels,
+ *     le serveur n'est plus sollicité pendant orthanc.resilience.circuit-breaker.open-duration, puis
+ *     quelques appels d'essai décident de sa réouverture ;</li>
+ *     <li>cloisonnement : jetons de concurrence et file d'attente bornée de {@link OrthancFanOutService#limited} ;</li>
+ *     <li>lectures ({@link #get}) : timeout, nouvelles tentatives avec backoff exponentiel et, si activé,
+ *     seconde requête identique envoyée lorsque la première dépasse le p95 de latence du serveur.</li>
+ * </ul>
+ */
+@Service
+@Slf4j
+public class OrthancResilienceService {
+
+    private static final int LATENCY_SAMPLES = 128;
+
+    private final OrthancFanOutService fanOutService;
+    private final OrthancResilienceProperties properties;
+    private final Map<String, ServerState> states = new ConcurrentHashMap<>();
+
+    public OrthancResilienceService(OrthancFanOutService fanOutService, OrthancResilienceProperties properties) {
+        this.fanOutService = fanOutService;
+        this.properties = properties;
+    }
+
+    /**
+     * Lecture idempotente : disjoncteur, cloisonnement, timeout, nouvelles tentatives et requête doublée
+     * @param orthancUrl URL du serveur Orthanc ciblé
+     * @param request Requête WebClient (rejouée à chaque tentative)
+     * @return Résultat de la requête
+     */
+    public <T> Mono<T> get(String orthancUrl, Mono<T> request) {
+        ServerState state = stateFor(orthancUrl);
+        OrthancResilienceProperties.Retry retry = properties.getRetry();
+        Mono<T> attempts = attempt(orthancUrl, state, request.timeout(properties.getCallTimeout()))
+                .retryWhen(Retry.backoff(retry.getMaxAttempts(), retry.getInitialBackoff())
+                        .maxBackoff(retry.getMaxBackoff())
+                        .filter(OrthancResilienceService::isServerFailure)
+                        .doBeforeRetry(signal -> {
+                            state.retried.increment();
+                            log.debug("Nouvelle tentative {} vers {}: {}", signal.totalRetries() + 1, orthancUrl,
+                                    signal.failure().getMessage());
+                        })
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()));
+
+        Duration hedgeDelay = hedgeDelay(state);
+        if (hedgeDelay == null) {
+            return attempts;
+        }
+        // La première réponse (ou erreur) l'emporte, l'autre requête est annulée
+        Mono<T> hedged = Mono.delay(hedgeDelay)
+                .then(Mono.defer(() -> {
+                    state.hedged.increment();
+                    return attempts;
+                }));
+        return Mono.firstWithSignal(attempts, hedged);
+    }
+
+    /**
+     * Appel non idempotent ou de durée variable (envoi, flux binaire) : disjoncteur et cloisonnement
+     * seulement, sans timeout ni nouvelle tentative
+     * @param orthancUrl URL du serveur Orthanc ciblé
+     * @param request Requête WebClient
+     * @return Résultat de la requête
+     */
+    public <T> Mono<T> call(String orthancUrl, Mono<T> request) {
+        return attempt(orthancUrl, stateFor(orthancUrl), request);
+    }
+
+    /**
+     * État de résilience de chaque serveur sollicité, serveurs en échec en premier
+     */
+    public List<OrthancServerStateDTO> getStates() {
+        List<OrthancServerStateDTO> result = new ArrayList<>();
+        states.forEach((orthancUrl, state) -> {
+            Duration p95 = state.latencies.percentile(0.95);
+            CircuitBreaker.Snapshot breaker = state.breaker.snapshot();
+            result.add(OrthancServerStateDTO.builder()
+                    .orthancUrl(orthancUrl)
+                    .circuitState(breaker.state().name())
+                    .failureRate(breaker.failureRate())
+                    .bufferedCalls(breaker.bufferedCalls())
+                    .inFlight(fanOutService.inFlight(orthancUrl))
+                    .waiting(fanOutService.waiting(orthancUrl))
+                    .p95LatencyMs(p95 != null ? p95.toMillis() : null)
+                    .rejectedCalls(state.rejected.sum())
+                    .retriedCalls(state.retried.sum())
+                    .hedgedCalls(state.hedged.sum())
+                    .build());
+        });
+        result.sort(Comparator.comparingDouble(OrthancServerStateDTO::getFailureRate).reversed());
+        return result;
+    }
+
+    private <T> Mono<T> attempt(String orthancUrl, ServerState state, Mono<T> request) {
+        return Mono.defer(() -> {
+            CircuitBreaker.Permission permission = state.breaker.tryAcquire(System.nanoTime());
+            if (permission == null) {
+                state.rejected.increment();
+                return Mono.error(new OrthancUnavailableException(orthancUrl, "disjoncteur ouvert"));
+            }
+            AtomicBoolean settled = new AtomicBoolean();
+            return fanOutService.limited(orthancUrl, Mono.defer(() -> {
+                        long startedAt = System.nanoTime();
+                        return request
+                                .doOnSuccess(value -> {
+                                    if (settled.compareAndSet(false, true)) {
+                                        state.latencies.record(System.nanoTime() - startedAt);
+                                        state.breaker.onResult(permission, false, System.nanoTime());
+                                    }
+                                })
+                                .doOnError(e -> {
+                                    if (settled.compareAndSet(false, true)) {
+                                        state.breaker.onResult(permission, isServerFailure(e), System.nanoTime());
+                                    }
+                                });
+                    }))
+                    .doOnError(OrthancUnavailableException.class, e -> {
+                        // File d'attente pleine: l'appel n'a pas atteint le serveur
+                        if (settled.compareAndSet(false, true)) {
+                            state.rejected.increment();
+                            state.breaker.onCancel(permission);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (settled.compareAndSet(false, true)) {
+                            state.breaker.onCancel(permission);
+                        }
+                    });
+        });
+    }
+
+    private Duration hedgeDelay(ServerState state) {
+        OrthancResilienceProperties.Hedging hedging = properties.getHedging();
+        if (!hedging.isEnabled() || state.latencies.size() < hedging.getMinimumSamples()) {
+            return null;
+        }
+        Duration delay = state.latencies.percentile(hedging.getPercentile());
+        return delay == null || delay.compareTo(hedging.getMinDelay()) < 0 ? hedging.getMinDelay() : delay;
+    }
+
+    private ServerState stateFor(String orthancUrl) {
+        return states.computeIfAbsent(orthancUrl, url -> new ServerState(url, properties.getCircuitBreaker()));
+    }
+
+    /**
+     * Échec imputable au serveur (réessayable, compté par le disjoncteur) ; une réponse 4xx prouve au
+     * contraire que le serveur répond
+     */
+    private static boolean isServerFailure(Throwable e) {
+        if (e instanceof OrthancUnavailableException) {
+            return false;
+        }
+        if (e instanceof WebClientResponseException response) {
+            return response.getStatusCode().is5xxServerError();
+        }
+        return e instanceof TimeoutException || e instanceof WebClientRequestException || e instanceof IOException;
+    }
+
+    private static final class ServerState {
+
+        private final CircuitBreaker breaker;
+        private final LatencyWindow latencies = new LatencyWindow(LATENCY_SAMPLES);
+        private final LongAdder rejected = new LongAdder();
+        private final LongAdder retried = new LongAdder();
+        private final LongAdder hedged = new LongAdder();
+
+        private ServerState(String orthancUrl, OrthancResilienceProperties.CircuitBreaker settings) {
+            this.breaker = new CircuitBreaker(orthancUrl, settings);
+        }
+    }
+
+    /**
+     * Disjoncteur à fenêtre glissante sur les derniers appels
+     */
+    static final class CircuitBreaker {
+
+        enum State { CLOSED, OPEN, HALF_OPEN }
+
+        record Permission(boolean trial) {
+        }
+
+        record Snapshot(State state, double failureRate, int bufferedCalls) {
+        }
+
+        private static final Permission REGULAR = new Permission(false);
+        private static final Permission TRIAL = new Permission(true);
+
+        private final String orthancUrl;
+        private final boolean[] failures;
+        private final int minimumCalls;
+        private final double failureRateThreshold;
+        private final long openNanos;
+        private final int halfOpenCalls;
+
+        private State state = State.CLOSED;
+        private int next;
+        private int buffered;
+        private int failed;
+        private long openedAt;
+        private int trialsInFlight;
+        private int trialSuccesses;
+
+        CircuitBreaker(String orthancUrl, OrthancResilienceProperties.CircuitBreaker settings) {
+            this.orthancUrl = orthancUrl;
+            this.failures = new boolean[Math.max(1, settings.getWindowSize())];
+            this.minimumCalls = Math.max(1, settings.getMinimumCalls());
+            this.failureRateThreshold = settings.getFailureRateThreshold();
+            this.openNanos = settings.getOpenDuration().toNanos();
+            this.halfOpenCalls = Math.max(1, settings.getHalfOpenCalls());
+        }
+
+        /**
+         * @return Autorisation d'appel, ou null si le serveur ne doit pas être sollicité
+         */
+        synchronized Permission tryAcquire(long now) {
+            if (state == State.OPEN) {
+                if (now - openedAt < openNanos) {
+                    return null;
+                }
+                state = State.HALF_OPEN;
+                trialsInFlight = 0;
+                trialSuccesses = 0;
+                log.info("Disjoncteur Orthanc {} semi-ouvert: appels d'essai", orthancUrl);
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialsInFlight >= halfOpenCalls) {
+                    return null;
+                }
+                trialsInFlight++;
+                return TRIAL;
+            }
+            return REGULAR;
+        }
+
+        synchronized void onResult(Permission permission, boolean failure, long now) {
+            if (permission.trial()) {
+                if (state != State.HALF_OPEN) {
+                    return;
+                }
+                trialsInFlight--;
+                if (failure) {
+                    open(now);
+                } else if (++trialSuccesses >= halfOpenCalls) {
+                    close();
+                }
+                return;
+            }
+            if (state != State.CLOSED) {
+                // Réponse tardive d'un appel lancé avant l'ouverture
+                return;
+            }
+            if (buffered == failures.length) {
+                if (failures[next]) {
+                    failed--;
+                }
+            } else {
+                buffered++;
+            }
+            failures[next] = failure;
+            if (failure) {
+                failed++;
+            }
+            next = (next + 1) % failures.length;
+            if (buffered >= minimumCalls && (double) failed / buffered >= failureRateThreshold) {
+                open(now);
+            }
+        }
+
+        synchronized void onCancel(Permission permission) {
+            if (permission.trial() && state == State.HALF_OPEN && trialsInFlight > 0) {
+                trialsInFlight--;
+            }
+        }
+
+        synchronized Snapshot snapshot() {
+            return new Snapshot(state, buffered > 0 ? (double) failed / buffered : 0, buffered);
+        }
+
+        private void open(long now) {
+            log.warn("Disjoncteur Orthanc {} ouvert ({} échecs sur {} appels)", orthancUrl, failed, buffered);
+            state = State.OPEN;
+            openedAt = now;
+        }
+
+        private void close() {
+            log.info("Disjoncteur Orthanc {} refermé", orthancUrl);
+            state = State.CLOSED;
+            Arrays.fill(failures, false);
+            next = 0;
+            buffered = 0;
+            failed = 0;
+        }
+    }
+
+    /**
+     * Dernières latences d'un serveur, pour le calcul des percentiles
+     */
+    static final class LatencyWindow {
+
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        Duration percentile(double percentile) {
+            long[] sorted;
+            synchronized (this) {
+                if (size == 0) {
+                    return null;
+                }
+                sorted = Arrays.copyOf(samples, size);
+            }
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * sorted.length) - 1;
+            return Duration.ofNanos(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package sn.xyz.medcenter.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import sn.xyz.medcenter.dto.OrthancResource;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cache mémoire des réponses Orthanc (patients, études, séries), indexé par serveur et ID Orthanc.
+ * Les ressources stables (IsStable) sont conservées longtemps, les autres peu de temps ; le flux
+ * /changes invalide les entrées modifiées ainsi que leurs parents (voir {@link #onChange}).
+ */
+@Service
+@Slf4j
+@Order(0)
+public class OrthancResourceCache implements OrthancChangeListener {
+
+    public enum Level {
+        PATIENT, STUDY, SERIES;
+
+        static Level fromResourceType(Object resourceType) {
+            if ("Patient".equals(resourceType)) {
+                return PATIENT;
+            }
+            if ("Study".equals(resourceType)) {
+                return STUDY;
+            }
+            if ("Series".equals(resourceType)) {
+                return SERIES;
+            }
+            return null;
+        }
+    }
+
+    private final Cache<String, OrthancResource> cache;
+    private final Set<String> cachedServers = ConcurrentHashMap.newKeySet();
+
+    public OrthancResourceCache(@Value("${orthanc.cache.max-size:20000}") long maxSize,
+                                @Value("${orthanc.cache.stable-ttl:6h}") Duration stableTtl,
+                                @Value("${orthanc.cache.unstable-ttl:15s}") Duration unstableTtl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new StabilityExpiry(stableTtl.toNanos(), unstableTtl.toNanos()))
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Réponse Orthanc en cache
+     * @return Réponse, ou null si absente ou expirée
+     */
+    public OrthancResource get(String orthancUrl, Level level, String id) {
+        return id != null ? cache.getIfPresent(key(orthancUrl, level, id)) : null;
+    }
+
+    /**
+     * Réponse Orthanc en cache, du type attendu pour le niveau
+     * @return Réponse, ou null si absente ou expirée
+     */
+    public <T extends OrthancResource> T get(String orthancUrl, Level level, String id, Class<T> type) {
+        OrthancResource resource = get(orthancUrl, level, id);
+        return type.isInstance(resource) ? type.cast(resource) : null;
+    }
+
+    /**
+     * Met en cache une réponse Orthanc. Une réponse plus ancienne (LastUpdate) que celle déjà
+     * en cache ne la remplace pas.
+     */
+    public void put(String orthancUrl, Level level, OrthancResource resource) {
+        if (resource == null || resource.id() == null) {
+            return;
+        }
+        cachedServers.add(orthancUrl);
+        cache.asMap().merge(key(orthancUrl, level, resource.id()), resource,
+                (current, fresh) -> isOlder(fresh, current) ? current : fresh);
+    }
+
+    /**
+     * Retire une ressource et ses parents connus (leur liste d'enfants ou leur stabilité a changé)
+     */
+    public void invalidate(String orthancUrl, Level level, String id) {
+        Level currentLevel = level;
+        String currentId = id;
+        while (currentLevel != null && currentId != null) {
+            OrthancResource removed = cache.asMap().remove(key(orthancUrl, currentLevel, currentId));
+            currentId = removed != null ? removed.parentId() : null;
+            if (currentLevel == Level.SERIES) {
+                currentLevel = Level.STUDY;
+            } else if (currentLevel == Level.STUDY) {
+                currentLevel = Level.PATIENT;
+            } else {
+                currentLevel = null;
+            }
+        }
+    }
+
+    /**
+     * Vide le cache d'un serveur Orthanc (ex. flux /changes interrompu ou réinitialisé)
+     */
+    public void invalidateServer(String orthancUrl) {
+        log.info("Invalidation du cache Orthanc pour {}", orthancUrl);
+        String prefix = orthancUrl + "|";
+        cache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Serveurs pour lesquels des ressources ont été mises en cache
+     */
+    public Set<String> getCachedServers() {
+        return Set.copyOf(cachedServers);
+    }
+
+    /**
+     * Statistiques du cache (taille, taux de succès, évictions)
+     */
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new HashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hitCount", stats.hitCount());
+        result.put("missCount", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictionCount", stats.evictionCount());
+        return result;
+    }
+
+    /**
+     * Invalide la ressource modifiée et ses parents en cache. Une nouvelle ressource n'est pas encore
+     * en cache : la liste d'enfants de son parent est rafraîchie à l'événement Stable* qu'Orthanc émet
+     * pour chaque niveau parent une fois l'arrivée des instances terminée.
+     */
+    @Override
+    public void onChange(String orthancUrl, Map<String, Object> change) {
+        Level level = Level.fromResourceType(change.get("ResourceType"));
+        if (level != null) {
+            invalidate(orthancUrl, level, (String) change.get("ID"));
+        }
+    }
+
+    private static boolean isOlder(OrthancResource candidate, OrthancResource reference) {
+        String candidateUpdate = candidate.lastUpdate();
+        String referenceUpdate = reference.lastUpdate();
+        // Format Orthanc "AAAAMMJJTHHMMSS" : l'ordre lexicographique est l'ordre chronologique
+        return candidateUpdate != null && referenceUpdate != null
+                && candidateUpdate.compareTo(referenceUpdate) < 0;
+    }
+
+    private static String key(String orthancUrl, Level level, String id) {
+        return orthancUrl + "|" + level + "|" + id;
+    }
+
+    private static final class StabilityExpiry implements Expiry<String, OrthancResource> {
+
+        private final long stableTtlNanos;
+        private final long unstableTtlNanos;
+
+        private StabilityExpiry(long stableTtlNanos, long unstableTtlNanos) {
+            this.stableTtlNanos = stableTtlNanos;
+            this.unstableTtlNanos = unstableTtlNanos;
+        }
+
+        @Override
+        public long expireAfterCreate(String key, OrthancResource value, long currentTime) {
+            return value.stable() ? stableTtlNanos : unstableTtlNanos;
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, OrthancResource value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, OrthancResource value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package sn.xyz.medcenter.service;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Invalide la table de routage Orthanc lorsqu'un ServeurDICOM, un Hopital ou un ProfessionnelSante est modifié,
+ * une fois la transaction terminée pour que la table soit reconstruite à partir des données validées
+ */
+@Component
+public class OrthancRoutingEntityListener {
+
+    private final ObjectProvider<OrthancRoutingService> routingService;
+
+    public OrthancRoutingEntityListener(ObjectProvider<OrthancRoutingService> routingService) {
+        this.routingService = routingService;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(Object entity) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    routingService.getObject().invalidate();
+                }
+            });
+        } else {
+            routingService.getObject().invalidate();
+        }
+    }
+}
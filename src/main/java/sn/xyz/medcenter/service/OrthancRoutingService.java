@@ -0,0 +1,185 @@
+package sn.xyz.medcenter.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import sn.xyz.medcenter.model.ServeurDICOM;
+import sn.xyz.medcenter.repository.ProfessionnelSanteRepository;
+import sn.xyz.medcenter.repository.ServeurDICOMRepository;
+import sn.xyz.medcenter.util.OrthancUrlUtil;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Table de routage en mémoire professionnel -> hôpital -> serveurs Orthanc (nom de l'hôpital, URL de base
+ * résolue et identifiants), construite en deux requêtes puis reconstruite après chaque modification d'un
+ * ServeurDICOM, d'un Hopital ou d'un ProfessionnelSante (voir {@link OrthancRoutingEntityListener}).
+ * Pour un hôpital disposant de plusieurs serveurs, orthanc.routing.selection choisit le serveur :
+ * "first" (premier serveur, par défaut), "round-robin" ou "least-loaded" (moins de requêtes en cours) ;
+ * les deux dernières stratégies supposent que les serveurs d'un hôpital sont des répliques.
+ */
+@Service
+@Slf4j
+public class OrthancRoutingService {
+
+    public enum Selection { FIRST, ROUND_ROBIN, LEAST_LOADED }
+
+    /**
+     * Serveur Orthanc d'un hôpital
+     */
+    public record ServerRoute(Integer serveurId, Integer hopitalId, String hopitalNom, String baseUrl, String username,
+                              String password) {
+
+        @Override
+        public String toString() {
+            return "ServerRoute[serveurId=" + serveurId + ", hopitalId=" + hopitalId + ", baseUrl=" + baseUrl + "]";
+        }
+    }
+
+    private record RoutingTable(Map<Integer, List<ServerRoute>> routesByHopital,
+                                Map<Integer, Integer> hopitalByProfessionnel) {
+    }
+
+    private final ServeurDICOMRepository serveurDICOMRepository;
+    private final ProfessionnelSanteRepository professionnelSanteRepository;
+    private final OrthancClientRegistry clientRegistry;
+    private final OrthancFanOutService fanOutService;
+    private final Selection selection;
+
+    private final Map<Integer, AtomicInteger> roundRobinByHopital = new ConcurrentHashMap<>();
+    private final AtomicReference<RoutingTable> table = new AtomicReference<>();
+    // Incrémenté à chaque invalidation : une table chargée pendant une invalidation n'est pas conservée
+    private final AtomicLong generation = new AtomicLong();
+
+    public OrthancRoutingService(ServeurDICOMRepository serveurDICOMRepository,
+                                 ProfessionnelSanteRepository professionnelSanteRepository,
+                                 OrthancClientRegistry clientRegistry, OrthancFanOutService fanOutService,
+                                 @Value("${orthanc.routing.selection:first}") String selection) {
+        this.serveurDICOMRepository = serveurDICOMRepository;
+        this.professionnelSanteRepository = professionnelSanteRepository;
+        this.clientRegistry = clientRegistry;
+        this.fanOutService = fanOutService;
+        this.selection = Selection.valueOf(selection.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+
+    /**
+     * Serveur Orthanc à utiliser pour un hôpital
+     * @param hopitalId ID de l'hôpital
+     * @return Serveur choisi, ou vide si l'hôpital n'a pas de serveur DICOM
+     */
+    public Optional<ServerRoute> routeForHopital(Integer hopitalId) {
+        List<ServerRoute> routes = routesForHopital(hopitalId);
+        if (routes.isEmpty()) {
+            return Optional.empty();
+        }
+        if (routes.size() == 1 || selection == Selection.FIRST) {
+            return Optional.of(routes.get(0));
+        }
+        if (selection == Selection.ROUND_ROBIN) {
+            int next = roundRobinByHopital.computeIfAbsent(hopitalId, id -> new AtomicInteger()).getAndIncrement();
+            return Optional.of(routes.get(Math.floorMod(next, routes.size())));
+        }
+        return routes.stream().min(Comparator.comparingInt(route -> fanOutService.inFlight(route.baseUrl())));
+    }
+
+    /**
+     * Serveur Orthanc à utiliser pour l'hôpital d'un professionnel de santé
+     * @param professionnelId ID du professionnel de santé
+     * @return Serveur choisi, ou vide si le professionnel n'est rattaché à aucun hôpital équipé
+     */
+    public Optional<ServerRoute> routeForProfessionnel(Integer professionnelId) {
+        Integer hopitalId = table().hopitalByProfessionnel().get(professionnelId);
+        return hopitalId != null ? routeForHopital(hopitalId) : Optional.empty();
+    }
+
+    /**
+     * Serveur Orthanc enregistré sous un ID donné
+     * @param serveurId ID du ServeurDICOM
+     * @return Serveur, ou vide s'il n'existe pas
+     */
+    public Optional<ServerRoute> routeForServeur(Integer serveurId) {
+        return table().routesByHopital().values().stream()
+                .flatMap(List::stream)
+                .filter(route -> route.serveurId().equals(serveurId))
+                .findFirst();
+    }
+
+    /**
+     * Tous les serveurs Orthanc d'un hôpital, par ID croissant
+     */
+    public List<ServerRoute> routesForHopital(Integer hopitalId) {
+        return table().routesByHopital().getOrDefault(hopitalId, List.of());
+    }
+
+    /**
+     * Tous les serveurs Orthanc enregistrés, un seul par URL, par ID croissant
+     */
+    public List<ServerRoute> allRoutes() {
+        Map<String, ServerRoute> byUrl = new LinkedHashMap<>();
+        table().routesByHopital().values().stream()
+                .flatMap(List::stream)
+                .sorted(Comparator.comparing(ServerRoute::serveurId))
+                .forEach(route -> byUrl.putIfAbsent(route.baseUrl(), route));
+        return List.copyOf(byUrl.values());
+    }
+
+    /**
+     * Oublie la table de routage, reconstruite au prochain appel
+     */
+    public void invalidate() {
+        log.info("Table de routage Orthanc invalidée");
+        generation.incrementAndGet();
+        table.set(null);
+        clientRegistry.refresh();
+    }
+
+    private RoutingTable table() {
+        RoutingTable current = table.get();
+        if (current == null) {
+            synchronized (this) {
+                current = table.get();
+                if (current == null) {
+                    long loadedGeneration = generation.get();
+                    current = load();
+                    table.set(current);
+                    // Invalidée pendant le chargement : la table lue peut précéder la modification, elle n'est
+                    // utilisée que pour cet appel et sera rechargée au suivant
+                    if (generation.get() != loadedGeneration) {
+                        table.compareAndSet(current, null);
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    private RoutingTable load() {
+        Map<Integer, List<ServerRoute>> routesByHopital = new HashMap<>();
+        for (ServeurDICOM serveur : serveurDICOMRepository.findAllWithHopital()) {
+            Integer hopitalId = serveur.getHopital().getId();
+            routesByHopital.computeIfAbsent(hopitalId, id -> new ArrayList<>())
+                    .add(new ServerRoute(serveur.getId(), hopitalId, serveur.getHopital().getNom(),
+                            OrthancUrlUtil.buildBaseUrl(serveur), serveur.getUsername(), serveur.getPassword()));
+        }
+        routesByHopital.replaceAll((hopitalId, routes) -> List.copyOf(routes));
+
+        Map<Integer, Integer> hopitalByProfessionnel = new HashMap<>();
+        professionnelSanteRepository.findHopitalAssignments().forEach(assignment ->
+                hopitalByProfessionnel.put(assignment.getProfessionnelId(), assignment.getHopitalId()));
+
+        log.info("Table de routage Orthanc construite: {} hôpitaux équipés, {} professionnels rattachés",
+                routesByHopital.size(), hopitalByProfessionnel.size());
+        return new RoutingTable(Map.copyOf(routesByHopital), Map.copyOf(hopitalByProfessionnel));
+    }
+}
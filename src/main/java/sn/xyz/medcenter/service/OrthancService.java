@@ -3,15 +3,27 @@ package sn.xyz.medcenter.service;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.codec.json.Jackson2JsonDecoder;
-import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
+import java.io.InputStream;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import sn.xyz.medcenter.dto.DicomUploadResultDTO;
+import sn.xyz.medcenter.dto.OrthancInstanceResourceDTO;
 import sn.xyz.medcenter.model.Etude;
 import sn.xyz.medcenter.model.Instance;
 import sn.xyz.medcenter.model.PatientOrthanc;
@@ -24,25 +36,30 @@ import java.util.Map;
 @Slf4j
 public class OrthancService {
 
-    private final WebClient webClient;
+    // Taille des blocs lus et transmis lors de l'upload d'une instance
+    private static final int UPLOAD_CHUNK_SIZE = 64 * 1024;
+
+    private final OrthancClientRegistry clientRegistry;
     
     // URL du serveur Orthanc
     @Value("${orthanc.server.url}")
     private String orthancServerUrl;
 
     private final OrthancMapperService mapper;
+    private final OrthancResilienceService resilienceService;
 
-    public OrthancService(OrthancMapperService mapper, WebClient.Builder webClientBuilder) {
+    public OrthancService(OrthancMapperService mapper, OrthancClientRegistry clientRegistry,
+                          OrthancResilienceService resilienceService) {
         this.mapper = mapper;
-        this.webClient = webClientBuilder
-                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
-                .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
-                .codecs(configurer -> {
-                    configurer.defaultCodecs().maxInMemorySize(16 * 1024 * 1024);
-                    configurer.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder());
-                    configurer.defaultCodecs().jackson2JsonEncoder(new Jackson2JsonEncoder());
-                })
-                .build();
+        this.clientRegistry = clientRegistry;
+        this.resilienceService = resilienceService;
+    }
+
+    /**
+     * Client HTTP du serveur Orthanc configuré, avec son pool de connexions dédié
+     */
+    private WebClient webClient() {
+        return clientRegistry.forUrl(orthancServerUrl);
     }
 
     /**
@@ -54,7 +71,7 @@ public class OrthancService {
         String fullUrl = orthancServerUrl + "/patients";
         log.info("URL complète: {}", fullUrl);
         
-        return webClient.get()
+        return resilienceService.get(orthancServerUrl, webClient().get()
                 .uri(fullUrl)
                 .exchangeToMono(response -> {
                     log.info("Status code: {}", response.statusCode());
@@ -65,7 +82,7 @@ public class OrthancService {
                                     log.info("Patients reçus: {}", Arrays.toString(patients));
                                 }
                             });
-                })
+                }))
                 .doOnError(e -> {
                     log.error("Erreur lors de la récupération des patients: {}", e.getMessage());
                     log.error("Stack trace:", e);
@@ -83,10 +100,10 @@ public class OrthancService {
      */
     public Mono<PatientOrthanc> getPatient(String patientId) {
         log.info("Récupération des détails du patient: {}", patientId);
-        return webClient.get()
+        return resilienceService.get(orthancServerUrl, webClient().get()
                 .uri(orthancServerUrl + "/patients/{id}", patientId)
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {}))
                 .map(mapper::mapToPatientOrthanc)
                 .doOnError(e -> log.error("Erreur lors de la récupération du patient {}: {}", patientId, e.getMessage()));
     }
@@ -96,10 +113,10 @@ public class OrthancService {
      */
     public Mono<List<Etude>> getStudies(String patientId) {
         log.info("Récupération des études pour le patient: {}", patientId);
-        return webClient.get()
+        return resilienceService.get(orthancServerUrl, webClient().get()
                 .uri(orthancServerUrl + "/patients/{id}/studies", patientId)
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {}))
                 .map(studies -> studies.stream()
                         .map(mapper::mapToEtude)
                         .toList())
@@ -111,10 +128,10 @@ public class OrthancService {
      */
     public Mono<Etude> getStudy(String studyId) {
         log.info("Récupération des détails de l'étude: {}", studyId);
-        return webClient.get()
+        return resilienceService.get(orthancServerUrl, webClient().get()
                 .uri(orthancServerUrl + "/studies/{id}", studyId)
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {}))
                 .map(mapper::mapToEtude)
                 .doOnError(e -> log.error("Erreur lors de la récupération de l'étude {}: {}", studyId, e.getMessage()));
     }
@@ -124,10 +141,10 @@ public class OrthancService {
      */
     public Mono<List<Serie>> getSeries(String studyId) {
         log.info("Récupération des séries pour l'étude: {}", studyId);
-        return webClient.get()
+        return resilienceService.get(orthancServerUrl, webClient().get()
                 .uri(orthancServerUrl + "/studies/{id}/series", studyId)
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {}))
                 .map(series -> series.stream()
                         .map(mapper::mapToSerie)
                         .toList())
@@ -139,10 +156,10 @@ public class OrthancService {
      */
     public Mono<Map<String, Object>> getStatistics() {
         log.info("Récupération des statistiques du serveur Orthanc");
-        return webClient.get()
+        return resilienceService.get(orthancServerUrl, webClient().get()
                 .uri(orthancServerUrl + "/statistics")
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {}))
                 .doOnError(e -> log.error("Erreur lors de la récupération des statistiques: {}", e.getMessage()));
     }
 
@@ -151,26 +168,134 @@ public class OrthancService {
      */
     public Mono<Map<String, Object>> getSystemInfo() {
         log.info("Récupération des informations système d'Orthanc");
-        return webClient.get()
+        return resilienceService.get(orthancServerUrl, webClient().get()
                 .uri(orthancServerUrl + "/system")
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {}))
                 .doOnError(e -> log.error("Erreur lors de la récupération des informations système: {}", e.getMessage()));
     }
 
     /**
-     * Upload d'une nouvelle instance DICOM
+     * Upload d'une nouvelle instance DICOM lue depuis un flux (requête HTTP, entrée d'archive...)
+     * @param content Contenu du fichier DICOM, lu par blocs au rythme de l'envoi
+     * @param contentLength Taille en octets, ou -1 si inconnue
      */
-    public Mono<Instance> uploadInstance(byte[] dicomData) {
-        log.info("Upload d'une nouvelle instance DICOM");
-        return webClient.post()
-                .uri(orthancServerUrl + "/instances")
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .bodyValue(dicomData)
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
-                .map(mapper::mapToInstance)
-                .doOnError(e -> log.error("Erreur lors de l'upload de l'instance: {}", e.getMessage()));
+    public Mono<DicomUploadResultDTO> uploadInstance(InputStream content, long contentLength) {
+        Flux<DataBuffer> buffers = DataBufferUtils.readInputStream(() -> content,
+                        DefaultDataBufferFactory.sharedInstance, UPLOAD_CHUNK_SIZE)
+                .subscribeOn(Schedulers.boundedElastic());
+        return uploadInstance(buffers, contentLength);
+    }
+
+    /**
+     * Upload d'une nouvelle instance DICOM en flux : les blocs sont transmis à Orthanc au fur et à mesure,
+     * sans que le fichier soit jamais agrégé en mémoire
+     * @param content Contenu du fichier DICOM
+     * @param contentLength Taille en octets, ou -1 si inconnue (envoi en Transfer-Encoding: chunked)
+     */
+    public Mono<DicomUploadResultDTO> uploadInstance(Flux<DataBuffer> content, long contentLength) {
+        return Mono.defer(() -> {
+            log.info("Upload d'une nouvelle instance DICOM ({} octets annoncés)", contentLength);
+            AtomicLong bytes = new AtomicLong();
+            long startedAt = System.nanoTime();
+
+            WebClient.RequestBodySpec request = webClient().post()
+                    .uri(orthancServerUrl + "/instances")
+                    .contentType(MediaType.APPLICATION_OCTET_STREAM);
+            if (contentLength >= 0) {
+                request = request.contentLength(contentLength);
+            }
+            return resilienceService.call(orthancServerUrl, request
+                            .body(BodyInserters.fromDataBuffers(content.doOnNext(buffer -> bytes.addAndGet(buffer.readableByteCount()))))
+                            .retrieve()
+                            .bodyToMono(OrthancInstanceResourceDTO.class))
+                    .map(response -> {
+                        long durationMs = Math.max(1, (System.nanoTime() - startedAt) / 1_000_000);
+                        double throughput = bytes.get() / 1_000_000.0 / (durationMs / 1000.0);
+                        log.info("Instance {} envoyée: {} octets en {} ms ({} Mo/s)", response.id(), bytes.get(),
+                                durationMs, String.format("%.1f", throughput));
+                        return DicomUploadResultDTO.builder()
+                                .status(response.status() != null ? response.status() : "Success")
+                                .instance(mapper.mapToInstance(response))
+                                .bytes(bytes.get())
+                                .durationMs(durationMs)
+                                .throughputMBps(throughput)
+                                .build();
+                    })
+                    .doOnError(e -> log.error("Erreur lors de l'upload de l'instance: {}", e.getMessage()));
+        });
+    }
+
+    /**
+     * Ressource binaire d'une instance (fichier DICOM, aperçu, frame) lue en flux depuis Orthanc.
+     * La plage demandée est transmise à Orthanc ; s'il renvoie le contenu complet, la plage est
+     * extraite au passage (octets sautés puis flux interrompu), sans mise en mémoire.
+     * @param instanceId ID Orthanc de l'instance
+     * @param resourcePath Chemin de la ressource sous /instances/{id} (ex. "/file", "/frames/0/raw")
+     * @param accept Type de contenu attendu
+     * @param range En-tête Range du client, ou null
+     * @return Statut, en-têtes de contenu et flux des octets
+     */
+    public Mono<ResponseEntity<Flux<DataBuffer>>> streamInstanceResource(String instanceId, String resourcePath,
+                                                                         MediaType accept, String range) {
+        log.info("Lecture en flux de {} pour l'instance {}", resourcePath, instanceId);
+        return resilienceService.call(orthancServerUrl, webClient().get()
+                        .uri(orthancServerUrl + "/instances/{id}" + resourcePath, instanceId)
+                        .accept(accept)
+                        .headers(headers -> {
+                            if (range != null) {
+                                headers.set(HttpHeaders.RANGE, range);
+                            }
+                        })
+                        .retrieve()
+                        .toEntityFlux(DataBuffer.class))
+                .map(response -> applyRange(response, range))
+                .doOnError(e -> log.error("Erreur lors de la lecture de {} pour l'instance {}: {}", resourcePath, instanceId, e.getMessage()));
+    }
+
+    private ResponseEntity<Flux<DataBuffer>> applyRange(ResponseEntity<Flux<DataBuffer>> response, String range) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(response.getHeaders().getContentType());
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        long length = response.getHeaders().getContentLength();
+        Flux<DataBuffer> body = response.getBody() != null ? response.getBody() : Flux.empty();
+
+        // Orthanc a traité la plage lui-même, ou aucune plage demandée
+        if (range == null || response.getStatusCode().value() != HttpStatus.OK.value() || length < 0) {
+            if (length >= 0) {
+                headers.setContentLength(length);
+            }
+            String contentRange = response.getHeaders().getFirst(HttpHeaders.CONTENT_RANGE);
+            if (contentRange != null) {
+                headers.set(HttpHeaders.CONTENT_RANGE, contentRange);
+            }
+            return ResponseEntity.status(response.getStatusCode()).headers(headers).body(body);
+        }
+
+        List<HttpRange> ranges;
+        try {
+            ranges = HttpRange.parseRanges(range);
+        } catch (IllegalArgumentException e) {
+            ranges = List.of();
+        }
+        if (ranges.size() != 1) {
+            // Plages multiples ou invalides : le contenu complet est une réponse valide
+            headers.setContentLength(length);
+            return ResponseEntity.ok().headers(headers).body(body);
+        }
+
+        HttpRange httpRange = ranges.get(0);
+        long start = httpRange.getRangeStart(length);
+        if (start >= length) {
+            body.subscribe(DataBufferUtils::release).dispose();
+            headers.set(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE).headers(headers).body(Flux.empty());
+        }
+        long end = httpRange.getRangeEnd(length);
+        headers.setContentLength(end - start + 1);
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        Flux<DataBuffer> slice = DataBufferUtils.takeUntilByteCount(DataBufferUtils.skipUntilByteCount(body, start), end - start + 1);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT).headers(headers).body(slice);
     }
 
     /**
@@ -178,12 +303,12 @@ public class OrthancService {
      */
     public Mono<Map<String, Object>> exportStudy(String studyId, String targetPacs) {
         log.info("Export de l'étude {} vers {}", studyId, targetPacs);
-        return webClient.post()
+        return resilienceService.call(orthancServerUrl, webClient().post()
                 .uri(orthancServerUrl + "/studies/{id}/export", studyId)
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(Map.of("TargetAet", targetPacs))
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {})
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {}))
                 .doOnError(e -> log.error("Erreur lors de l'export de l'étude {}: {}", studyId, e.getMessage()));
     }
 
@@ -192,12 +317,12 @@ public class OrthancService {
      */
     public Mono<List<Etude>> findDicom(Map<String, Object> query) {
         log.info("Recherche DICOM avec critères: {}", query);
-        return webClient.post()
+        return resilienceService.call(orthancServerUrl, webClient().post()
                 .uri(orthancServerUrl + "/tools/find")
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(query)
                 .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {})
+                .bodyToMono(new ParameterizedTypeReference<List<Map<String, Object>>>() {}))
                 .map(studies -> studies.stream()
                         .map(mapper::mapToEtude)
                         .toList())
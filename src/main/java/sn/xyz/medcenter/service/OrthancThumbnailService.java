@@ -0,0 +1,302 @@
+package sn.xyz.medcenter.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Vignettes des séries DICOM : aperçu PNG de la coupe du milieu, rendu une seule fois par Orthanc puis
+ * conservé sur disque. Le répertoire est borné en taille (éviction de la vignette la moins récemment lue) ;
+ * son index en mémoire est reconstruit au démarrage à partir des noms de fichiers, si bien que les
+ * vignettes survivent aux redémarrages. Le flux /changes invalide la vignette d'une série modifiée.
+ */
+@Service
+@Slf4j
+@Order(30)
+public class OrthancThumbnailService implements OrthancChangeListener {
+
+    private static final String EXTENSION = ".png";
+
+    /**
+     * Vignette d'une série et instance dont elle est l'aperçu
+     */
+    public record Thumbnail(String instanceId, byte[] content) {
+
+        /**
+         * ETag fort : l'aperçu d'une instance Orthanc (immuable) ne change jamais
+         */
+        public String etag() {
+            return etagFor(instanceId);
+        }
+    }
+
+    private record Entry(Path file, String instanceId, long size) {
+    }
+
+    /**
+     * Rendu en cours ; invalidated est levé si la série change pendant le rendu
+     */
+    private record Render(Mono<Thumbnail> thumbnail, AtomicBoolean invalidated) {
+    }
+
+    private final DynamicOrthancService dynamicOrthancService;
+    private final OrthancClientRegistry clientRegistry;
+    private final Path directory;
+    private final long maxBytes;
+
+    // "{serveurId}_{seriesId}" -> fichier de la vignette, du moins au plus récemment lu (accès protégé par this)
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    // Rendus en cours, partagés entre les appelants simultanés
+    private final Map<String, Render> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public OrthancThumbnailService(DynamicOrthancService dynamicOrthancService, OrthancClientRegistry clientRegistry,
+                                   @Value("${orthanc.thumbnails.directory:${java.io.tmpdir}/medcenter-thumbnails}") String directory,
+                                   @Value("${orthanc.thumbnails.max-size:512MB}") DataSize maxSize) {
+        this.dynamicOrthancService = dynamicOrthancService;
+        this.clientRegistry = clientRegistry;
+        this.directory = Paths.get(directory);
+        this.maxBytes = maxSize.toBytes();
+    }
+
+    /**
+     * URL de la vignette d'une série, servie par MedicalDataController
+     * @param serveurId ID du ServeurDICOM
+     * @param seriesId ID Orthanc de la série
+     */
+    public static String thumbnailUrl(Integer serveurId, String seriesId) {
+        return "/api/medical/serveurs-dicom/" + serveurId + "/series/" + seriesId + "/thumbnail";
+    }
+
+    static String etagFor(String instanceId) {
+        return "\"" + instanceId + "-preview\"";
+    }
+
+    @PostConstruct
+    public void loadIndex() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(file -> file.getFileName().toString().endsWith(EXTENSION))
+                    .sorted(Comparator.comparing(OrthancThumbnailService::lastAccess))
+                    .toList();
+        }
+        synchronized (this) {
+            for (Path file : files) {
+                // {serveurId}_{seriesId}_{instanceId}.png (les IDs Orthanc ne contiennent pas de "_")
+                String name = file.getFileName().toString();
+                String[] parts = name.substring(0, name.length() - EXTENSION.length()).split("_");
+                if (parts.length != 3) {
+                    continue;
+                }
+                try {
+                    add(parts[0] + "_" + parts[1], new Entry(file, parts[2], Files.size(file)));
+                } catch (IOException e) {
+                    log.debug("Vignette illisible ignorée: {}", file);
+                }
+            }
+            evict();
+        }
+        log.info("Cache des vignettes Orthanc: {} vignettes ({} octets) dans {}", entries.size(), totalBytes, directory);
+    }
+
+    /**
+     * Vignette d'une série, rendue par Orthanc au premier appel puis lue sur disque
+     * @param serveurId ID du ServeurDICOM
+     * @param orthancUrl URL du serveur Orthanc
+     * @param seriesId ID Orthanc de la série
+     * @return Vignette PNG, ou vide si la série n'a pas d'instance
+     */
+    public Mono<Thumbnail> getThumbnail(Integer serveurId, String orthancUrl, String seriesId) {
+        String key = key(serveurId, seriesId);
+        Entry entry = lookup(key);
+        if (entry == null) {
+            misses.increment();
+            return render(key, orthancUrl, seriesId);
+        }
+        hits.increment();
+        return Mono.fromCallable(() -> {
+                    byte[] content = Files.readAllBytes(entry.file());
+                    // Date de modification = dernier accès, pour retrouver l'ordre LRU au redémarrage
+                    Files.setLastModifiedTime(entry.file(), FileTime.fromMillis(System.currentTimeMillis()));
+                    return new Thumbnail(entry.instanceId(), content);
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(IOException.class, e -> {
+                    // Fichier évincé ou supprimé entre-temps
+                    remove(key, entry);
+                    return render(key, orthancUrl, seriesId);
+                });
+    }
+
+    /**
+     * ETag de la vignette en cache d'une série, pour répondre à If-None-Match sans lire le fichier
+     * @return ETag, ou null si la vignette n'est pas en cache
+     */
+    public String cachedEtag(Integer serveurId, String seriesId) {
+        Entry entry = lookup(key(serveurId, seriesId));
+        return entry != null ? etagFor(entry.instanceId()) : null;
+    }
+
+    /**
+     * Nombre de vignettes, place occupée et taux de succès du cache
+     */
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("entries", entries.size());
+        result.put("bytes", totalBytes);
+        result.put("maxBytes", maxBytes);
+        long total = hits.sum() + misses.sum();
+        result.put("hitRate", total > 0 ? (double) hits.sum() / total : 0.0);
+        return result;
+    }
+
+    /**
+     * Une série modifiée (nouvelle instance, stabilisation, suppression) perd sa vignette ; un rendu en cours
+     * pour cette série est servi mais pas conservé, il peut précéder la modification
+     */
+    @Override
+    public void onChange(String orthancUrl, Map<String, Object> change) {
+        if (!"Series".equals(change.get("ResourceType")) || !(change.get("ID") instanceof String seriesId)) {
+            return;
+        }
+        Integer serveurId = clientRegistry.serveurIdFor(orthancUrl);
+        if (serveurId != null) {
+            String key = key(serveurId, seriesId);
+            Render render = inFlight.get(key);
+            if (render != null) {
+                render.invalidated().set(true);
+            }
+            remove(key, null);
+        }
+    }
+
+    private Mono<Thumbnail> render(String key, String orthancUrl, String seriesId) {
+        return Mono.defer(() -> inFlight.computeIfAbsent(key, k -> {
+            AtomicBoolean invalidated = new AtomicBoolean();
+            Mono<Thumbnail> thumbnail = dynamicOrthancService
+                    .getMiddleInstanceId(orthancUrl, seriesId)
+                    .flatMap(instanceId -> dynamicOrthancService.getInstancePreview(orthancUrl, instanceId)
+                            .publishOn(Schedulers.boundedElastic())
+                            .map(content -> store(k, instanceId, content, invalidated)))
+                    .doFinally(signal -> inFlight.remove(k))
+                    .share();
+            return new Render(thumbnail, invalidated);
+        }).thumbnail());
+    }
+
+    private Thumbnail store(String key, String instanceId, byte[] content, AtomicBoolean invalidated) {
+        Path file = directory.resolve(key + "_" + instanceId + EXTENSION);
+        if (invalidated.get()) {
+            return new Thumbnail(instanceId, content);
+        }
+        try {
+            Path temporary = Files.createTempFile(directory, key, ".tmp");
+            Files.write(temporary, content);
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            synchronized (this) {
+                // Série modifiée pendant l'écriture : le fichier n'est pas indexé (s'il remplace celui de la
+                // vignette encore indexée, onChange le supprimera avec elle)
+                if (invalidated.get()) {
+                    Entry current = entries.get(key);
+                    if (current == null || !current.file().equals(file)) {
+                        deleteQuietly(file);
+                    }
+                    return new Thumbnail(instanceId, content);
+                }
+                Entry previous = entries.get(key);
+                if (previous != null && !previous.file().equals(file)) {
+                    removeLocked(key);
+                }
+                add(key, new Entry(file, instanceId, content.length));
+                evict();
+            }
+        } catch (IOException e) {
+            // La vignette est servie même si elle ne peut pas être conservée
+            log.warn("Écriture de la vignette {} impossible: {}", file, e.getMessage());
+        }
+        return new Thumbnail(instanceId, content);
+    }
+
+    private synchronized Entry lookup(String key) {
+        return entries.get(key);
+    }
+
+    private synchronized void remove(String key, Entry expected) {
+        Entry current = entries.get(key);
+        if (current != null && (expected == null || current.equals(expected))) {
+            removeLocked(key);
+        }
+    }
+
+    private void add(String key, Entry entry) {
+        Entry previous = entries.put(key, entry);
+        if (previous != null) {
+            totalBytes -= previous.size();
+        }
+        totalBytes += entry.size();
+    }
+
+    private void removeLocked(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.size();
+            deleteQuietly(entry.file());
+        }
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Entry entry = eldest.next().getValue();
+            eldest.remove();
+            totalBytes -= entry.size();
+            deleteQuietly(entry.file());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.debug("Suppression de la vignette {} impossible: {}", file, e.getMessage());
+        }
+    }
+
+    private static FileTime lastAccess(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
+    private static String key(Integer serveurId, String seriesId) {
+        return serveurId + "_" + seriesId;
+    }
+}
@@ -0,0 +1,18 @@
+package sn.xyz.medcenter.service;
+
+/**
+ * Appel Orthanc refusé sans être envoyé : disjoncteur ouvert ou file d'attente du serveur pleine
+ */
+public class OrthancUnavailableException extends RuntimeException {
+
+    private final String orthancUrl;
+
+    public OrthancUnavailableException(String orthancUrl, String reason) {
+        super("Serveur Orthanc " + orthancUrl + " indisponible: " + reason);
+        this.orthancUrl = orthancUrl;
+    }
+
+    public String getOrthancUrl() {
+        return orthancUrl;
+    }
+}
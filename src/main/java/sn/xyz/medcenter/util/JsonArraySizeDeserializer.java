@@ -0,0 +1,33 @@
+package sn.xyz.medcenter.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Décode un tableau JSON en son nombre d'éléments, sans créer les éléments eux-mêmes
+ */
+public class JsonArraySizeDeserializer extends JsonDeserializer<Integer> {
+
+    @Override
+    public Integer deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        if (!parser.isExpectedStartArrayToken()) {
+            parser.skipChildren();
+            return 0;
+        }
+        int size = 0;
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+            parser.skipChildren();
+            size++;
+        }
+        return size;
+    }
+
+    @Override
+    public Integer getNullValue(DeserializationContext context) {
+        return 0;
+    }
+}
@@ -0,0 +1,51 @@
+package sn.xyz.medcenter.util;
+
+import sn.xyz.medcenter.model.ServeurDICOM;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Construction de l'URL de base et de l'authentification d'un serveur Orthanc à partir de sa configuration en base
+ */
+public final class OrthancUrlUtil {
+
+    private OrthancUrlUtil() {
+    }
+
+    /**
+     * Construit l'URL complète (protocole, hôte et port) d'un serveur DICOM
+     * @param serveurDICOM Serveur DICOM
+     * @return URL de base du serveur Orthanc
+     */
+    public static String buildBaseUrl(ServeurDICOM serveurDICOM) {
+        String urlOrthanc = serveurDICOM.getUrlOrthanc();
+
+        // Vérifier si l'URL contient déjà le protocole
+        if (urlOrthanc.startsWith("http://") || urlOrthanc.startsWith("https://")) {
+            // L'URL contient déjà le protocole, ajouter seulement le port si nécessaire
+            if (urlOrthanc.contains(":" + serveurDICOM.getPortOrthanc())) {
+                return urlOrthanc; // Le port est déjà inclus
+            } else {
+                return urlOrthanc + ":" + serveurDICOM.getPortOrthanc();
+            }
+        } else {
+            // L'URL ne contient pas de protocole, construire l'URL complète
+            return "http://" + urlOrthanc + ":" + serveurDICOM.getPortOrthanc();
+        }
+    }
+
+    /**
+     * Valeur de l'en-tête Authorization (Basic) d'un serveur Orthanc
+     * @param username Nom d'utilisateur Orthanc
+     * @param password Mot de passe Orthanc
+     * @return "Basic ..." ou null si aucun utilisateur n'est configuré
+     */
+    public static String buildBasicAuthorization(String username, String password) {
+        if (username == null || username.isBlank()) {
+            return null;
+        }
+        String credentials = username + ":" + (password != null ? password : "");
+        return "Basic " + Base64.getEncoder().encodeToString(credentials.getBytes(StandardCharsets.UTF_8));
+    }
+}
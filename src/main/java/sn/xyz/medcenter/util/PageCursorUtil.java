@@ -0,0 +1,47 @@
+package sn.xyz.medcenter.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Curseurs de pagination opaques : les valeurs de la position (clé de tri, dernier ID, rang...)
+ * sont encodées en Base64 URL-safe pour être renvoyées telles quelles par le client
+ */
+public final class PageCursorUtil {
+
+    private static final String SEPARATOR = "\u001F";
+
+    private PageCursorUtil() {
+    }
+
+    /**
+     * Encode une position de pagination
+     * @param parts Valeurs de la position (non nulles)
+     * @return Curseur opaque
+     */
+    public static String encode(String... parts) {
+        String raw = String.join(SEPARATOR, parts);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Décode un curseur produit par {@link #encode}
+     * @param cursor Curseur opaque
+     * @param expectedParts Nombre de valeurs attendues
+     * @return Valeurs de la position
+     * @throws IllegalArgumentException si le curseur est mal formé
+     */
+    public static String[] decode(String cursor, int expectedParts) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Curseur de pagination invalide");
+        }
+        String[] parts = raw.split(SEPARATOR, -1);
+        if (parts.length != expectedParts) {
+            throw new IllegalArgumentException("Curseur de pagination invalide");
+        }
+        return parts;
+    }
+}
@@ -79,6 +79,7 @@ CREATE TABLE IF NOT EXISTS professionnel_sante (
     etablissement VARCHAR(100),
     region VARCHAR(50),
     hopital_id BIGINT,
+    KEY idx_prof_hopital (hopital_id),
     CONSTRAINT fk_prof_user FOREIGN KEY (id) REFERENCES utilisateur(id),
     CONSTRAINT fk_prof_hopital FOREIGN KEY (hopital_id) REFERENCES hopital(id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -107,6 +108,9 @@ CREATE TABLE IF NOT EXISTS consultation (
     notes TEXT,
     professionnel_id BIGINT NOT NULL,
     patient_id BIGINT NOT NULL,
+    KEY idx_consult_date (date_heure),
+    KEY idx_consult_prof_date (professionnel_id, date_heure),
+    KEY idx_consult_patient_date (patient_id, date_heure),
     CONSTRAINT fk_consult_prof FOREIGN KEY (professionnel_id) REFERENCES professionnel_sante(id),
     CONSTRAINT fk_consult_patient FOREIGN KEY (patient_id) REFERENCES patient(id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
@@ -127,6 +131,7 @@ CREATE TABLE IF NOT EXISTS prescription (
     instructions TEXT,
     renouvelable BOOLEAN DEFAULT FALSE,
     consultation_id BIGINT NOT NULL,
+    KEY idx_prescription_consult (consultation_id, date_emission),
     CONSTRAINT fk_prescription_consult FOREIGN KEY (consultation_id) REFERENCES consultation(id)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
@@ -220,4 +225,87 @@ CREATE TABLE IF NOT EXISTS recommandation (
     CONSTRAINT fk_recommandation_conseil FOREIGN KEY (conseil_id) REFERENCES conseil_medical(id) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
 
+-- 8. Index local des ressources Orthanc, alimenté par le flux /changes de chaque serveur DICOM
+CREATE TABLE IF NOT EXISTS orthanc_change_checkpoint (
+    serveur_dicom_id BIGINT PRIMARY KEY,
+    last_seq BIGINT NOT NULL,
+    index_ready BOOLEAN NOT NULL DEFAULT FALSE,
+    updated_at DATETIME NOT NULL,
+    CONSTRAINT fk_checkpoint_serveur FOREIGN KEY (serveur_dicom_id) REFERENCES serveur_dicom(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS orthanc_index_entry (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    serveur_dicom_id BIGINT NOT NULL,
+    level ENUM('PATIENT', 'STUDY', 'SERIES') NOT NULL,
+    orthanc_id VARCHAR(64) NOT NULL,
+    parent_orthanc_id VARCHAR(64),
+    patient_name VARCHAR(255),
+    patient_dicom_id VARCHAR(64),
+    study_instance_uid VARCHAR(128),
+    study_date VARCHAR(8),
+    series_instance_uid VARCHAR(128),
+    modality VARCHAR(16),
+    main_dicom_tags TEXT,
+    is_stable BOOLEAN NOT NULL DEFAULT FALSE,
+    last_update VARCHAR(15),
+    indexed_at DATETIME NOT NULL,
+    UNIQUE KEY uk_index_entry_resource (serveur_dicom_id, level, orthanc_id),
+    KEY idx_index_entry_parent (serveur_dicom_id, level, parent_orthanc_id),
+    KEY idx_index_entry_patient_name (serveur_dicom_id, level, patient_name),
+    KEY idx_index_entry_patient_dicom_id (serveur_dicom_id, level, patient_dicom_id),
+    CONSTRAINT fk_index_entry_serveur FOREIGN KEY (serveur_dicom_id) REFERENCES serveur_dicom(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- 9. Exports d'études vers d'autres PACS, exécutés par les jobs asynchrones d'Orthanc
+CREATE TABLE IF NOT EXISTS orthanc_export_job (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    serveur_dicom_id BIGINT,
+    orthanc_url VARCHAR(255) NOT NULL,
+    status ENUM('QUEUED', 'RUNNING', 'COMPLETED', 'COMPLETED_WITH_ERRORS', 'CANCELLED') NOT NULL,
+    total_items INT NOT NULL,
+    created_by VARCHAR(255),
+    created_at DATETIME NOT NULL,
+    started_at DATETIME,
+    finished_at DATETIME,
+    KEY idx_export_job_status (status),
+    CONSTRAINT fk_export_job_serveur FOREIGN KEY (serveur_dicom_id) REFERENCES serveur_dicom(id) ON DELETE SET NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS orthanc_export_item (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    job_id BIGINT NOT NULL,
+    study_id VARCHAR(64) NOT NULL,
+    target VARCHAR(64) NOT NULL,
+    status ENUM('PENDING', 'SUBMITTING', 'RUNNING', 'SUCCESS', 'FAILURE', 'CANCELLED') NOT NULL,
+    orthanc_job_id VARCHAR(64),
+    progress INT NOT NULL DEFAULT 0,
+    attempts INT NOT NULL DEFAULT 0,
+    error VARCHAR(255),
+    started_at DATETIME,
+    finished_at DATETIME,
+    KEY idx_export_item_job (job_id, status),
+    KEY idx_export_item_status (status, id),
+    KEY idx_export_item_orthanc_job (orthanc_job_id),
+    CONSTRAINT fk_export_item_job FOREIGN KEY (job_id) REFERENCES orthanc_export_job(id) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+-- 10. Statistiques de consultations pré-agrégées par jour, semaine (lundi) et mois : ensemble des consultations
+--     (scope_id = 0), chaque professionnel de santé et chaque hôpital ; tenues à jour par ConsultationStatService
+CREATE TABLE IF NOT EXISTS consultation_stat (
+    scope ENUM('GLOBAL', 'PROFESSIONNEL', 'HOPITAL') NOT NULL,
+    scope_id BIGINT NOT NULL,
+    granularity ENUM('DAY', 'WEEK', 'MONTH') NOT NULL,
+    period_start DATE NOT NULL,
+    consultations BIGINT NOT NULL,
+    patients BIGINT NOT NULL,
+    PRIMARY KEY (scope, scope_id, granularity, period_start)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
+CREATE TABLE IF NOT EXISTS consultation_stat_checkpoint (
+    id INT PRIMARY KEY,
+    last_consultation_id BIGINT NOT NULL,
+    updated_at DATETIME NOT NULL
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci;
+
 -- SET FOREIGN_KEY_CHECKS = 1;
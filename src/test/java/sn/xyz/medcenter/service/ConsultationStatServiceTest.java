@@ -0,0 +1,244 @@
+package sn.xyz.medcenter.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import sn.xyz.medcenter.dto.StatPeriodeDTO;
+import sn.xyz.medcenter.model.Consultation;
+import sn.xyz.medcenter.model.ConsultationStat.Granularity;
+import sn.xyz.medcenter.model.ConsultationStat.Scope;
+import sn.xyz.medcenter.model.Hopital;
+import sn.xyz.medcenter.model.Patient;
+import sn.xyz.medcenter.model.ProfessionnelSante;
+import sn.xyz.medcenter.model.TypeHopital;
+import sn.xyz.medcenter.model.Utilisateur;
+import sn.xyz.medcenter.repository.ConsultationStatCheckpointRepository;
+import sn.xyz.medcenter.repository.ConsultationStatRepository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Statistiques pré-agrégées de ConsultationStatService comparées aux consultations brutes, pour chaque portée,
+ * granularité et plage (alignée ou non sur les périodes), après construction puis mise à jour incrémentale
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:consultationstat;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "medical.stats.rollup.enabled=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ConsultationStatService.class)
+class ConsultationStatServiceTest {
+
+    // Du lundi 16/12/2024 au dimanche 16/02/2025 : changement d'année au milieu d'une semaine ISO
+    private static final LocalDate FIRST_DAY = LocalDate.of(2024, 12, 16);
+    private static final int DAYS = 63;
+
+    @MockitoBean
+    private OrthancRoutingService orthancRoutingService;
+
+    @Autowired
+    private ConsultationStatService consultationStatService;
+
+    @Autowired
+    private ConsultationStatRepository statRepository;
+
+    @Autowired
+    private ConsultationStatCheckpointRepository checkpointRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private final List<Hopital> hopitaux = new ArrayList<>();
+    private final List<ProfessionnelSante> professionnels = new ArrayList<>();
+    private final List<Patient> patients = new ArrayList<>();
+    private final List<Consultation> consultations = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        // Fonctions MySQL utilisées par les agrégats, absentes de H2
+        entityManager.createNativeQuery("CREATE ALIAS IF NOT EXISTS ADDDATE FOR '"
+                + MySqlFunctions.class.getName() + ".adddate'").executeUpdate();
+        entityManager.createNativeQuery("CREATE ALIAS IF NOT EXISTS WEEKDAY FOR '"
+                + MySqlFunctions.class.getName() + ".weekday'").executeUpdate();
+
+        for (int h = 0; h < 2; h++) {
+            Hopital hopital = new Hopital();
+            hopital.setNom("Hôpital " + h);
+            hopital.setType(TypeHopital.PUBLIC);
+            hopital.setRegion("Dakar");
+            hopital.setVille("Dakar");
+            hopital.setAdresse("Plateau");
+            hopital.setTelephone("338000000");
+            entityManager.persist(hopital);
+            hopitaux.add(hopital);
+        }
+        // Deux professionnels dans le premier hôpital, un dans le second, un sans hôpital
+        for (int p = 0; p < 4; p++) {
+            ProfessionnelSante professionnel = new ProfessionnelSante();
+            fillUtilisateur(professionnel, "pro" + p);
+            professionnel.setSpecialite("Radiologie");
+            professionnel.setNumeroOrdre("ORD" + p);
+            professionnel.setHopital(p < 3 ? hopitaux.get(p / 2) : null);
+            entityManager.persist(professionnel);
+            professionnels.add(professionnel);
+        }
+        for (int i = 0; i < 6; i++) {
+            Patient patient = new Patient();
+            fillUtilisateur(patient, "pat" + i);
+            patient.setNumeroSecu("SN" + i);
+            entityManager.persist(patient);
+            patients.add(patient);
+        }
+        for (int i = 0; i < 180; i++) {
+            addConsultation(FIRST_DAY.plusDays((i * 5L) % DAYS).atTime(8 + i % 10, 15),
+                    professionnels.get(i % professionnels.size()), patients.get((i * 7) % patients.size()));
+        }
+        entityManager.flush();
+    }
+
+    @Test
+    void rollupsMatchRawConsultations() {
+        consultationStatService.refresh();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(statRepository.count()).isPositive();
+        assertAllStatsMatch();
+    }
+
+    @Test
+    void fullPeriodsAreReadFromRollupsOnly() {
+        consultationStatService.refresh();
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        List<StatPeriodeDTO> stats = consultationStatService.getStats(Scope.GLOBAL, null, Granularity.WEEK,
+                FIRST_DAY, FIRST_DAY.plusDays(DAYS - 1));
+
+        assertThat(stats).hasSize(DAYS / 7);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void refreshAggregatesNewConsultationsIncludingBackdatedOnes() {
+        consultationStatService.refresh();
+
+        addConsultation(FIRST_DAY.plusDays(40).atTime(10, 0), professionnels.get(0), patients.get(5));
+        addConsultation(FIRST_DAY.plusDays(2).atTime(9, 30), professionnels.get(2), patients.get(0));
+        addConsultation(FIRST_DAY.plusDays(DAYS + 3).atTime(11, 0), professionnels.get(3), patients.get(1));
+        entityManager.flush();
+        consultationStatService.refresh();
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(checkpointRepository.findById(1)).get()
+                .satisfies(checkpoint -> assertThat(checkpoint.getLastConsultationId())
+                        .isEqualTo(consultations.get(consultations.size() - 1).getId()));
+        assertAllStatsMatch();
+    }
+
+    private void assertAllStatsMatch() {
+        List<LocalDate[]> ranges = List.of(
+                new LocalDate[]{FIRST_DAY, FIRST_DAY.plusDays(DAYS + 6)},
+                new LocalDate[]{LocalDate.of(2024, 12, 27), LocalDate.of(2025, 2, 5)},
+                new LocalDate[]{LocalDate.of(2025, 1, 8), LocalDate.of(2025, 1, 10)});
+        for (Granularity granularity : Granularity.values()) {
+            for (LocalDate[] range : ranges) {
+                assertStatsMatch(Scope.GLOBAL, null, granularity, range[0], range[1]);
+                for (ProfessionnelSante professionnel : professionnels) {
+                    assertStatsMatch(Scope.PROFESSIONNEL, professionnel.getId(), granularity, range[0], range[1]);
+                }
+                for (Hopital hopital : hopitaux) {
+                    assertStatsMatch(Scope.HOPITAL, hopital.getId(), granularity, range[0], range[1]);
+                }
+            }
+        }
+    }
+
+    private void assertStatsMatch(Scope scope, Integer scopeId, Granularity granularity, LocalDate start, LocalDate end) {
+        TreeMap<LocalDate, List<Consultation>> byPeriod = new TreeMap<>();
+        for (Consultation consultation : consultations) {
+            LocalDate day = consultation.getDateHeure().toLocalDate();
+            boolean inScope = switch (scope) {
+                case GLOBAL -> true;
+                case PROFESSIONNEL -> consultation.getProfessionnel().getId().equals(scopeId);
+                case HOPITAL -> consultation.getProfessionnel().getHopital() != null
+                        && consultation.getProfessionnel().getHopital().getId().equals(scopeId);
+            };
+            if (inScope && !day.isBefore(start) && !day.isAfter(end)) {
+                byPeriod.computeIfAbsent(granularity.start(day), k -> new ArrayList<>()).add(consultation);
+            }
+        }
+        List<StatPeriodeDTO> expected = new ArrayList<>();
+        byPeriod.forEach((periodStart, periodConsultations) -> {
+            Set<Integer> distinctPatients = new HashSet<>();
+            periodConsultations.forEach(consultation -> distinctPatients.add(consultation.getPatient().getId()));
+            expected.add(new StatPeriodeDTO(granularity.label(periodStart), distinctPatients.size(),
+                    periodConsultations.size()));
+        });
+
+        assertThat(consultationStatService.getStats(scope, scopeId, granularity, start, end))
+                .as("%s %s %s du %s au %s", scope, Objects.toString(scopeId, ""), granularity, start, end)
+                .isEqualTo(expected);
+    }
+
+    private void addConsultation(LocalDateTime dateHeure, ProfessionnelSante professionnel, Patient patient) {
+        Consultation consultation = new Consultation();
+        consultation.setDateHeure(dateHeure);
+        consultation.setType("CONTROLE");
+        consultation.setStatut("TERMINEE");
+        consultation.setProfessionnel(professionnel);
+        consultation.setPatient(patient);
+        entityManager.persist(consultation);
+        consultations.add(consultation);
+    }
+
+    private static void fillUtilisateur(Utilisateur utilisateur, String username) {
+        utilisateur.setLastName("Nom " + username);
+        utilisateur.setFirstName("Prénom " + username);
+        utilisateur.setUsername(username);
+        utilisateur.setEmail(username + "@medcenter.sn");
+        utilisateur.setPassword("x");
+        utilisateur.setRole("USER");
+        utilisateur.setDateCreation(LocalDateTime.now());
+    }
+
+    public static class MySqlFunctions {
+
+        public static Date adddate(Date date, int days) {
+            return Date.valueOf(date.toLocalDate().plusDays(days));
+        }
+
+        public static int weekday(Timestamp timestamp) {
+            return timestamp.toLocalDateTime().getDayOfWeek().getValue() - 1;
+        }
+    }
+}
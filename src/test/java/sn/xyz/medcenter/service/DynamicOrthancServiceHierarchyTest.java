@@ -0,0 +1,232 @@
+package sn.xyz.medcenter.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.http.server.HttpServerRoutes;
+import sn.xyz.medcenter.configuration.OrthancClientProperties;
+import sn.xyz.medcenter.configuration.OrthancResilienceProperties;
+import sn.xyz.medcenter.dto.OrthancPatientDetailResponseDTO;
+import sn.xyz.medcenter.dto.OrthancPatientResourceDTO;
+import sn.xyz.medcenter.dto.OrthancSeriesResourceDTO;
+import sn.xyz.medcenter.dto.OrthancStudyResourceDTO;
+import sn.xyz.medcenter.repository.ServeurDICOMRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Compare le chargement de l'arborescence d'un patient (5 études, 50 séries) entre le parcours
+ * historique (un appel par étude et par série) et le chargeur groupé, sur un bouchon Orthanc local
+ */
+class DynamicOrthancServiceHierarchyTest {
+
+    private static final int STUDIES = 5;
+    private static final int SERIES_PER_STUDY = 10;
+    private static final Duration LATENCY = Duration.ofMillis(20);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private DisposableServer orthancStub;
+    private String orthancUrl;
+    private DynamicOrthancService service;
+    private OrthancFanOutService fanOutService;
+    private OrthancClientRegistry clientRegistry;
+    private OrthancResourceCache resourceCache;
+
+    @BeforeEach
+    void startOrthancStub() {
+        orthancStub = HttpServer.create()
+                .host("127.0.0.1")
+                .port(0)
+                .route(this::routes)
+                .bindNow();
+        orthancUrl = "http://127.0.0.1:" + orthancStub.port();
+        fanOutService = new OrthancFanOutService(16, Duration.ofSeconds(10));
+        clientRegistry = new OrthancClientRegistry(WebClient.builder(), mock(ServeurDICOMRepository.class),
+                new OrthancClientProperties());
+        resourceCache = new OrthancResourceCache(1000, Duration.ofHours(1), Duration.ofSeconds(15));
+        service = new DynamicOrthancService(clientRegistry,
+                new OrthancResilienceService(fanOutService, new OrthancResilienceProperties()),
+                new OrthancMapperService(), resourceCache);
+    }
+
+    @AfterEach
+    void stopOrthancStub() {
+        clientRegistry.dispose();
+        orthancStub.disposeNow();
+    }
+
+    @Test
+    void bulkLoaderUsesThreeRoundTripsInsteadOfOnePerStudyAndSeries() {
+        // Préchauffage du client HTTP pour ne pas pénaliser la première mesure
+        service.getPatient(orthancUrl, "p1").block();
+
+        // Parcours historique: patient, puis chaque étude, puis chaque série
+        resourceCache.invalidateServer(orthancUrl);
+        requestCount.set(0);
+        long legacyStart = System.nanoTime();
+        OrthancPatientDetailResponseDTO legacy = loadHierarchyOneByOne("p1").block();
+        long legacyNanos = System.nanoTime() - legacyStart;
+        int legacyRequests = requestCount.get();
+
+        resourceCache.invalidateServer(orthancUrl);
+        requestCount.set(0);
+        long bulkStart = System.nanoTime();
+        OrthancPatientDetailResponseDTO bulk = service.loadPatientHierarchy(orthancUrl, "p1").block();
+        long bulkNanos = System.nanoTime() - bulkStart;
+        int bulkRequests = requestCount.get();
+
+        assertThat(legacyRequests).isEqualTo(1 + STUDIES + STUDIES * SERIES_PER_STUDY);
+        assertThat(bulkRequests).isEqualTo(3);
+        // Avec LATENCY par aller-retour, le parcours historique enchaîne plus d'allers-retours que le chargeur groupé
+        assertThat(bulkNanos)
+                .as("chargeur groupé %d ms, parcours historique %d ms", bulkNanos / 1_000_000, legacyNanos / 1_000_000)
+                .isLessThan(legacyNanos);
+        assertThat(bulk).isEqualTo(legacy);
+        assertThat(bulk.getStudies()).hasSize(STUDIES);
+        assertThat(bulk.getStudies().get(2).getSeries()).hasSize(SERIES_PER_STUDY);
+        assertThat(bulk.getStudies().get(2).getSeries().get(4).getSeriesDescription()).isEqualTo("Série s2-4");
+        assertThat(bulk.getStudies().get(2).getSeries().get(4).getInstancesCount()).isEqualTo(2);
+
+        // Ressources stables en cache: une nouvelle consultation ne sollicite plus Orthanc
+        requestCount.set(0);
+        OrthancPatientDetailResponseDTO cached = service.loadPatientHierarchy(orthancUrl, "p1").block();
+        assertThat(requestCount.get()).isZero();
+        assertThat(cached).isEqualTo(bulk);
+
+        // Une modification de série invalide la série et ses parents
+        resourceCache.onChange(orthancUrl, Map.of("ChangeType", "StableSeries", "ResourceType", "Series", "ID", "s2-4"));
+        assertThat(resourceCache.get(orthancUrl, OrthancResourceCache.Level.SERIES, "s2-4")).isNull();
+        assertThat(resourceCache.get(orthancUrl, OrthancResourceCache.Level.STUDY, "s2")).isNull();
+        assertThat(resourceCache.get(orthancUrl, OrthancResourceCache.Level.PATIENT, "p1")).isNull();
+        assertThat(resourceCache.get(orthancUrl, OrthancResourceCache.Level.STUDY, "s1")).isNotNull();
+    }
+
+    @Test
+    void concurrentIdenticalFetchesShareOneRequest() {
+        requestCount.set(0);
+        List<OrthancPatientResourceDTO> patients = Flux.range(0, 10)
+                .flatMap(i -> service.getPatient(orthancUrl, "p1"))
+                .collectList()
+                .block();
+
+        assertThat(patients).hasSize(10).allMatch(patient -> "p1".equals(patient.id()));
+        assertThat(requestCount.get()).isEqualTo(1);
+        assertThat(service.getCoalescedRequests()).isEqualTo(9);
+    }
+
+    private Mono<OrthancPatientDetailResponseDTO> loadHierarchyOneByOne(String patientId) {
+        OrthancMapperService mapper = new OrthancMapperService();
+        return service.getPatient(orthancUrl, patientId)
+                .flatMap(patient -> fanOutService.fanOutToList(orthancUrl, patient.studies(),
+                                studyId -> service.getStudy(orthancUrl, studyId)
+                                        .flatMap(study -> fanOutService.fanOutToList(orthancUrl, study.series(),
+                                                        seriesId -> service.getSeries(orthancUrl, seriesId), null)
+                                                .map(series -> Map.entry(study, series))),
+                                null)
+                        .map(entries -> {
+                            List<OrthancStudyResourceDTO> studies = new ArrayList<>();
+                            List<OrthancSeriesResourceDTO> series = new ArrayList<>();
+                            entries.forEach(entry -> {
+                                studies.add(entry.getKey());
+                                series.addAll(entry.getValue());
+                            });
+                            return mapper.mapToPatientDetailResponse(orthancUrl, patient, studies, series);
+                        }));
+    }
+
+    private void routes(HttpServerRoutes routes) {
+        routes.get("/patients/{id}", (request, response) -> reply(response, patient(request.param("id"))))
+                .get("/patients/{id}/studies", (request, response) -> reply(response, allStudies()))
+                .get("/patients/{id}/series", (request, response) -> reply(response, allSeries()))
+                .get("/studies/{id}", (request, response) -> reply(response, study(request.param("id"))))
+                .get("/series/{id}", (request, response) -> reply(response, series(request.param("id"))));
+    }
+
+    private Publisher<Void> reply(HttpServerResponse response, Object body) {
+        requestCount.incrementAndGet();
+        try {
+            String json = objectMapper.writeValueAsString(body);
+            return response.header("Content-Type", "application/json")
+                    .sendString(Mono.delay(LATENCY).thenReturn(json), StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            return response.status(500).send();
+        }
+    }
+
+    private Map<String, Object> patient(String id) {
+        List<String> studyIds = new ArrayList<>();
+        for (int i = 0; i < STUDIES; i++) {
+            studyIds.add("s" + i);
+        }
+        Map<String, Object> patient = new LinkedHashMap<>();
+        patient.put("ID", id);
+        patient.put("IsStable", true);
+        patient.put("LastUpdate", "20240101T101010");
+        patient.put("MainDicomTags", Map.of("PatientName", "DIOP^AMATH", "PatientID", "SN123"));
+        patient.put("Studies", studyIds);
+        patient.put("Type", "Patient");
+        return patient;
+    }
+
+    private List<Map<String, Object>> allStudies() {
+        List<Map<String, Object>> studies = new ArrayList<>();
+        for (int i = 0; i < STUDIES; i++) {
+            studies.add(study("s" + i));
+        }
+        return studies;
+    }
+
+    private List<Map<String, Object>> allSeries() {
+        List<Map<String, Object>> series = new ArrayList<>();
+        for (int i = 0; i < STUDIES; i++) {
+            for (int j = 0; j < SERIES_PER_STUDY; j++) {
+                series.add(series("s" + i + "-" + j));
+            }
+        }
+        return series;
+    }
+
+    private Map<String, Object> study(String id) {
+        List<String> seriesIds = new ArrayList<>();
+        for (int j = 0; j < SERIES_PER_STUDY; j++) {
+            seriesIds.add(id + "-" + j);
+        }
+        Map<String, Object> study = new LinkedHashMap<>();
+        study.put("ID", id);
+        study.put("IsStable", true);
+        study.put("LastUpdate", "20240101T101010");
+        study.put("MainDicomTags", Map.of("StudyDescription", "Étude " + id, "StudyInstanceUID", "1.2." + id));
+        study.put("Series", seriesIds);
+        study.put("ParentPatient", "p1");
+        return study;
+    }
+
+    private Map<String, Object> series(String id) {
+        Map<String, Object> series = new LinkedHashMap<>();
+        series.put("ID", id);
+        series.put("IsStable", true);
+        series.put("LastUpdate", "20240101T101010");
+        series.put("MainDicomTags", Map.of("SeriesDescription", "Série " + id, "Modality", "CT"));
+        series.put("Instances", List.of(id + "-i1", id + "-i2"));
+        series.put("ParentStudy", id.substring(0, id.indexOf('-')));
+        return series;
+    }
+}
@@ -0,0 +1,302 @@
+package sn.xyz.medcenter.service;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.init.ScriptUtils;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Requêtes de MedicalDataService sur un jeu synthétique de 1 000 000 de consultations et de prescriptions :
+ * chargement complet de la table puis filtrage en Java, comme avant, contre requêtes sur index.
+ * Nécessite une base MySQL jetable (le schéma et les données sont créés au premier lancement) ;
+ * hors de la suite par défaut, lancement :
+ * mvn test -Dtest=MedicalDataQueryBenchmark -Dbenchmark.datasource.url=jdbc:mysql://localhost:3306/med_center_bench
+ *     -Dbenchmark.datasource.username=... -Dbenchmark.datasource.password=...
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class MedicalDataQueryBenchmark {
+
+    private static final String URL_PROPERTY = "benchmark.datasource.url";
+    private static final String USERNAME_PROPERTY = "benchmark.datasource.username";
+    private static final String PASSWORD_PROPERTY = "benchmark.datasource.password";
+
+    private static final int HOPITAUX = 50;
+    private static final int PROFESSIONNELS = 2_000;
+    private static final int PATIENTS = 20_000;
+    private static final int CONSULTATIONS = 1_000_000;
+    private static final int BATCH_SIZE = 10_000;
+
+    private Connection connection;
+    private long minConsultationId;
+    private long minProfessionnelId;
+    private long minHopitalId;
+
+    @Setup(Level.Trial)
+    public void connect() throws SQLException {
+        connection = open();
+        try (Statement statement = connection.createStatement();
+             ResultSet range = statement.executeQuery(
+                     "SELECT (SELECT MIN(id) FROM consultation), (SELECT MIN(id) FROM professionnel_sante), " +
+                     "(SELECT MIN(id) FROM hopital)")) {
+            range.next();
+            minConsultationId = range.getLong(1);
+            minProfessionnelId = range.getLong(2);
+            minHopitalId = range.getLong(3);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public int prescriptionsByConsultationFullScan() throws SQLException {
+        long consultationId = minConsultationId + ThreadLocalRandom.current().nextInt(CONSULTATIONS);
+        return fullScan("SELECT id, consultation_id, date_emission, medicaments FROM prescription", 2, consultationId);
+    }
+
+    @Benchmark
+    public int prescriptionsByConsultationIndexed() throws SQLException {
+        long consultationId = minConsultationId + ThreadLocalRandom.current().nextInt(CONSULTATIONS);
+        return indexed("SELECT id, consultation_id, date_emission, medicaments FROM prescription WHERE consultation_id = ?",
+                consultationId);
+    }
+
+    @Benchmark
+    public int consultationsByProfessionnelFullScan() throws SQLException {
+        long professionnelId = minProfessionnelId + ThreadLocalRandom.current().nextInt(PROFESSIONNELS);
+        return fullScan("SELECT id, professionnel_id, patient_id, date_heure, type, statut FROM consultation", 2,
+                professionnelId);
+    }
+
+    @Benchmark
+    public int consultationsByProfessionnelIndexed() throws SQLException {
+        long professionnelId = minProfessionnelId + ThreadLocalRandom.current().nextInt(PROFESSIONNELS);
+        return indexed("SELECT id, professionnel_id, patient_id, date_heure, type, statut FROM consultation " +
+                "WHERE professionnel_id = ?", professionnelId);
+    }
+
+    @Benchmark
+    public int professionnelsByHopitalFullScan() throws SQLException {
+        return fullScan("SELECT id, hopital_id, specialite FROM professionnel_sante", 2, randomHopitalId());
+    }
+
+    @Benchmark
+    public int professionnelsByHopitalIndexed() throws SQLException {
+        return indexed("SELECT id, hopital_id, specialite FROM professionnel_sante WHERE hopital_id = ?", randomHopitalId());
+    }
+
+    @Test
+    void indexedQueriesRunFasterThanFullScans() throws Exception {
+        assumeTrue(System.getProperty(URL_PROPERTY) != null, "Base MySQL de benchmark non configurée");
+        try (Connection seedConnection = open()) {
+            seed(seedConnection);
+        }
+
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(MedicalDataQueryBenchmark.class.getName() + "\\.")
+                .jvmArgsAppend(
+                        "-D" + URL_PROPERTY + "=" + System.getProperty(URL_PROPERTY),
+                        "-D" + USERNAME_PROPERTY + "=" + System.getProperty(USERNAME_PROPERTY, ""),
+                        "-D" + PASSWORD_PROPERTY + "=" + System.getProperty(PASSWORD_PROPERTY, ""))
+                .build())
+                .run();
+
+        Map<String, Double> scores = new LinkedHashMap<>();
+        results.forEach(result -> scores.put(result.getParams().getBenchmark()
+                .substring(MedicalDataQueryBenchmark.class.getName().length() + 1), result.getPrimaryResult().getScore()));
+        for (String query : List.of("prescriptionsByConsultation", "consultationsByProfessionnel", "professionnelsByHopital")) {
+            double fullScan = scores.get(query + "FullScan");
+            double indexed = scores.get(query + "Indexed");
+            assertThat(indexed)
+                    .as("%s: chargement complet %.2f ms, index %.3f ms", query, fullScan, indexed)
+                    .isLessThan(fullScan);
+        }
+    }
+
+    /**
+     * Comportement historique : toute la table est lue puis filtrée côté application
+     */
+    private int fullScan(String sql, int filterColumn, long expected) throws SQLException {
+        int matches = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(sql)) {
+            while (rows.next()) {
+                if (rows.getLong(filterColumn) == expected) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private int indexed(String sql, long id) throws SQLException {
+        int matches = 0;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, id);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    matches++;
+                }
+            }
+        }
+        return matches;
+    }
+
+    private long randomHopitalId() {
+        return minHopitalId + ThreadLocalRandom.current().nextInt(HOPITAUX);
+    }
+
+    private static Connection open() throws SQLException {
+        return DriverManager.getConnection(System.getProperty(URL_PROPERTY),
+                System.getProperty(USERNAME_PROPERTY), System.getProperty(PASSWORD_PROPERTY));
+    }
+
+    /**
+     * Crée le schéma de l'application et le jeu de données, s'il n'existe pas déjà
+     */
+    private static void seed(Connection connection) throws SQLException {
+        ScriptUtils.executeSqlScript(connection, new ClassPathResource("schema.sql"));
+        try (Statement statement = connection.createStatement();
+             ResultSet count = statement.executeQuery("SELECT COUNT(*) FROM prescription")) {
+            count.next();
+            if (count.getLong(1) >= CONSULTATIONS) {
+                return;
+            }
+        }
+
+        connection.setAutoCommit(false);
+        List<Long> hopitalIds = insertHopitaux(connection);
+        List<Long> professionnelIds = new ArrayList<>(PROFESSIONNELS);
+        List<Long> patientIds = new ArrayList<>(PATIENTS);
+        try (PreparedStatement professionnel = connection.prepareStatement(
+                "INSERT INTO professionnel_sante (id, specialite, numero_ordre, hopital_id) VALUES (?, 'Radiologie', ?, ?)");
+             PreparedStatement patient = connection.prepareStatement(
+                     "INSERT INTO patient (id, numero_secu) VALUES (?, ?)")) {
+            for (int i = 0; i < PROFESSIONNELS; i++) {
+                long id = insertUtilisateur(connection, "pro" + i, "PROFESSIONNEL");
+                professionnel.setLong(1, id);
+                professionnel.setString(2, "ORD" + i);
+                professionnel.setLong(3, hopitalIds.get(i % HOPITAUX));
+                professionnel.addBatch();
+                professionnelIds.add(id);
+            }
+            professionnel.executeBatch();
+            for (int i = 0; i < PATIENTS; i++) {
+                long id = insertUtilisateur(connection, "pat" + i, "PATIENT");
+                patient.setLong(1, id);
+                patient.setString(2, String.format("SN%013d", i));
+                patient.addBatch();
+                patientIds.add(id);
+            }
+            patient.executeBatch();
+        }
+        connection.commit();
+
+        LocalDateTime origin = LocalDateTime.now().minusYears(3);
+        try (PreparedStatement consultation = connection.prepareStatement(
+                "INSERT INTO consultation (date_heure, type, statut, professionnel_id, patient_id) " +
+                "VALUES (?, 'CONTROLE', 'TERMINEE', ?, ?)", Statement.RETURN_GENERATED_KEYS);
+             PreparedStatement prescription = connection.prepareStatement(
+                     "INSERT INTO prescription (date_emission, medicaments, consultation_id) VALUES (?, 'Paracétamol 1g', ?)")) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int done = 0; done < CONSULTATIONS; done += BATCH_SIZE) {
+                List<Timestamp> dates = new ArrayList<>(BATCH_SIZE);
+                for (int i = 0; i < BATCH_SIZE; i++) {
+                    Timestamp date = Timestamp.valueOf(origin.plusMinutes(random.nextLong(3L * 365 * 24 * 60)));
+                    dates.add(date);
+                    consultation.setTimestamp(1, date);
+                    consultation.setLong(2, professionnelIds.get(random.nextInt(PROFESSIONNELS)));
+                    consultation.setLong(3, patientIds.get(random.nextInt(PATIENTS)));
+                    consultation.addBatch();
+                }
+                consultation.executeBatch();
+                try (ResultSet keys = consultation.getGeneratedKeys()) {
+                    for (int i = 0; keys.next(); i++) {
+                        prescription.setDate(1, new java.sql.Date(dates.get(i).getTime()));
+                        prescription.setLong(2, keys.getLong(1));
+                        prescription.addBatch();
+                    }
+                }
+                prescription.executeBatch();
+                connection.commit();
+            }
+        }
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ANALYZE TABLE professionnel_sante, consultation, prescription");
+        }
+        connection.setAutoCommit(true);
+    }
+
+    private static List<Long> insertHopitaux(Connection connection) throws SQLException {
+        List<Long> ids = new ArrayList<>(HOPITAUX);
+        try (PreparedStatement hopital = connection.prepareStatement(
+                "INSERT INTO hopital (nom, type, region, ville, adresse, telephone) " +
+                "VALUES (?, 'PUBLIC', 'Dakar', 'Dakar', 'Plateau', '338000000')", Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < HOPITAUX; i++) {
+                hopital.setString(1, "Hôpital " + i);
+                hopital.executeUpdate();
+                try (ResultSet keys = hopital.getGeneratedKeys()) {
+                    keys.next();
+                    ids.add(keys.getLong(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    private static long insertUtilisateur(Connection connection, String username, String role) throws SQLException {
+        try (PreparedStatement utilisateur = connection.prepareStatement(
+                "INSERT INTO utilisateur (last_name, first_name, username, email, password, roles, date_creation) " +
+                "VALUES ('Bench', ?, ?, ?, 'x', ?, NOW())", Statement.RETURN_GENERATED_KEYS)) {
+            utilisateur.setString(1, username);
+            utilisateur.setString(2, username);
+            utilisateur.setString(3, username + "@bench.medcenter.sn");
+            utilisateur.setString(4, role);
+            utilisateur.executeUpdate();
+            try (ResultSet keys = utilisateur.getGeneratedKeys()) {
+                keys.next();
+                return keys.getLong(1);
+            }
+        }
+    }
+}
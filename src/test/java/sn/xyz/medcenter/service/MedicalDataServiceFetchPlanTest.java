@@ -0,0 +1,231 @@
+package sn.xyz.medcenter.service;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import sn.xyz.medcenter.dto.ConsultationDTO;
+import sn.xyz.medcenter.dto.DtoConverter;
+import sn.xyz.medcenter.dto.HopitalDTO;
+import sn.xyz.medcenter.dto.KeysetPage;
+import sn.xyz.medcenter.dto.PatientDTO;
+import sn.xyz.medcenter.dto.ProfessionnelSanteDTO;
+import sn.xyz.medcenter.model.Consultation;
+import sn.xyz.medcenter.model.DossierMedical;
+import sn.xyz.medcenter.model.Hopital;
+import sn.xyz.medcenter.model.Patient;
+import sn.xyz.medcenter.model.Prescription;
+import sn.xyz.medcenter.model.ProfessionnelSante;
+import sn.xyz.medcenter.model.TypeHopital;
+import sn.xyz.medcenter.repository.HopitalRepository.HopitalRow;
+import sn.xyz.medcenter.repository.PatientRepository.PatientRow;
+import sn.xyz.medcenter.repository.ProfessionnelSanteRepository.ProfessionnelRow;
+import sn.xyz.medcenter.repository.ProfessionnelSanteRepository.ProfessionnelSimpleRow;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Nombre de requêtes SQL des listes de MedicalDataService, conversion en DTO comprise : chaque liste
+ * doit s'exécuter en un nombre fixe de requêtes, quel que soit le nombre de lignes (pas de N+1).
+ * Les listes lues par projection ne chargent aucune entité.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:fetchplan;MODE=MySQL;DATABASE_TO_LOWER=TRUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(MedicalDataService.class)
+class MedicalDataServiceFetchPlanTest {
+
+    private static final int HOPITAUX = 3;
+    private static final int PROFESSIONNELS_PAR_HOPITAL = 4;
+    private static final int PATIENTS = 8;
+    private static final int CONSULTATIONS_PAR_PATIENT = 3;
+
+    @MockitoBean
+    private OrthancRoutingService orthancRoutingService;
+
+    @MockitoBean
+    private ConsultationStatService consultationStatService;
+
+    @Autowired
+    private MedicalDataService medicalDataService;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private final List<ProfessionnelSante> professionnels = new ArrayList<>();
+    private final List<Patient> patients = new ArrayList<>();
+
+    @BeforeEach
+    void seed() {
+        for (int h = 0; h < HOPITAUX; h++) {
+            Hopital hopital = new Hopital();
+            hopital.setNom("Hôpital " + h);
+            hopital.setType(TypeHopital.PUBLIC);
+            hopital.setRegion("Dakar");
+            hopital.setVille("Dakar");
+            hopital.setAdresse("Plateau");
+            hopital.setTelephone("338000000");
+            entityManager.persist(hopital);
+            for (int p = 0; p < PROFESSIONNELS_PAR_HOPITAL; p++) {
+                ProfessionnelSante professionnel = new ProfessionnelSante();
+                fillUtilisateur(professionnel, "pro" + h + "_" + p);
+                professionnel.setSpecialite("Radiologie");
+                professionnel.setNumeroOrdre("ORD" + h + p);
+                professionnel.setHopital(hopital);
+                entityManager.persist(professionnel);
+                professionnels.add(professionnel);
+            }
+        }
+        for (int i = 0; i < PATIENTS; i++) {
+            Patient patient = new Patient();
+            fillUtilisateur(patient, "pat" + i);
+            patient.setNumeroSecu("SN" + i);
+            entityManager.persist(patient);
+            patients.add(patient);
+
+            DossierMedical dossier = new DossierMedical();
+            dossier.setDateCreation(LocalDateTime.now());
+            dossier.setPatient(patient);
+            entityManager.persist(dossier);
+
+            for (int c = 0; c < CONSULTATIONS_PAR_PATIENT; c++) {
+                Consultation consultation = new Consultation();
+                consultation.setDateHeure(LocalDateTime.now().minusDays(c));
+                consultation.setType("CONTROLE");
+                consultation.setStatut("TERMINEE");
+                consultation.setPatient(patient);
+                consultation.setProfessionnel(professionnels.get((i + c) % professionnels.size()));
+                entityManager.persist(consultation);
+                for (int p = 0; p < 2; p++) {
+                    Prescription prescription = new Prescription();
+                    prescription.setDateEmission(LocalDate.now());
+                    prescription.setMedicaments("Paracétamol 1g");
+                    prescription.setConsultation(consultation);
+                    entityManager.persist(prescription);
+                }
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void patientsPageRunsTwoStatementsWithoutEntities() {
+        KeysetPage<PatientRow> page = medicalDataService.getPatientsPage(50, null, null, false);
+        Map<Integer, Long> counts = medicalDataService.getConsultationCounts(
+                page.items().stream().map(PatientRow::id).toList());
+        List<PatientDTO> dtos = DtoConverter.convertToPatientDTOList(page.items(), counts);
+
+        assertThat(dtos).hasSize(PATIENTS)
+                .allSatisfy(dto -> {
+                    assertThat(dto.getDossierMedicalId()).isNotNull();
+                    assertThat(dto.getNombreConsultations()).isEqualTo(CONSULTATIONS_PAR_PATIENT);
+                });
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void professionnelsPageRunsOneStatementWithoutEntities() {
+        KeysetPage<ProfessionnelRow> page =
+                medicalDataService.getProfessionnelsSantePage(50, "nom", null, false);
+        List<ProfessionnelSanteDTO> dtos = page.items().stream().map(DtoConverter::convertToProfessionnelSanteDTO).toList();
+
+        assertThat(dtos).hasSize(HOPITAUX * PROFESSIONNELS_PAR_HOPITAL)
+                .allSatisfy(dto -> assertThat(dto.getHopital()).isNotNull());
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void professionnelsPageFollowsCursor() {
+        List<Integer> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            KeysetPage<ProfessionnelRow> page =
+                    medicalDataService.getProfessionnelsSantePage(5, "nom", cursor, false);
+            page.items().forEach(professionnel -> ids.add(professionnel.id()));
+            cursor = page.nextCursor();
+        } while (cursor != null);
+
+        assertThat(ids).doesNotHaveDuplicates()
+                .containsExactlyInAnyOrderElementsOf(professionnels.stream().map(ProfessionnelSante::getId).toList());
+    }
+
+    @Test
+    void hopitauxPageRunsTwoStatementsWithoutEntities() {
+        KeysetPage<HopitalRow> page = medicalDataService.getHopitauxPage(50, null, null, false);
+        Map<Integer, List<ProfessionnelSimpleRow>> professionnelsParHopital =
+                medicalDataService.getProfessionnelsSanteByHopitalIds(page.items().stream().map(HopitalRow::id).toList());
+        List<HopitalDTO> dtos = DtoConverter.convertToHopitalDTOList(page.items(), professionnelsParHopital);
+
+        assertThat(dtos).hasSize(HOPITAUX)
+                .allSatisfy(dto -> assertThat(dto.getProfessionnels()).hasSize(PROFESSIONNELS_PAR_HOPITAL));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    @Test
+    void consultationsOfPatientRunOneStatement() {
+        List<ConsultationDTO> dtos = DtoConverter.convertToConsultationDTOList(
+                medicalDataService.getConsultationsByPatientId(patients.get(0).getId()));
+
+        assertThat(dtos).hasSize(CONSULTATIONS_PAR_PATIENT)
+                .allSatisfy(dto -> assertThat(dto.getNombrePrescriptions()).isEqualTo(2));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    void consultationsAndPatientsOfProfessionnelRunFixedStatements() {
+        Integer professionnelId = professionnels.get(0).getId();
+        List<ConsultationDTO> consultations = DtoConverter.convertToConsultationDTOList(
+                medicalDataService.getConsultationsByProfessionnelId(professionnelId));
+        assertThat(consultations).isNotEmpty()
+                .allSatisfy(dto -> assertThat(dto.getProfessionnelSpecialite()).isEqualTo("Radiologie"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        entityManager.clear();
+        statistics.clear();
+        List<PatientRow> patientsOfProfessionnel = medicalDataService.getPatientsByProfessionnelId(professionnelId);
+        List<PatientDTO> dtos = DtoConverter.convertToPatientDTOList(patientsOfProfessionnel,
+                medicalDataService.getConsultationCounts(patientsOfProfessionnel.stream().map(PatientRow::id).toList()));
+        assertThat(dtos).isNotEmpty().doesNotHaveDuplicates();
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+    }
+
+    private static void fillUtilisateur(sn.xyz.medcenter.model.Utilisateur utilisateur, String username) {
+        utilisateur.setLastName("Nom " + username);
+        utilisateur.setFirstName("Prénom " + username);
+        utilisateur.setUsername(username);
+        utilisateur.setEmail(username + "@medcenter.sn");
+        utilisateur.setPassword("x");
+        utilisateur.setRole("USER");
+        utilisateur.setDateCreation(LocalDateTime.now());
+    }
+}
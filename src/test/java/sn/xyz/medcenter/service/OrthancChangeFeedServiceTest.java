@@ -0,0 +1,113 @@
+package sn.xyz.medcenter.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import sn.xyz.medcenter.dto.OrthancPatientResourceDTO;
+import sn.xyz.medcenter.dto.OrthancStudyResourceDTO;
+import sn.xyz.medcenter.model.OrthancChangeCheckpoint;
+import sn.xyz.medcenter.model.OrthancIndexEntry.Level;
+import sn.xyz.medcenter.repository.OrthancChangeCheckpointRepository;
+import sn.xyz.medcenter.repository.OrthancIndexEntryRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Suivi du flux /changes d'un ServeurDICOM indexé : le point de reprise n'avance que si toutes les
+ * ressources modifiées de la page ont pu être relues (une ressource introuvable vaut suppression)
+ */
+class OrthancChangeFeedServiceTest {
+
+    private static final String ORTHANC_URL = "http://orthanc-a:8042";
+    private static final Integer SERVEUR_ID = 1;
+
+    private final DynamicOrthancService dynamicOrthancService = mock(DynamicOrthancService.class);
+    private final OrthancClientRegistry clientRegistry = mock(OrthancClientRegistry.class);
+    private final OrthancIndexEntryRepository indexRepository = mock(OrthancIndexEntryRepository.class);
+    private final OrthancChangeCheckpointRepository checkpointRepository = mock(OrthancChangeCheckpointRepository.class);
+    private OrthancChangeFeedService changeFeedService;
+
+    @BeforeEach
+    void setUp() {
+        when(clientRegistry.serveurIdFor(ORTHANC_URL)).thenReturn(SERVEUR_ID);
+        when(checkpointRepository.findById(SERVEUR_ID)).thenReturn(Optional.of(OrthancChangeCheckpoint.builder()
+                .serveurDicomId(SERVEUR_ID)
+                .lastSeq(10L)
+                .indexReady(true)
+                .build()));
+        when(dynamicOrthancService.getChanges(ORTHANC_URL, 10L, 100)).thenReturn(Mono.just(Map.of(
+                "Changes", List.of(change("NewStudy", "Study", "s1"), change("StablePatient", "Patient", "p1")),
+                "Last", 12L,
+                "Done", true)));
+        when(dynamicOrthancService.getStudy(ORTHANC_URL, "s1")).thenReturn(Mono.just(new OrthancStudyResourceDTO(
+                "s1", false, "20250101T101010", Map.of(), Map.of(), "p1", List.of())));
+
+        OrthancIndexService indexService = new OrthancIndexService(indexRepository, checkpointRepository,
+                dynamicOrthancService, clientRegistry, new OrthancFanOutService(4, Duration.ofSeconds(5)),
+                new ObjectMapper(), 500, 200, Duration.ofSeconds(5));
+        changeFeedService = new OrthancChangeFeedService(dynamicOrthancService, clientRegistry,
+                new OrthancResourceCache(100, Duration.ofHours(1), Duration.ofSeconds(15)), indexService,
+                checkpointRepository, List.of(indexService), 100, Duration.ofSeconds(5), 1, 1);
+
+        // Premier passage: reprise au point enregistré
+        changeFeedService.poll(ORTHANC_URL, SERVEUR_ID);
+    }
+
+    @AfterEach
+    void shutdown() {
+        changeFeedService.shutdown();
+    }
+
+    @Test
+    void failedFetchLeavesCheckpointWhereItWas() {
+        when(dynamicOrthancService.getPatient(ORTHANC_URL, "p1")).thenReturn(Mono.error(
+                WebClientResponseException.create(503, "Service Unavailable", HttpHeaders.EMPTY, new byte[0], null)));
+
+        assertThatThrownBy(() -> changeFeedService.poll(ORTHANC_URL, SERVEUR_ID))
+                .isInstanceOf(IllegalStateException.class);
+
+        assertThat(changeFeedService.getCheckpoints()).containsEntry(ORTHANC_URL, 10L);
+        verify(checkpointRepository, never()).save(any());
+        // Les ressources relues sont tout de même enregistrées
+        verify(indexRepository).saveAll(anyList());
+
+        // Orthanc de nouveau disponible: la page est rejouée et le point de reprise avance
+        when(dynamicOrthancService.getPatient(ORTHANC_URL, "p1")).thenReturn(Mono.just(new OrthancPatientResourceDTO(
+                "p1", false, "20250101T101010", Map.of("PatientName", "DIOP^AMATH"), List.of("s1"))));
+        changeFeedService.poll(ORTHANC_URL, SERVEUR_ID);
+
+        assertThat(changeFeedService.getCheckpoints()).containsEntry(ORTHANC_URL, 12L);
+        verify(checkpointRepository).save(any());
+    }
+
+    @Test
+    void resourceMissingOnRefreshIsRemovedFromIndex() {
+        when(dynamicOrthancService.getPatient(ORTHANC_URL, "p1")).thenReturn(Mono.error(
+                WebClientResponseException.create(404, "Not Found", HttpHeaders.EMPTY, new byte[0], null)));
+
+        changeFeedService.poll(ORTHANC_URL, SERVEUR_ID);
+
+        verify(indexRepository).deleteResources(SERVEUR_ID, Level.PATIENT, List.of("p1"));
+        assertThat(changeFeedService.getCheckpoints()).containsEntry(ORTHANC_URL, 12L);
+    }
+
+    private static Map<String, Object> change(String changeType, String resourceType, String id) {
+        return Map.of("ChangeType", changeType, "ResourceType", resourceType, "ID", id);
+    }
+}
@@ -0,0 +1,221 @@
+package sn.xyz.medcenter.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import sn.xyz.medcenter.dto.OrthancPatientDetailResponseDTO;
+import sn.xyz.medcenter.dto.OrthancSeriesResourceDTO;
+import sn.xyz.medcenter.dto.OrthancStudyResourceDTO;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Décodage d'une étude Orthanc (réponse /studies/{id} et ses 12 séries de 250 instances) :
+ * Map&lt;String,Object&gt; + conversions, comme avant, contre records typés.
+ * Hors de la suite par défaut ; lancement : mvn test -Dtest=OrthancDecodingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrthancDecodingBenchmark {
+
+    private static final int SERIES_PER_STUDY = 12;
+    private static final int INSTANCES_PER_SERIES = 250;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OrthancMapperService mapper = new OrthancMapperService();
+    private byte[] studyJson;
+    private byte[] seriesJson;
+
+    @Setup
+    public void buildPayloads() throws Exception {
+        List<String> seriesIds = new ArrayList<>();
+        List<Map<String, Object>> series = new ArrayList<>();
+        for (int i = 0; i < SERIES_PER_STUDY; i++) {
+            String seriesId = orthancId();
+            seriesIds.add(seriesId);
+            series.add(series(seriesId, i));
+        }
+        studyJson = objectMapper.writeValueAsBytes(study(seriesIds));
+        seriesJson = objectMapper.writeValueAsBytes(series);
+    }
+
+    @Benchmark
+    public OrthancPatientDetailResponseDTO.StudyDetailDTO mapDecoding() throws Exception {
+        Map<String, Object> study = objectMapper.readValue(studyJson, new TypeReference<Map<String, Object>>() {});
+        List<Map<String, Object>> series = objectMapper.readValue(seriesJson,
+                new TypeReference<List<Map<String, Object>>>() {});
+        List<OrthancPatientDetailResponseDTO.SeriesDetailDTO> details = new ArrayList<>(series.size());
+        for (Map<String, Object> serie : series) {
+            details.add(legacySeriesDetail(serie));
+        }
+        return legacyStudyDetail(study, details);
+    }
+
+    @Benchmark
+    public OrthancPatientDetailResponseDTO.StudyDetailDTO typedDecoding() throws Exception {
+        OrthancStudyResourceDTO study = objectMapper.readValue(studyJson, OrthancStudyResourceDTO.class);
+        List<OrthancSeriesResourceDTO> series = objectMapper.readValue(seriesJson,
+                new TypeReference<List<OrthancSeriesResourceDTO>>() {});
+        List<OrthancPatientDetailResponseDTO.SeriesDetailDTO> details = new ArrayList<>(series.size());
+        for (OrthancSeriesResourceDTO serie : series) {
+            details.add(mapper.mapToSeriesDetail(serie));
+        }
+        return mapper.mapToStudyDetail(study, details);
+    }
+
+    @Test
+    void typedDecodingAllocatesLessAndRunsFasterThanMapDecoding() throws Exception {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(OrthancDecodingBenchmark.class.getName() + "\\.")
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+
+        Map<String, RunResult> byBenchmark = new LinkedHashMap<>();
+        results.forEach(result -> byBenchmark.put(result.getParams().getBenchmark()
+                .substring(OrthancDecodingBenchmark.class.getName().length() + 1), result));
+        RunResult legacy = byBenchmark.get("mapDecoding");
+        RunResult typed = byBenchmark.get("typedDecoding");
+
+        String scores = String.format("Décodage d'une étude: Map %.1f µs / %.0f o, records %.1f µs / %.0f o",
+                legacy.getPrimaryResult().getScore(), allocatedBytes(legacy),
+                typed.getPrimaryResult().getScore(), allocatedBytes(typed));
+        assertThat(allocatedBytes(typed)).as(scores).isLessThan(allocatedBytes(legacy));
+        assertThat(typed.getPrimaryResult().getScore()).as(scores).isLessThan(legacy.getPrimaryResult().getScore());
+    }
+
+    private static double allocatedBytes(RunResult result) {
+        for (Map.Entry<String, Result> secondary : result.getSecondaryResults().entrySet()) {
+            if (secondary.getKey().endsWith("gc.alloc.rate.norm")) {
+                return secondary.getValue().getScore();
+            }
+        }
+        throw new IllegalStateException("Profileur GC indisponible");
+    }
+
+    // Conversions historiques, à partir des réponses décodées en Map
+    @SuppressWarnings("unchecked")
+    private static OrthancPatientDetailResponseDTO.SeriesDetailDTO legacySeriesDetail(Map<String, Object> seriesData) {
+        Map<String, String> tags = (Map<String, String>) seriesData.get("MainDicomTags");
+        List<String> instances = (List<String>) seriesData.get("Instances");
+        return OrthancPatientDetailResponseDTO.SeriesDetailDTO.builder()
+                .id((String) seriesData.get("ID"))
+                .seriesDescription(tags != null ? tags.get("SeriesDescription") : null)
+                .seriesNumber(tags != null ? tags.get("SeriesNumber") : null)
+                .modality(tags != null ? tags.get("Modality") : null)
+                .seriesInstanceUID(tags != null ? tags.get("SeriesInstanceUID") : null)
+                .bodyPartExamined(tags != null ? tags.get("BodyPartExamined") : null)
+                .isStable((Boolean) seriesData.getOrDefault("IsStable", false))
+                .lastUpdate((String) seriesData.get("LastUpdate"))
+                .instancesCount(instances != null ? instances.size() : 0)
+                .seriesMainDicomTags(tags)
+                .build();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static OrthancPatientDetailResponseDTO.StudyDetailDTO legacyStudyDetail(
+            Map<String, Object> studyData, List<OrthancPatientDetailResponseDTO.SeriesDetailDTO> series) {
+        Map<String, String> tags = (Map<String, String>) studyData.get("MainDicomTags");
+        return OrthancPatientDetailResponseDTO.StudyDetailDTO.builder()
+                .id((String) studyData.get("ID"))
+                .studyDate(tags != null ? tags.get("StudyDate") : null)
+                .studyTime(tags != null ? tags.get("StudyTime") : null)
+                .studyDescription(tags != null ? tags.get("StudyDescription") : null)
+                .studyInstanceUID(tags != null ? tags.get("StudyInstanceUID") : null)
+                .accessionNumber(tags != null ? tags.get("AccessionNumber") : null)
+                .isStable((Boolean) studyData.getOrDefault("IsStable", false))
+                .lastUpdate((String) studyData.get("LastUpdate"))
+                .studyMainDicomTags(tags)
+                .series(series)
+                .build();
+    }
+
+    private static Map<String, Object> study(List<String> seriesIds) {
+        Map<String, Object> study = new LinkedHashMap<>();
+        study.put("ID", orthancId());
+        study.put("IsStable", true);
+        study.put("Labels", List.of());
+        study.put("LastUpdate", "20240312T141516");
+        study.put("MainDicomTags", Map.of(
+                "AccessionNumber", "A20240312001",
+                "InstitutionName", "HOPITAL PRINCIPAL DE DAKAR",
+                "ReferringPhysicianName", "NDIAYE^FATOU",
+                "StudyDate", "20240312",
+                "StudyDescription", "TDM THORACO-ABDOMINO-PELVIENNE",
+                "StudyID", "1",
+                "StudyInstanceUID", "1.2.840.113619.2.55.3.604688119.969.1710252916.123",
+                "StudyTime", "141516"));
+        study.put("ParentPatient", orthancId());
+        study.put("PatientMainDicomTags", Map.of(
+                "PatientBirthDate", "19800101",
+                "PatientID", "SN123456",
+                "PatientName", "DIOP^AMATH",
+                "PatientSex", "M"));
+        study.put("Series", seriesIds);
+        study.put("Type", "Study");
+        return study;
+    }
+
+    private static Map<String, Object> series(String id, int number) {
+        List<String> instances = new ArrayList<>(INSTANCES_PER_SERIES);
+        for (int i = 0; i < INSTANCES_PER_SERIES; i++) {
+            instances.add(orthancId());
+        }
+        Map<String, Object> series = new LinkedHashMap<>();
+        series.put("ExpectedNumberOfInstances", null);
+        series.put("ID", id);
+        series.put("Instances", instances);
+        series.put("IsStable", true);
+        series.put("Labels", List.of());
+        series.put("LastUpdate", "20240312T141516");
+        series.put("MainDicomTags", Map.of(
+                "BodyPartExamined", "CHEST",
+                "Manufacturer", "GE MEDICAL SYSTEMS",
+                "Modality", "CT",
+                "ProtocolName", "TAP INJ",
+                "SeriesDate", "20240312",
+                "SeriesDescription", "Série " + number,
+                "SeriesInstanceUID", "1.2.840.113619.2.55.3.604688119.969.1710252916." + (200 + number),
+                "SeriesNumber", String.valueOf(number + 1),
+                "SeriesTime", "141516",
+                "StationName", "CT01"));
+        series.put("ParentStudy", orthancId());
+        series.put("Status", "Unknown");
+        series.put("Type", "Series");
+        return series;
+    }
+
+    // Format des identifiants Orthanc (SHA-1 en 5 groupes)
+    private static String orthancId() {
+        String hex = (UUID.randomUUID().toString() + UUID.randomUUID()).replace("-", "").substring(0, 40);
+        return String.join("-", hex.substring(0, 8), hex.substring(8, 16), hex.substring(16, 24),
+                hex.substring(24, 32), hex.substring(32, 40));
+    }
+}